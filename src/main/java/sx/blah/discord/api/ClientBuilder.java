@@ -23,19 +23,26 @@ import sx.blah.discord.api.events.IListener;
 import sx.blah.discord.api.internal.DiscordClientImpl;
 import sx.blah.discord.api.internal.DiscordEndpoints;
 import sx.blah.discord.api.internal.Requests;
+import sx.blah.discord.api.internal.ResponseCache;
 import sx.blah.discord.api.internal.json.requests.PresenceUpdateRequest;
 import sx.blah.discord.api.internal.json.responses.GatewayBotResponse;
 import sx.blah.discord.handle.obj.ActivityType;
 import sx.blah.discord.handle.obj.StatusType;
 import sx.blah.discord.util.DiscordException;
+import sx.blah.discord.util.RetryPolicy;
 import sx.blah.discord.util.cache.Cache;
+import sx.blah.discord.util.cache.CacheStatistics;
 import sx.blah.discord.util.cache.ICacheDelegateProvider;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 /**
  * Used to configure and build a {@link IDiscordClient} instance.
@@ -48,14 +55,15 @@ public class ClientBuilder {
 	 */
 	public static final int DEFAULT_MESSAGE_CACHE_LIMIT = 256;
 
-	private int[] shard = null;
+	private int[] shardIndexes = null;
+	private int totalShards;
 	private boolean withRecommendedShardCount = false;
 	private int maxMissedPings = -1;
 	private String botToken;
 	private boolean isDaemon = false;
 	private int shardCount = 1;
 	private int maxReconnectAttempts = 5;
-	private int retryCount = 5;
+	private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
 	private int maxCacheCount = DEFAULT_MESSAGE_CACHE_LIMIT;
 	private ICacheDelegateProvider provider = Cache.DEFAULT_PROVIDER;
 	private RejectedExecutionHandler backpressureHandler = new EventDispatcher.CallerRunsPolicy();
@@ -68,6 +76,17 @@ public class ClientBuilder {
 	private ActivityType activity;
 	private String text;
 	private String streamUrl;
+	private File cacheSnapshotDirectory;
+	private boolean cacheStatistics = false;
+	private boolean registerCacheMBeans = false;
+	private boolean nameIndexes = false;
+	private int maxHttpConnections = Requests.DEFAULT_MAX_CONNECTIONS;
+	private long httpKeepAlive = Requests.DEFAULT_KEEP_ALIVE;
+	private int reservedHttpConnections = Requests.DEFAULT_RESERVED_CONNECTIONS;
+	private File sharedRateLimitFile;
+	private boolean etfEncoding = false;
+	private long getSharingWindow = Requests.DEFAULT_GET_SHARING_WINDOW;
+	private final Map<ResponseCache.Endpoint, Long> responseCacheTTLs = new EnumMap<>(ResponseCache.Endpoint.class);
 	//Early registered listeners:
 	private final List<IListener> iListeners = new ArrayList<>();
 	private final List<Object> listeners = new ArrayList<>();
@@ -140,7 +159,8 @@ public class ClientBuilder {
 	/**
 	 * Configures the client to request the number of shards to login with from Discord.
 	 *
-	 * <p>Note: This method is incompatible with {@link #setShard(int, int)}.
+	 * <p>Note: This method is incompatible with {@link #setShard(int, int)}, {@link #setShardRange(int, int, int)} and
+	 * {@link #setShards(int, int...)}.
 	 *
 	 * @return The builder instance.
 	 */
@@ -184,6 +204,144 @@ public class ClientBuilder {
 		return this;
 	}
 
+	/**
+	 * Configures the directory the client stores snapshots of its shards' caches in.
+	 *
+	 * <p>When enabled, each shard writes a snapshot of its guilds, channels, roles, members and emojis when it logs
+	 * out. The next time that shard logs in, the snapshot is restored before the gateway connects and the shard
+	 * attempts to resume its previous session instead of receiving every guild again. If the session can no longer be
+	 * resumed, the snapshot is discarded and the shard identifies as usual.
+	 *
+	 * <p>Note: Guilds restored from a snapshot do not fire {@link sx.blah.discord.handle.impl.events.guild.GuildCreateEvent}s.
+	 *
+	 * @param directory The directory snapshots are stored in, or null to disable snapshots.
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withCacheSnapshots(File directory) {
+		this.cacheSnapshotDirectory = directory;
+		return this;
+	}
+
+	/**
+	 * Enables recording usage statistics of the client's caches. Statistics are available through
+	 * {@link IDiscordClient#getCacheStatistics()}.
+	 *
+	 * <p>Recording statistics adds a small overhead to every cache operation, so they are disabled by default.
+	 *
+	 * @param registerMBeans Whether the statistics should also be registered with the platform MBean server so they
+	 * can be monitored over JMX.
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withCacheStatistics(boolean registerMBeans) {
+		this.cacheStatistics = true;
+		this.registerCacheMBeans = registerMBeans;
+		return this;
+	}
+
+	/**
+	 * Enables name indexes for name-based lookups such as {@link IDiscordClient#getUsersByName(String, boolean)},
+	 * {@link sx.blah.discord.handle.obj.IGuild#getChannelsByName(String, boolean)} and
+	 * {@link sx.blah.discord.handle.obj.IGuild#getUsersByName(String, boolean)}.
+	 *
+	 * <p>With name indexes, these lookups cost the size of their results instead of the number of cached objects, at
+	 * the cost of additional memory for the indexes. Both case-sensitive and case-insensitive lookups are indexed.
+	 *
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withNameIndexes() {
+		this.nameIndexes = true;
+		return this;
+	}
+
+	/**
+	 * Configures the pool of HTTP connections the client sends its requests on. All request types share the pool and
+	 * reuse idle connections and TLS sessions.
+	 *
+	 * <p>Usage statistics of the pool are available through {@link Requests#getStats()}.
+	 *
+	 * @param maxConnections The maximum number of connections per host. (Default: {@value Requests#DEFAULT_MAX_CONNECTIONS})
+	 * @param keepAlive The time in milliseconds an idle connection is kept alive. (Default: {@value Requests#DEFAULT_KEEP_ALIVE})
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withHttpConnectionPool(int maxConnections, long keepAlive) {
+		if (maxConnections < 1)
+			throw new IllegalArgumentException("The maximum number of connections must be at least 1!");
+		this.maxHttpConnections = maxConnections;
+		this.httpKeepAlive = keepAlive;
+		return this;
+	}
+
+	/**
+	 * Sets how many connections of the HTTP connection pool are reserved for
+	 * {@link sx.blah.discord.util.RequestPriority#INTERACTIVE interactive} requests. Requests of lower priorities wait
+	 * for one of the remaining connections, so bulk work can't delay replies to users. At least one connection is
+	 * always left to requests of lower priorities.
+	 *
+	 * @param reservedConnections The number of connections per host reserved for interactive requests. (Default: {@value Requests#DEFAULT_RESERVED_CONNECTIONS})
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withReservedInteractiveConnections(int reservedConnections) {
+		if (reservedConnections < 0)
+			throw new IllegalArgumentException("The number of reserved connections must not be negative!");
+		this.reservedHttpConnections = reservedConnections;
+		return this;
+	}
+
+	/**
+	 * Sets how long the result of a GET request is shared with identical requests after it completed.
+	 *
+	 * <p>Identical GET requests which are made while one is in flight always share its result. A short window also
+	 * shares it with requests made right after, such as the message fetches caused by a burst of reactions.
+	 *
+	 * @param millis The time in milliseconds results are shared after completing. (Default: {@value Requests#DEFAULT_GET_SHARING_WINDOW})
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withGetSharingWindow(long millis) {
+		this.getSharingWindow = millis;
+		return this;
+	}
+
+	/**
+	 * Shares the client's REST rate limits with other processes on the same host through a memory-mapped file, such
+	 * as when several processes each run a range of shards of the same bot. Every process which is configured with the
+	 * same file counts its requests against the same global and per-route limits, so they don't overrun each other.
+	 *
+	 * @param file The file the rate limits are shared through. It is created if it doesn't exist.
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withSharedRateLimits(File file) {
+		this.sharedRateLimitFile = file;
+		return this;
+	}
+
+	/**
+	 * Configures the client to receive and send gateway payloads in Erlang's External Term Format instead of JSON.
+	 * ETF payloads are smaller and cheaper to decode, which matters most for large bots receiving many big events
+	 * such as guild creates.
+	 *
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withEtfEncoding() {
+		this.etfEncoding = true;
+		return this;
+	}
+
+	/**
+	 * Sets how long responses of a slow-changing endpoint are cached. Expired responses are revalidated if Discord
+	 * allows it, and responses are dropped early when the client modifies them or a gateway event says they changed.
+	 *
+	 * <p>Cached responses can be dropped manually through {@link Requests#getResponseCache()}.
+	 *
+	 * @param endpoint The endpoint to configure.
+	 * @param millis The time in milliseconds responses are cached for, or 0 to disable caching of the endpoint.
+	 * (Default: {@link ResponseCache.Endpoint#getDefaultTTL()})
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withResponseCacheTTL(ResponseCache.Endpoint endpoint, long millis) {
+		this.responseCacheTTLs.put(endpoint, millis);
+		return this;
+	}
+
 	/**
 	 * Configures listeners to immediately register with the client's {@link EventDispatcher} before logging in.
 	 *
@@ -255,7 +413,19 @@ public class ClientBuilder {
 	 * @return The builder instance.
 	 */
 	public ClientBuilder set5xxRetryCount(int retryCount) {
-		this.retryCount = retryCount;
+		this.retryPolicy = new RetryPolicy(retryCount, retryPolicy.getBaseDelay(), retryPolicy.getMaxDelay());
+		return this;
+	}
+
+	/**
+	 * Configures how HTTP requests to Discord are retried in the case of a 5xx response code. Retries are scheduled
+	 * without blocking any thread.
+	 *
+	 * @param retryPolicy The retry policy. (Default: {@link RetryPolicy#DEFAULT})
+	 * @return The builder instance.
+	 */
+	public ClientBuilder withRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
 		return this;
 	}
 
@@ -271,10 +441,47 @@ public class ClientBuilder {
 	 * @see <a href=https://discordapp.com/developers/docs/topics/gateway#sharding>Sharding</a>
 	 */
 	public ClientBuilder setShard(int shardIndex, int totalShards) {
-		if (shardIndex < 0) throw new IllegalArgumentException("The shard index must be greater than or equal to 0!");
-		if (totalShards <= shardIndex) throw new IllegalArgumentException("The shard index is out of bounds for the provided total shard count!");
+		return setShards(totalShards, shardIndex);
+	}
+
+	/**
+	 * Configures a range of shards for this client to manage, so the shards of a bot can be spread over several
+	 * processes. The shards log in one after another, 5 seconds apart.
+	 *
+	 * <p>Note: This is incompatible with {@link #withShards(int)}.
+	 *
+	 * @param fromIndex The index of the first shard to create (inclusive).
+	 * @param toIndex The index after the last shard to create (exclusive).
+	 * @param totalShards The total of number of shards of the bot.
+	 * @return The builder instance.
+	 *
+	 * @see <a href=https://discordapp.com/developers/docs/topics/gateway#sharding>Sharding</a>
+	 */
+	public ClientBuilder setShardRange(int fromIndex, int toIndex, int totalShards) {
+		if (fromIndex >= toIndex) throw new IllegalArgumentException("The shard range must not be empty!");
+		return setShards(totalShards, IntStream.range(fromIndex, toIndex).toArray());
+	}
 
-		this.shard = new int[]{shardIndex, totalShards};
+	/**
+	 * Configures a set of shards for this client to manage, so the shards of a bot can be spread over several
+	 * processes. The shards log in one after another in ascending order, 5 seconds apart.
+	 *
+	 * <p>Note: This is incompatible with {@link #withShards(int)}.
+	 *
+	 * @param totalShards The total of number of shards of the bot.
+	 * @param shardIndexes The indexes of the shards to create.
+	 * @return The builder instance.
+	 *
+	 * @see <a href=https://discordapp.com/developers/docs/topics/gateway#sharding>Sharding</a>
+	 */
+	public ClientBuilder setShards(int totalShards, int... shardIndexes) {
+		int[] indexes = IntStream.of(shardIndexes).sorted().distinct().toArray();
+		if (indexes.length == 0) throw new IllegalArgumentException("At least one shard index must be provided!");
+		if (indexes[0] < 0) throw new IllegalArgumentException("The shard index must be greater than or equal to 0!");
+		if (totalShards <= indexes[indexes.length - 1]) throw new IllegalArgumentException("The shard index is out of bounds for the provided total shard count!");
+
+		this.shardIndexes = indexes;
+		this.totalShards = totalShards;
 		return this;
 	}
 
@@ -405,7 +612,7 @@ public class ClientBuilder {
 		if (botToken == null)
 			throw new DiscordException("No login info present!");
 
-		if (withRecommendedShardCount && shard != null)
+		if (withRecommendedShardCount && shardIndexes != null)
 			throw new DiscordException("Cannot use recommend shard count options with a specific shard!");
 
 		if (withRecommendedShardCount){
@@ -413,10 +620,12 @@ public class ClientBuilder {
 			shardCount = response.shards;
 		}
 
-		final IDiscordClient client = new DiscordClientImpl(botToken, shard != null ? -1 : shardCount, isDaemon,
-				maxMissedPings, maxReconnectAttempts, retryCount, maxCacheCount, provider, shard, backpressureHandler,
+		final IDiscordClient client = new DiscordClientImpl(botToken, shardIndexes != null ? totalShards : shardCount, isDaemon,
+				maxMissedPings, maxReconnectAttempts, retryPolicy, maxCacheCount, provider, shardIndexes, backpressureHandler,
 				minimumPoolSize, maximumPoolSize, overflowCapacity, eventThreadTimeout, eventThreadTimeoutUnit,
-				new PresenceUpdateRequest(status, activity, text, streamUrl));
+				new PresenceUpdateRequest(status, activity, text, streamUrl), cacheSnapshotDirectory,
+				cacheStatistics ? new CacheStatistics(registerCacheMBeans) : null, nameIndexes, maxHttpConnections, httpKeepAlive,
+				getSharingWindow, responseCacheTTLs, reservedHttpConnections, sharedRateLimitFile, etfEncoding);
 
 		//Registers events as soon as client is initialized
 		final EventDispatcher dispatcher = client.getDispatcher();
@@ -17,19 +17,26 @@
 
 package sx.blah.discord.api;
 
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.api.events.EventDispatcher;
 import sx.blah.discord.handle.obj.*;
 import sx.blah.discord.modules.ModuleLoader;
 import sx.blah.discord.util.DiscordException;
 import sx.blah.discord.util.Image;
+import sx.blah.discord.util.cache.CacheStats;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * The main method by which interaction with Discord is done.
  *
  * <p>This represents a "client" which can manage multiple {@link IShard} instances. Most methods which interact
  * directly with Discord simply execute the equivalent method in all of the managed {@link IShard}s.
+ *
+ * <p>The <code>forEach</code> methods visit the cached objects without copying them, in an undefined order. Their
+ * actions may run while a read lock of the cache is held, so they must not update the cache (for example by calling
+ * a method which sets a CACHED value of an object in it). Doing so from within an action deadlocks.
  */
 public interface IDiscordClient {
 
@@ -210,6 +217,16 @@ public interface IDiscordClient {
 	 */
 	IChannel getChannelByID(long channelID);
 
+	/**
+	 * Performs the given action for each of the non-private text channels visible to the bot user on every shard,
+	 * without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachChannel(LongObjConsumer<? super IChannel> action) {
+		getChannels().forEach(channel -> action.accept(channel.getLongID(), channel));
+	}
+
 	/**
 	 * Gets a list of all voice channels visible to the bot user on every shard.
 	 *
@@ -240,6 +257,16 @@ public interface IDiscordClient {
 	 */
 	IGuild getGuildByID(long guildID);
 
+	/**
+	 * Performs the given action for each of the guilds the bot user is a member of on every shard, without copying
+	 * them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachGuild(LongObjConsumer<? super IGuild> action) {
+		getGuilds().forEach(guild -> action.accept(guild.getLongID(), guild));
+	}
+
 	/**
 	 * Gets a list of all users visible to the bot user on every shard.
 	 *
@@ -261,6 +288,15 @@ public interface IDiscordClient {
 	 */
 	IUser getUserByID(long userID);
 
+	/**
+	 * Performs the given action for each of the users visible to the bot user, without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachUser(LongObjConsumer<? super IUser> action) {
+		getUsers().forEach(user -> action.accept(user.getLongID(), user));
+	}
+
 	/**
 	 * Gets a user by its unique snowflake ID from the client's user cache <b>or</b> by fetching it from Discord.
 	 *
@@ -309,6 +345,16 @@ public interface IDiscordClient {
 	 */
 	IRole getRoleByID(long roleID);
 
+	/**
+	 * Performs the given action for each of the roles visible to the bot user on every shard, without copying them
+	 * into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachRole(LongObjConsumer<? super IRole> action) {
+		getRoles().forEach(role -> action.accept(role.getLongID(), role));
+	}
+
 	/**
 	 * Gets a list of all messages in the client's message cache.
 	 *
@@ -436,4 +482,12 @@ public interface IDiscordClient {
 	 * @return A list of categories with the provided name.
 	 */
 	List<ICategory> getCategoriesByName(String name);
+
+	/**
+	 * Gets the usage statistics of the client's caches, keyed by the class of the objects stored by the caches.
+	 *
+	 * @return The cache statistics (or an empty map if they are disabled).
+	 * @see ClientBuilder#withCacheStatistics(boolean)
+	 */
+	Map<Class<?>, CacheStats> getCacheStatistics();
 }
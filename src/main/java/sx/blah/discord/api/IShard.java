@@ -17,6 +17,7 @@
 
 package sx.blah.discord.api;
 
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.handle.obj.*;
 import sx.blah.discord.util.DiscordException;
 
@@ -27,6 +28,10 @@ import java.util.List;
  * ({@link sx.blah.discord.api.internal.DiscordWS} instance) and is only associated with other shards by their parent
  * {@link IDiscordClient}.
  *
+ * <p>The <code>forEach</code> methods visit the cached objects without copying them, in an undefined order. Their
+ * actions may run while a read lock of the cache is held, so they must not update the cache (for example by calling
+ * a method which sets a CACHED value of an object in it). Doing so from within an action deadlocks.
+ *
  * @see <a href=https://discordapp.com/developers/docs/topics/gateway#sharding>Sharding</a>
  */
 public interface IShard {
@@ -153,6 +158,16 @@ public interface IShard {
 	 */
 	IChannel getChannelByID(long channelID);
 
+	/**
+	 * Performs the given action for each of the non-private text channels visible to the bot user on the shard,
+	 * without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachChannel(LongObjConsumer<? super IChannel> action) {
+		getChannels().forEach(channel -> action.accept(channel.getLongID(), channel));
+	}
+
 	/**
 	 * Gets a list of all voice channels visible to the bot user on the shard.
 	 *
@@ -192,6 +207,16 @@ public interface IShard {
 	 */
 	IGuild getGuildByID(long guildID);
 
+	/**
+	 * Performs the given action for each of the guilds the bot user is a member of that the shard received, without
+	 * copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachGuild(LongObjConsumer<? super IGuild> action) {
+		getGuilds().forEach(guild -> action.accept(guild.getLongID(), guild));
+	}
+
 	/**
 	 * Gets a list of all users visible to the bot user on the shard.
 	 *
@@ -213,6 +238,16 @@ public interface IShard {
 	 */
 	IUser getUserByID(long userID);
 
+	/**
+	 * Performs the given action for each of the users visible to the bot user on the shard, without copying them
+	 * into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachUser(LongObjConsumer<? super IUser> action) {
+		getUsers().forEach(user -> action.accept(user.getLongID(), user));
+	}
+
 	/**
 	 * Gets a user by its unique snowflake ID from the shard's user cache <b>or</b> by fetching it from Discord.
 	 *
@@ -241,6 +276,16 @@ public interface IShard {
 	 */
 	IRole getRoleByID(long roleID);
 
+	/**
+	 * Performs the given action for each of the roles visible to the bot user on the shard, without copying them
+	 * into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachRole(LongObjConsumer<? super IRole> action) {
+		getRoles().forEach(role -> action.accept(role.getLongID(), role));
+	}
+
 	/**
 	 * Gets a list of all messages in the shard's message cache.
 	 *
@@ -0,0 +1,382 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sx.blah.discord.api.internal;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import sx.blah.discord.Discord4J;
+import sx.blah.discord.api.internal.json.objects.*;
+import sx.blah.discord.handle.impl.obj.Guild;
+import sx.blah.discord.handle.impl.obj.User;
+import sx.blah.discord.handle.obj.*;
+import sx.blah.discord.util.LogMarkers;
+import sx.blah.discord.util.cache.LongMap;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the cached entity graph of a shard to disk when it logs out so that it can be restored on the next login.
+ *
+ * <p>A restored shard attempts to resume its previous gateway session instead of identifying. If the session can be
+ * resumed, the shard is usable as soon as the snapshot is loaded instead of after receiving every guild again. If it
+ * cannot, the restored state is discarded and the shard identifies as usual.
+ */
+final class CacheSnapshot {
+
+	/**
+	 * The version of the snapshot format. Snapshots of a different version are ignored.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The JSON representation of a shard snapshot.
+	 */
+	static class SnapshotObject {
+		/**
+		 * The version of the snapshot format.
+		 */
+		public int version;
+		/**
+		 * The shard info (shard ID and total shards) of the shard the snapshot was taken of.
+		 */
+		public int[] shard;
+		/**
+		 * The ID of the gateway session of the shard.
+		 */
+		public String session_id;
+		/**
+		 * The last sequence number received by the shard.
+		 */
+		public long seq;
+		/**
+		 * The bot user.
+		 */
+		public UserObject user;
+		/**
+		 * The guilds of the shard.
+		 */
+		public GuildObject[] guilds;
+	}
+
+	private CacheSnapshot() {}
+
+	/**
+	 * Gets the snapshot file of a shard.
+	 *
+	 * @param directory The directory snapshots are stored in.
+	 * @param shardInfo The shard info of the shard.
+	 * @return The snapshot file of the shard.
+	 */
+	static File getFile(File directory, int[] shardInfo) {
+		return new File(directory, "shard-" + shardInfo[0] + "-" + shardInfo[1] + ".snapshot");
+	}
+
+	/**
+	 * Writes a snapshot of the given shard and its gateway session. The snapshot is written to a temporary file first
+	 * so that an interrupted write never leaves a truncated snapshot behind.
+	 *
+	 * @param shard The shard to snapshot.
+	 * @param ws The gateway connection of the shard.
+	 * @param directory The directory snapshots are stored in.
+	 */
+	static void write(ShardImpl shard, DiscordWS ws, File directory) {
+		if (ws.sessionId == null || shard.getClient().getOurUser() == null)
+			return;
+
+		SnapshotObject snapshot = new SnapshotObject();
+		snapshot.version = VERSION;
+		snapshot.shard = shard.getInfo();
+		snapshot.session_id = ws.sessionId;
+		snapshot.seq = ws.seq;
+		snapshot.user = toUserObject(shard.getClient().getOurUser());
+
+		List<GuildObject> guilds = new ArrayList<>();
+		shard.guildCache.forEach((guildID, guild) -> guilds.add(toGuildObject((Guild) guild)));
+		snapshot.guilds = guilds.toArray(new GuildObject[0]);
+
+		File file = getFile(directory, shard.getInfo());
+		File temp = new File(directory, file.getName() + ".tmp");
+		try {
+			Files.createDirectories(directory.toPath());
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+				DiscordUtils.MAPPER_NO_NULLS.writeValue(out, snapshot);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Discord4J.LOGGER.debug(LogMarkers.API, "Wrote cache snapshot of {} guilds for shard {}.", snapshot.guilds.length, shard.getInfo()[0]);
+		} catch (IOException e) {
+			Discord4J.LOGGER.warn(LogMarkers.API, "Unable to write cache snapshot for shard " + shard.getInfo()[0] + ".", e);
+		}
+	}
+
+	/**
+	 * Restores the snapshot of the given shard (if there is one) into the shard's cache and prepares its gateway
+	 * connection to resume the snapshotted session. The snapshot file is deleted once it has been read, so it is only
+	 * ever restored once.
+	 *
+	 * @param shard The shard to restore.
+	 * @param ws The gateway connection of the shard.
+	 * @param directory The directory snapshots are stored in.
+	 * @return Whether a snapshot was restored.
+	 */
+	static boolean restore(ShardImpl shard, DiscordWS ws, File directory) {
+		File file = getFile(directory, shard.getInfo());
+		if (!file.isFile())
+			return false;
+
+		SnapshotObject snapshot;
+		try {
+			snapshot = read(file);
+		} catch (IOException e) {
+			Discord4J.LOGGER.warn(LogMarkers.API, "Unable to read cache snapshot for shard " + shard.getInfo()[0] + ".", e);
+			return false;
+		} finally {
+			if (!file.delete())
+				Discord4J.LOGGER.debug(LogMarkers.API, "Unable to delete cache snapshot {}.", file);
+		}
+
+		if (snapshot.version != VERSION || snapshot.session_id == null || snapshot.shard == null
+				|| snapshot.shard[0] != shard.getInfo()[0] || snapshot.shard[1] != shard.getInfo()[1]) {
+			Discord4J.LOGGER.debug(LogMarkers.API, "Ignoring incompatible cache snapshot for shard {}.", shard.getInfo()[0]);
+			return false;
+		}
+
+		DiscordClientImpl client = (DiscordClientImpl) shard.getClient();
+		if (client.ourUser == null) client.ourUser = DiscordUtils.getUserFromJSON(shard, snapshot.user);
+
+		for (GuildObject json : snapshot.guilds) {
+			shard.guildCache.put(DiscordUtils.getGuildFromJSON(shard, json));
+		}
+
+		ws.sessionId = snapshot.session_id;
+		ws.seq = snapshot.seq;
+		ws.state = DiscordWS.State.RESUMING;
+		ws.restoredFromSnapshot = true;
+		Discord4J.LOGGER.info(LogMarkers.API, "Restored {} guilds from cache snapshot for shard {}.", snapshot.guilds.length, shard.getInfo()[0]);
+		return true;
+	}
+
+	/**
+	 * Reads a snapshot file by memory-mapping it.
+	 *
+	 * @param file The snapshot file.
+	 * @return The snapshot.
+	 * @throws IOException If the file could not be read.
+	 */
+	static SnapshotObject read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return DiscordUtils.MAPPER.readValue(new ByteBufferBackedInputStream(buffer), SnapshotObject.class);
+		}
+	}
+
+	private static GuildObject toGuildObject(Guild guild) {
+		GuildObject json = new GuildObject();
+		json.id = guild.getStringID();
+		json.name = guild.getName();
+		json.icon = guild.getIcon();
+		json.owner_id = Long.toUnsignedString(guild.getOwnerLongID());
+		json.region = guild.getRegionID();
+		IVoiceChannel afkChannel = guild.getAFKChannel();
+		json.afk_channel_id = afkChannel == null ? null : afkChannel.getStringID();
+		json.afk_timeout = guild.getAFKTimeout();
+		json.verification_level = guild.getVerificationLevel().ordinal();
+		IChannel systemChannel = guild.getSystemChannel();
+		json.system_channel_id = systemChannel == null ? null : systemChannel.getStringID();
+		json.member_count = guild.getTotalMemberCount();
+
+		// Positions are stored as indices into the sorted lists, which preserves their effective order
+		List<IRole> roles = guild.getRoles();
+		json.roles = new RoleObject[roles.size()];
+		for (int i = 0; i < roles.size(); i++) {
+			json.roles[i] = toRoleObject(roles.get(i), i);
+		}
+
+		List<ChannelObject> channels = new ArrayList<>();
+		List<IChannel> textChannels = guild.getChannels();
+		for (int i = 0; i < textChannels.size(); i++) {
+			channels.add(toChannelObject(textChannels.get(i), ChannelObject.Type.GUILD_TEXT, i));
+		}
+		List<IVoiceChannel> voiceChannels = guild.getVoiceChannels();
+		for (int i = 0; i < voiceChannels.size(); i++) {
+			channels.add(toChannelObject(voiceChannels.get(i), ChannelObject.Type.GUILD_VOICE, i));
+		}
+		List<ICategory> categories = guild.getCategories();
+		for (int i = 0; i < categories.size(); i++) {
+			channels.add(toCategoryObject(categories.get(i), i));
+		}
+		json.channels = channels.toArray(new ChannelObject[0]);
+
+		List<MemberObject> members = new ArrayList<>();
+		List<PresenceObject> presences = new ArrayList<>();
+		List<VoiceStateObject> voiceStates = new ArrayList<>();
+		guild.forEachUser((userID, user) -> {
+			members.add(toMemberObject(guild, (User) user));
+
+			IPresence presence = user.getPresence();
+			if (presence.getStatus() != StatusType.OFFLINE)
+				presences.add(toPresenceObject(user, presence));
+
+			IVoiceState voiceState = ((User) user).voiceStates.get(guild.getLongID());
+			if (voiceState != null && voiceState.getChannel() != null)
+				voiceStates.add(toVoiceStateObject(guild, user, voiceState));
+		});
+		json.members = members.toArray(new MemberObject[0]);
+		json.presences = presences.toArray(new PresenceObject[0]);
+		json.voice_states = voiceStates.toArray(new VoiceStateObject[0]);
+
+		List<IEmoji> emojis = guild.getEmojis();
+		json.emojis = new EmojiObject[emojis.size()];
+		for (int i = 0; i < emojis.size(); i++) {
+			json.emojis[i] = toEmojiObject(emojis.get(i));
+		}
+
+		return json;
+	}
+
+	private static UserObject toUserObject(IUser user) {
+		UserObject json = new UserObject();
+		json.id = user.getStringID();
+		json.username = user.getName();
+		json.discriminator = user.getDiscriminator();
+		json.avatar = user.getAvatar();
+		json.bot = user.isBot();
+		return json;
+	}
+
+	private static RoleObject toRoleObject(IRole role, int position) {
+		RoleObject json = new RoleObject();
+		json.id = role.getStringID();
+		json.name = role.getName();
+		json.color = role.getColor().getRGB();
+		json.hoist = role.isHoisted();
+		json.position = position;
+		json.permissions = Permissions.generatePermissionsNumber(role.getPermissions());
+		json.managed = role.isManaged();
+		json.mentionable = role.isMentionable();
+		return json;
+	}
+
+	private static ChannelObject toChannelObject(IChannel channel, int type, int position) {
+		ChannelObject json = new ChannelObject();
+		json.id = channel.getStringID();
+		json.type = type;
+		json.guild_id = channel.getGuild().getStringID();
+		json.position = position;
+		json.name = channel.getName();
+		json.topic = channel.getTopic();
+		json.nsfw = channel.isNSFW();
+		ICategory category = channel.getCategory();
+		json.parent_id = category == null ? null : category.getStringID();
+		json.permission_overwrites = toOverwriteObjects(channel.getUserOverrides(), channel.getRoleOverrides());
+		if (channel instanceof IVoiceChannel) {
+			json.bitrate = ((IVoiceChannel) channel).getBitrate();
+			json.user_limit = ((IVoiceChannel) channel).getUserLimit();
+		}
+		return json;
+	}
+
+	private static ChannelObject toCategoryObject(ICategory category, int position) {
+		ChannelObject json = new ChannelObject();
+		json.id = category.getStringID();
+		json.type = ChannelObject.Type.GUILD_CATEGORY;
+		json.guild_id = category.getGuild().getStringID();
+		json.position = position;
+		json.name = category.getName();
+		json.nsfw = category.isNSFW();
+		json.permission_overwrites = toOverwriteObjects(category.getUserOverrides(), category.getRoleOverrides());
+		return json;
+	}
+
+	private static OverwriteObject[] toOverwriteObjects(LongMap<PermissionOverride> userOverrides, LongMap<PermissionOverride> roleOverrides) {
+		List<OverwriteObject> overwrites = new ArrayList<>(userOverrides.size() + roleOverrides.size());
+		userOverrides.forEach((id, override) -> overwrites.add(toOverwriteObject("member", override)));
+		roleOverrides.forEach((id, override) -> overwrites.add(toOverwriteObject("role", override)));
+		return overwrites.toArray(new OverwriteObject[0]);
+	}
+
+	private static OverwriteObject toOverwriteObject(String type, PermissionOverride override) {
+		return new OverwriteObject(type, override.getStringID(),
+				Permissions.generatePermissionsNumber(override.allow()), Permissions.generatePermissionsNumber(override.deny()));
+	}
+
+	private static MemberObject toMemberObject(Guild guild, User user) {
+		long[] roles = user.getRoleIDsForGuild(guild.getLongID());
+		String[] roleIDs = new String[roles.length];
+		for (int i = 0; i < roles.length; i++) {
+			roleIDs[i] = Long.toUnsignedString(roles[i]);
+		}
+
+		MemberObject json = new MemberObject(toUserObject(user), roleIDs);
+		json.nick = user.getNicknameForGuild(guild);
+		if (guild.joinTimes.containsKey(user.getLongID()))
+			json.joined_at = guild.getJoinTimeForUser(user).toString();
+		IVoiceState voiceState = user.voiceStates.get(guild.getLongID());
+		if (voiceState != null) {
+			json.deaf = voiceState.isDeafened();
+			json.mute = voiceState.isMuted();
+		}
+		return json;
+	}
+
+	private static PresenceObject toPresenceObject(IUser user, IPresence presence) {
+		PresenceObject json = new PresenceObject();
+		json.user = new UserObject();
+		json.user.id = user.getStringID();
+		json.status = presence.getStatus().name().toLowerCase();
+		if (presence.getText().isPresent()) {
+			json.game = new GameObject(presence.getText().get(), presence.getActivity().orElse(ActivityType.PLAYING).ordinal());
+			json.game.url = presence.getStreamingUrl().orElse(null);
+		}
+		return json;
+	}
+
+	private static VoiceStateObject toVoiceStateObject(IGuild guild, IUser user, IVoiceState voiceState) {
+		VoiceStateObject json = new VoiceStateObject();
+		json.guild_id = guild.getStringID();
+		json.channel_id = voiceState.getChannel().getStringID();
+		json.user_id = user.getStringID();
+		json.session_id = voiceState.getSessionID();
+		json.deaf = voiceState.isDeafened();
+		json.mute = voiceState.isMuted();
+		json.self_deaf = voiceState.isSelfDeafened();
+		json.self_mute = voiceState.isSelfMuted();
+		json.suppress = voiceState.isSuppressed();
+		return json;
+	}
+
+	private static EmojiObject toEmojiObject(IEmoji emoji) {
+		EmojiObject json = new EmojiObject();
+		json.id = emoji.getStringID();
+		json.name = emoji.getName();
+		List<String> roleIDs = new ArrayList<>();
+		for (IRole role : emoji.getRoles()) {
+			if (role != null) roleIDs.add(role.getStringID());
+		}
+		json.roles = roleIDs.toArray(new String[0]);
+		json.require_colons = emoji.requiresColons();
+		json.managed = emoji.isManaged();
+		json.animated = emoji.isAnimated();
+		return json;
+	}
+}
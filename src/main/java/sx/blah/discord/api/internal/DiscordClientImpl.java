@@ -17,6 +17,7 @@
 
 package sx.blah.discord.api.internal;
 
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.IDiscordClient;
 import sx.blah.discord.api.IShard;
@@ -30,6 +31,7 @@ import sx.blah.discord.api.internal.json.requests.voice.VoiceStateUpdateRequest;
 import sx.blah.discord.api.internal.json.responses.ApplicationInfoResponse;
 import sx.blah.discord.api.internal.json.responses.GatewayResponse;
 import sx.blah.discord.handle.impl.events.ReadyEvent;
+import sx.blah.discord.handle.impl.events.shard.ShardRangeReadyEvent;
 import sx.blah.discord.handle.impl.events.shard.ShardReadyEvent;
 import sx.blah.discord.handle.impl.obj.Guild;
 import sx.blah.discord.handle.impl.obj.User;
@@ -38,14 +40,20 @@ import sx.blah.discord.handle.obj.*;
 import sx.blah.discord.modules.Configuration;
 import sx.blah.discord.modules.ModuleLoader;
 import sx.blah.discord.util.*;
+import sx.blah.discord.util.cache.Cache;
+import sx.blah.discord.util.cache.CacheStatistics;
+import sx.blah.discord.util.cache.CacheStats;
 import sx.blah.discord.util.cache.ICacheDelegateProvider;
+import sx.blah.discord.util.cache.NameIndex;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * The default implementation of {@link IDiscordClient}.
@@ -92,6 +100,11 @@ public final class DiscordClientImpl implements IDiscordClient {
 	 */
 	final int maxMissedPings;
 
+	/**
+	 * Whether gateway payloads are encoded in Erlang's External Term Format instead of JSON.
+	 */
+	final boolean etfEncoding;
+
 	/**
 	 * Whether the websocket should act as a daemon.
 	 */
@@ -102,20 +115,52 @@ public final class DiscordClientImpl implements IDiscordClient {
 	 */
 	private int shardCount;
 
+	/**
+	 * The total number of shards of the bot, including those which are managed by other processes.
+	 */
+	private final int totalShards;
+
+	/**
+	 * The minimum time in milliseconds between the logins of two shards.
+	 */
+	private static final long IDENTIFY_INTERVAL = 5000;
+
 	/**
 	 * Provides cache objects used by this client.
 	 */
 	private final ICacheDelegateProvider cacheProvider;
 
 	/**
-	 * The sharding information for this client.
+	 * Provides cache objects for internal indexes of objects which are already stored in other caches. These are not
+	 * recorded in the cache statistics, so the indexed objects aren't counted twice.
+	 */
+	private final ICacheDelegateProvider indexCacheProvider;
+
+	/**
+	 * The usage statistics of the client's caches (or null if they are disabled).
 	 */
-	private final int[] shard;
+	private final CacheStatistics cacheStatistics;
+
+	/**
+	 * The canonical store of every user which is a member of at least one guild the client can see. Each user is only
+	 * stored once, no matter how many guilds (or shards) they are visible from.
+	 */
+	public final Cache<IUser> userCache;
+
+	/**
+	 * The names of every user the client can see (or null if name indexes are disabled).
+	 */
+	public final NameIndex userNames;
+
+	/**
+	 * The indexes of the shards this client manages, in the order they log in.
+	 */
+	private final int[] shardIndexes;
 
 	/**
 	 * The requests holder object.
 	 */
-	public final Requests REQUESTS = new Requests(this);
+	public final Requests REQUESTS;
 
 	/**
 	 * Timer to keep the program alive if the client is not daemon
@@ -123,9 +168,9 @@ public final class DiscordClientImpl implements IDiscordClient {
 	volatile Timer keepAlive;
 
 	/**
-	 * The number of times the client will retry on a 5xx HTTP response from Discord.
+	 * The policy for retrying on a 5xx HTTP response from Discord.
 	 */
-	private final int retryCount;
+	private final RetryPolicy retryPolicy;
 
 	/**
 	 * The maximum number of messages that will be cached per channel.
@@ -137,24 +182,42 @@ public final class DiscordClientImpl implements IDiscordClient {
 	 */
 	private final PresenceUpdateRequest identifyPresence;
 
+	/**
+	 * The directory shard cache snapshots are stored in (or null if snapshots are disabled).
+	 */
+	private final File cacheSnapshotDirectory;
+
 	/**
 	 * The ID of the owner of this application.
 	 */
 	private volatile long applicationOwnerID;
 
 	public DiscordClientImpl(String token, int shardCount, boolean isDaemon, int maxMissedPings, int maxReconnectAttempts,
-							 int retryCount, int maxCacheCount, ICacheDelegateProvider provider, int[] shard,
+							 RetryPolicy retryPolicy, int maxCacheCount, ICacheDelegateProvider provider, int[] shardIndexes,
 							 RejectedExecutionHandler backpressureHandler, int minimumPoolSize, int maximumPoolSize,
 							 int overflowCapacity, long eventThreadTimeout, TimeUnit eventThreadTimeoutUnit,
-							 PresenceUpdateRequest identifyPresence) {
+							 PresenceUpdateRequest identifyPresence, File cacheSnapshotDirectory,
+							 CacheStatistics cacheStatistics, boolean nameIndexes, int maxHttpConnections, long httpKeepAlive,
+							 long getSharingWindow, Map<ResponseCache.Endpoint, Long> responseCacheTTLs,
+							 int reservedHttpConnections, File sharedRateLimitFile, boolean etfEncoding) {
 		this.token = "Bot " + token;
-		this.retryCount = retryCount;
+		this.REQUESTS = new Requests(this, maxHttpConnections, httpKeepAlive, getSharingWindow, responseCacheTTLs,
+				reservedHttpConnections, sharedRateLimitFile);
+		this.retryPolicy = retryPolicy;
 		this.maxMissedPings = maxMissedPings;
+		this.etfEncoding = etfEncoding;
 		this.isDaemon = isDaemon;
-		this.shardCount = shardCount == -1 ? 1 : shardCount;
+		this.totalShards = shardCount;
+		this.shardIndexes = shardIndexes == null ? IntStream.range(0, shardCount).toArray() : shardIndexes.clone();
+		this.shardCount = this.shardIndexes.length;
 		this.maxCacheCount = maxCacheCount;
-		this.cacheProvider = provider;
-		this.shard = shard;
+		this.cacheStatistics = cacheStatistics;
+		this.cacheProvider = cacheStatistics == null ? provider : cacheStatistics.instrument(provider);
+		this.indexCacheProvider = provider;
+		this.userCache = new Cache<>(this, IUser.class);
+		this.userNames = nameIndexes ? new NameIndex() : null;
+		if (userNames != null)
+			userCache.indexNames(userNames, IUser::getName);
 		this.dispatcher = new EventDispatcher(this, backpressureHandler, minimumPoolSize, maximumPoolSize,
 				overflowCapacity, eventThreadTimeout, eventThreadTimeoutUnit);
 		this.reconnectManager = new ReconnectManager(this, maxReconnectAttempts);
@@ -166,6 +229,7 @@ public final class DiscordClientImpl implements IDiscordClient {
 		}
 
 		this.identifyPresence = identifyPresence;
+		this.cacheSnapshotDirectory = cacheSnapshotDirectory;
 
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			if (this.keepAlive != null)
@@ -365,18 +429,16 @@ public final class DiscordClientImpl implements IDiscordClient {
 
 	@Override
 	public List<ICategory> getCategoriesByName(String name) {
-		return shards.stream()
-				.map(IShard::getCategories)
-				.flatMap(List::stream)
-				.filter(category -> category.getName().equals(name))
-				.collect(Collectors.toList());
+		List<ICategory> categories = new ArrayList<>();
+		forEachGuild((guildID, guild) -> categories.addAll(guild.getCategoriesByName(name)));
+		return categories;
 	}
 
 	private String obtainGateway() {
 		String gateway = null;
 		try {
 			GatewayResponse response = REQUESTS.GET.makeRequest(DiscordEndpoints.GATEWAY, GatewayResponse.class);
-			gateway = response.url + "?encoding=json&v=" + DiscordUtils.API_VERSION;
+			gateway = response.url + "?encoding=" + (etfEncoding ? "etf" : "json") + "&v=" + DiscordUtils.API_VERSION;
 		} catch (RateLimitException | DiscordException e) {
 			Discord4J.LOGGER.error(LogMarkers.API, "Discord4J Internal Exception", e);
 		}
@@ -397,30 +459,26 @@ public final class DiscordClientImpl implements IDiscordClient {
 		}
 
 		validateToken();
+		if (cacheStatistics != null) cacheStatistics.registerMBeans(); // In case they were unregistered by a logout
 
 		String gateway = obtainGateway();
 		new RequestBuilder(this).setAsync(true).doAction(() -> {
-			if (shard != null) {
-				ShardImpl shardObj = new ShardImpl(this, gateway, new int[]{shard[0], shard[1]}, identifyPresence);
-				getShards().add(shardObj);
-				shardObj.login();
+			long lastLogin = 0;
+			for (int shardIndex : shardIndexes) {
+				long wait = lastLogin + IDENTIFY_INTERVAL - System.currentTimeMillis();
+				if (lastLogin != 0 && wait > 0) { // Discord only allows one shard to identify every 5 seconds
+					Discord4J.LOGGER.trace(LogMarkers.API, "Sleeping for login ratelimit.");
+					Thread.sleep(wait);
+				}
+
+				ShardImpl shard = new ShardImpl(this, gateway, new int[]{shardIndex, totalShards}, identifyPresence);
+				getShards().add(shard);
+				lastLogin = System.currentTimeMillis();
+				shard.login();
 
 				getDispatcher().waitFor(ShardReadyEvent.class);
-			} else {
-				for (int i = 0; i < shardCount; i++) {
-					final int shardNum = i;
-					ShardImpl shard = new ShardImpl(this, gateway, new int[]{shardNum, shardCount}, identifyPresence);
-					getShards().add(shardNum, shard);
-					shard.login();
-
-					getDispatcher().waitFor(ShardReadyEvent.class);
-
-					if (i != shardCount - 1) { // all but last
-						Discord4J.LOGGER.trace(LogMarkers.API, "Sleeping for login ratelimit.");
-						Thread.sleep(5000);
-					}
-				}
 			}
+			getDispatcher().dispatch(new ShardRangeReadyEvent(new ArrayList<>(getShards()), totalShards));
 			getDispatcher().dispatch(new ReadyEvent());
 			return true;
 		}).build();
@@ -443,6 +501,7 @@ public final class DiscordClientImpl implements IDiscordClient {
 		}
 		getShards().clear();
 		if (keepAlive != null) keepAlive.cancel();
+		if (cacheStatistics != null) cacheStatistics.unregisterMBeans();
 	}
 
 	@Override
@@ -508,10 +567,9 @@ public final class DiscordClientImpl implements IDiscordClient {
 
 	@Override
 	public List<IGuild> getGuilds() {
-		return getShards().stream()
-				.map(IShard::getGuilds)
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IGuild> guilds = new ArrayList<>();
+		forEachGuild((guildID, guild) -> guilds.add(guild));
+		return guilds;
 	}
 
 	@Override
@@ -525,20 +583,27 @@ public final class DiscordClientImpl implements IDiscordClient {
 		return null;
 	}
 
+	@Override
+	public void forEachGuild(LongObjConsumer<? super IGuild> action) {
+		for (IShard shard : shards) {
+			shard.forEachGuild(action);
+		}
+	}
+
 	@Override
 	public List<IChannel> getChannels(boolean includePrivate) {
-		return getShards().stream()
-				.map(c -> c.getChannels(includePrivate))
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IChannel> channels = new ArrayList<>();
+		for (IShard shard : shards) {
+			channels.addAll(shard.getChannels(includePrivate));
+		}
+		return channels;
 	}
 
 	@Override
 	public List<IChannel> getChannels() {
-		return getShards().stream()
-				.map(IShard::getChannels)
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IChannel> channels = new ArrayList<>();
+		forEachChannel((channelID, channel) -> channels.add(channel));
+		return channels;
 	}
 
 	@Override
@@ -552,12 +617,20 @@ public final class DiscordClientImpl implements IDiscordClient {
 		return null;
 	}
 
+	@Override
+	public void forEachChannel(LongObjConsumer<? super IChannel> action) {
+		for (IShard shard : shards) {
+			shard.forEachChannel(action);
+		}
+	}
+
 	@Override
 	public List<IVoiceChannel> getVoiceChannels() {
-		return getShards().stream()
-				.map(IShard::getVoiceChannels)
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IVoiceChannel> voiceChannels = new ArrayList<>();
+		for (IShard shard : shards) {
+			voiceChannels.addAll(shard.getVoiceChannels());
+		}
+		return voiceChannels;
 	}
 
 	@Override
@@ -578,22 +651,26 @@ public final class DiscordClientImpl implements IDiscordClient {
 
 	@Override
 	public List<IUser> getUsers() {
-		return getShards().stream()
-				.map(IShard::getUsers)
-				.flatMap(List::stream)
-				.distinct()
-				.collect(Collectors.toList());
+		List<IUser> users = new ArrayList<>(userCache.values());
+		if (ourUser != null && !userCache.containsKey(ourUser.getLongID()))
+			users.add(ourUser);
+
+		return users;
 	}
 
 	@Override
 	public IUser getUserByID(long userID) {
-		for (IShard shard : shards) {
-			IUser user = shard.getUserByID(userID);
-			if (user != null)
-				return user;
-		}
+		IUser ourUser = this.ourUser;
+		if (ourUser != null && userID == ourUser.getLongID()) return ourUser;
+		return userCache.get(userID);
+	}
 
-		return null;
+	@Override
+	public void forEachUser(LongObjConsumer<? super IUser> action) {
+		IUser ourUser = this.ourUser;
+		userCache.forEach(action);
+		if (ourUser != null && !userCache.containsKey(ourUser.getLongID()))
+			action.accept(ourUser.getLongID(), ourUser);
 	}
 
 	@Override
@@ -609,17 +686,28 @@ public final class DiscordClientImpl implements IDiscordClient {
 
 	@Override
 	public List<IUser> getUsersByName(String name, boolean ignoreCase) {
-		return getUsers().stream()
-				.filter(u -> ignoreCase ? u.getName().equalsIgnoreCase(name) : u.getName().equals(name))
-				.collect(Collectors.toList());
+		if (userNames != null) {
+			List<IUser> users = userNames.get(name, ignoreCase, userCache::get, IUser::getName);
+			IUser ourUser = this.ourUser; // Only stored in the user cache while it is a member of a guild
+			if (ourUser != null && !userCache.containsKey(ourUser.getLongID())
+					&& (ignoreCase ? ourUser.getName().equalsIgnoreCase(name) : ourUser.getName().equals(name)))
+				users.add(ourUser);
+			return users;
+		}
+
+		List<IUser> users = new ArrayList<>();
+		forEachUser((userID, user) -> {
+			if (ignoreCase ? user.getName().equalsIgnoreCase(name) : user.getName().equals(name))
+				users.add(user);
+		});
+		return users;
 	}
 
 	@Override
 	public List<IRole> getRoles() {
-		return getShards().stream()
-				.map(IShard::getRoles)
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IRole> roles = new ArrayList<>();
+		forEachRole((roleID, role) -> roles.add(role));
+		return roles;
 	}
 
 	@Override
@@ -633,6 +721,13 @@ public final class DiscordClientImpl implements IDiscordClient {
 		return null;
 	}
 
+	@Override
+	public void forEachRole(LongObjConsumer<? super IRole> action) {
+		for (IShard shard : shards) {
+			shard.forEachRole(action);
+		}
+	}
+
 	@Override
 	public List<IMessage> getMessages(boolean includePrivate) {
 		return getShards().stream()
@@ -672,7 +767,16 @@ public final class DiscordClientImpl implements IDiscordClient {
 	}
 
 	public int getRetryCount() {
-		return retryCount;
+		return retryPolicy.getMaxRetries();
+	}
+
+	/**
+	 * Gets the policy for retrying on a 5xx HTTP response from Discord.
+	 *
+	 * @return The retry policy.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
 	}
 
 	public int getMaxCacheCount() {
@@ -682,4 +786,37 @@ public final class DiscordClientImpl implements IDiscordClient {
 	public ICacheDelegateProvider getCacheProvider() {
 		return cacheProvider;
 	}
+
+	/**
+	 * Gets the provider of cache objects for internal indexes of objects which are already stored in other caches.
+	 * Unlike {@link #getCacheProvider()}, these caches are not recorded in the cache statistics.
+	 *
+	 * @return The provider of index caches.
+	 */
+	public ICacheDelegateProvider getIndexCacheProvider() {
+		return indexCacheProvider;
+	}
+
+	/**
+	 * Gets whether name indexes are maintained for name-based lookups.
+	 *
+	 * @return Whether name indexes are enabled.
+	 */
+	public boolean areNameIndexesEnabled() {
+		return userNames != null;
+	}
+
+	/**
+	 * Gets the directory shard cache snapshots are stored in.
+	 *
+	 * @return The directory shard cache snapshots are stored in (or null if snapshots are disabled).
+	 */
+	public File getCacheSnapshotDirectory() {
+		return cacheSnapshotDirectory;
+	}
+
+	@Override
+	public Map<Class<?>, CacheStats> getCacheStatistics() {
+		return cacheStatistics == null ? Collections.emptyMap() : cacheStatistics.getAll();
+	}
 }
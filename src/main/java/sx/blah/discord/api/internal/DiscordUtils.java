@@ -180,7 +180,8 @@ public class DiscordUtils {
 			return null;
 
 		User user;
-		if (shard != null && (user = (User) shard.getUserByID(Long.parseUnsignedLong(response.id))) != null) {
+		// Users are looked up client-wide so that a user which is visible from several shards is only stored once
+		if (shard != null && (user = (User) shard.getClient().getUserByID(Long.parseUnsignedLong(response.id))) != null) {
 			user.setAvatar(response.avatar);
 			user.setName(response.username);
 			user.setDiscriminator(response.discriminator);
@@ -310,13 +311,7 @@ public class DiscordUtils {
 			guild.roles.clear();
 			guild.roles.putAll(newRoles);
 
-			for (IUser user : guild.getUsers()) { //Removes all deprecated roles
-				for (IRole role : user.getRolesForGuild(guild)) {
-					if (guild.getRoleByID(role.getLongID()) == null) {
-						user.getRolesForGuild(guild).remove(role);
-					}
-				}
-			}
+			guild.retainMemberRoles(guild.roles::containsKey); //Removes all deprecated roles
 		} else {
 			guild = new Guild(shard, json.name, guildId, json.icon, Long.parseUnsignedLong(json.owner_id),
 					json.afk_channel_id == null ? 0 : Long.parseUnsignedLong(json.afk_channel_id), json.afk_timeout,
@@ -331,7 +326,7 @@ public class DiscordUtils {
 			if (json.members != null) {
 				for (MemberObject member : json.members) {
 					IUser user = getUserFromGuildMemberResponse(guild, member);
-					guild.users.put(user);
+					guild.addMember(user);
 				}
 			}
 
@@ -379,6 +374,26 @@ public class DiscordUtils {
 		return guild;
 	}
 
+	/**
+	 * Converts the role IDs of a json member to the unique snowflake IDs of the roles it has in a guild. Roles which
+	 * are not cached in the guild are skipped and the @everyone role is always included.
+	 *
+	 * @param guild The guild the member belongs to.
+	 * @param roles The role IDs of the json member.
+	 * @return The IDs of the roles the member has in the guild.
+	 */
+	public static long[] getRoleIDs(IGuild guild, String[] roles) {
+		long[] roleIDs = new long[roles.length + 1];
+		int length = 0;
+		for (String role : roles) {
+			long roleID = Long.parseUnsignedLong(role);
+			if (guild.getRoleByID(roleID) != null)
+				roleIDs[length++] = roleID;
+		}
+		roleIDs[length++] = guild.getLongID(); //@everyone role
+		return length == roleIDs.length ? roleIDs : Arrays.copyOf(roleIDs, length);
+	}
+
 	/**
 	 * Converts a json {@link MemberObject} to a {@link IUser}. This method uses {@link #getUserFromJSON(IShard, UserObject)}
 	 * to get or create a {@link IUser} and then updates the guild's appropriate member caches for that user.
@@ -389,17 +404,18 @@ public class DiscordUtils {
 	 */
 	public static IUser getUserFromGuildMemberResponse(IGuild guild, MemberObject json) {
 		User user = getUserFromJSON(guild.getShard(), json.user);
-		for (String role : json.roles) {
-			Role roleObj = (Role) guild.getRoleByID(Long.parseUnsignedLong(role));
-			if (roleObj != null && !user.getRolesForGuild(guild).contains(roleObj))
-				user.addRole(guild.getLongID(), roleObj);
-		}
-		user.addRole(guild.getLongID(), guild.getRoleByID(guild.getLongID())); //@everyone role
-		user.addNick(guild.getLongID(), json.nick);
+		((Guild) guild).setMemberRoles(user, getRoleIDs(guild, json.roles));
+		((Guild) guild).setMemberNick(user, json.nick);
 
-		VoiceState voiceState = (VoiceState) user.getVoiceStateForGuild(guild);
-		voiceState.setDeafened(json.deaf);
-		voiceState.setMuted(json.mute);
+		// Most members are neither deafened nor muted, so avoid materializing a voice state for them
+		VoiceState voiceState = (VoiceState) user.voiceStates.get(guild.getLongID());
+		if (voiceState == null && (json.deaf || json.mute)) {
+			voiceState = (VoiceState) user.getVoiceStateForGuild(guild);
+		}
+		if (voiceState != null) {
+			voiceState.setDeafened(json.deaf);
+			voiceState.setMuted(json.mute);
+		}
 
 		((Guild) guild).joinTimes.put(new Guild.TimeStampHolder(user.getLongID(), convertFromTimestamp(json.joined_at)));
 		return user;
@@ -555,6 +571,7 @@ public class DiscordUtils {
 				channel.roleOverrides.clear();
 				channel.userOverrides.putAll(overrides.getLeft());
 				channel.roleOverrides.putAll(overrides.getRight());
+				channel.invalidatePermissions();
 				channel.setCategoryID(categoryID);
 
 				if (json.type == ChannelObject.Type.GUILD_TEXT) {
@@ -33,6 +33,8 @@ import sx.blah.discord.api.internal.json.requests.PresenceUpdateRequest;
 import sx.blah.discord.api.internal.json.requests.ResumeRequest;
 import sx.blah.discord.api.internal.json.responses.ReadyResponse;
 import sx.blah.discord.handle.impl.events.shard.DisconnectedEvent;
+import sx.blah.discord.handle.impl.obj.Guild;
+import sx.blah.discord.handle.obj.IGuild;
 import sx.blah.discord.util.LogMarkers;
 
 import java.io.BufferedReader;
@@ -41,8 +43,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.zip.InflaterInputStream;
@@ -102,6 +107,11 @@ public class DiscordWS extends WebSocketAdapter {
 	 */
 	private final PresenceUpdateRequest identifyPresence;
 
+	/**
+	 * Whether payloads are encoded in Erlang's External Term Format instead of JSON.
+	 */
+	private final boolean etf;
+
 	/**
 	 * Indicates whether the bot has received all available guilds.
 	 */
@@ -112,6 +122,12 @@ public class DiscordWS extends WebSocketAdapter {
 	 */
 	public boolean hasReceivedReady = false;
 
+	/**
+	 * Indicates whether the shard's cache was restored from a {@link CacheSnapshot} and the connection is resuming the
+	 * snapshotted session rather than reconnecting.
+	 */
+	volatile boolean restoredFromSnapshot = false;
+
 	DiscordWS(IShard shard, String gateway, int maxMissedPings, PresenceUpdateRequest identifyPresence) {
 		this.client = (DiscordClientImpl) shard.getClient();
 		this.shard = (ShardImpl) shard;
@@ -119,6 +135,7 @@ public class DiscordWS extends WebSocketAdapter {
 		this.dispatchHandler = new DispatchHandler(this, this.shard);
 		this.heartbeatHandler = new HeartbeatHandler(this, maxMissedPings);
 		this.identifyPresence = identifyPresence;
+		this.etf = client.etfEncoding;
 		this.state = State.CONNECTING;
 	}
 
@@ -129,54 +146,62 @@ public class DiscordWS extends WebSocketAdapter {
 				Discord4J.LOGGER.trace(LogMarkers.WEBSOCKET_TRAFFIC, "Received: " + message);
 			}
 
-			JsonNode json = DiscordUtils.MAPPER.readTree(message);
-			GatewayOps op = GatewayOps.get(json.get("op").asInt());
-			JsonNode d = json.has("d") && !json.get("d").isNull() ? json.get("d") : null;
+			onPayload(DiscordUtils.MAPPER.readTree(message));
+		} catch (IOException e) {
+			Discord4J.LOGGER.error(LogMarkers.WEBSOCKET, "JSON Parsing exception!", e);
+		}
+	}
+
+	/**
+	 * Handles a payload received from the gateway, whichever encoding it was received in.
+	 *
+	 * @param json The payload.
+	 */
+	private void onPayload(JsonNode json) {
+		GatewayOps op = GatewayOps.get(json.get("op").asInt());
+		JsonNode d = json.has("d") && !json.get("d").isNull() ? json.get("d") : null;
 
-			if (json.has("s") && !json.get("s").isNull()) seq = json.get("s").longValue();
+		if (json.has("s") && !json.get("s").isNull()) seq = json.get("s").longValue();
 
-			switch (op) {
-				case HELLO:
-					Discord4J.LOGGER.trace(LogMarkers.WEBSOCKET, "Shard {} _trace: {}", shard.getInfo()[0], d.get("_trace").toString());
+		switch (op) {
+			case HELLO:
+				Discord4J.LOGGER.trace(LogMarkers.WEBSOCKET, "Shard {} _trace: {}", shard.getInfo()[0], d.get("_trace").toString());
 
-					heartbeatHandler.begin(d.get("heartbeat_interval").intValue());
-					if (this.state != State.RESUMING) {
-						send(GatewayOps.IDENTIFY, new IdentifyRequest(client.getToken(), shard.getInfo(), identifyPresence));
-					} else {
-						client.reconnectManager.onReconnectSuccess();
-						send(GatewayOps.RESUME, new ResumeRequest(client.getToken(), sessionId, seq));
-					}
-					break;
-				case RECONNECT:
-					this.state = State.RESUMING;
-					client.getDispatcher().dispatch(new DisconnectedEvent(DisconnectedEvent.Reason.RECONNECT_OP, shard));
-					heartbeatHandler.shutdown();
+				heartbeatHandler.begin(d.get("heartbeat_interval").intValue());
+				if (this.state != State.RESUMING) {
+					send(GatewayOps.IDENTIFY, new IdentifyRequest(client.getToken(), shard.getInfo(), identifyPresence));
+				} else {
+					if (!restoredFromSnapshot) client.reconnectManager.onReconnectSuccess();
 					send(GatewayOps.RESUME, new ResumeRequest(client.getToken(), sessionId, seq));
-					break;
-				case DISPATCH:
-					try {
-						dispatchHandler.handle(json);
-					} catch (Exception e) {
-						Discord4J.LOGGER.error(LogMarkers.WEBSOCKET, "Discord4J Internal Exception", e);
-					}
-					break;
-				case INVALID_SESSION:
-					this.state = State.RECONNECTING;
-					client.getDispatcher().dispatch(new DisconnectedEvent(DisconnectedEvent.Reason.INVALID_SESSION_OP, shard));
-					invalidate();
-					send(GatewayOps.IDENTIFY, new IdentifyRequest(client.getToken(), shard.getInfo(), null)); // TODO: try to maintain previous presence?
-					break;
-				case HEARTBEAT:
-					send(GatewayOps.HEARTBEAT, seq);
-				case HEARTBEAT_ACK:
-					heartbeatHandler.ack();
-					break;
-				case UNKNOWN:
-					Discord4J.LOGGER.debug(LogMarkers.WEBSOCKET, "Received unknown opcode, {}", message);
-					break;
-			}
-		} catch (IOException e) {
-			Discord4J.LOGGER.error(LogMarkers.WEBSOCKET, "JSON Parsing exception!", e);
+				}
+				break;
+			case RECONNECT:
+				this.state = State.RESUMING;
+				client.getDispatcher().dispatch(new DisconnectedEvent(DisconnectedEvent.Reason.RECONNECT_OP, shard));
+				heartbeatHandler.shutdown();
+				send(GatewayOps.RESUME, new ResumeRequest(client.getToken(), sessionId, seq));
+				break;
+			case DISPATCH:
+				try {
+					dispatchHandler.handle(json);
+				} catch (Exception e) {
+					Discord4J.LOGGER.error(LogMarkers.WEBSOCKET, "Discord4J Internal Exception", e);
+				}
+				break;
+			case INVALID_SESSION:
+				this.state = State.RECONNECTING;
+				client.getDispatcher().dispatch(new DisconnectedEvent(DisconnectedEvent.Reason.INVALID_SESSION_OP, shard));
+				invalidate();
+				send(GatewayOps.IDENTIFY, new IdentifyRequest(client.getToken(), shard.getInfo(), null)); // TODO: try to maintain previous presence?
+				break;
+			case HEARTBEAT:
+				send(GatewayOps.HEARTBEAT, seq);
+			case HEARTBEAT_ACK:
+				heartbeatHandler.ack();
+				break;
+			case UNKNOWN:
+				Discord4J.LOGGER.debug(LogMarkers.WEBSOCKET, "Received unknown opcode, {}", json);
+				break;
 		}
 	}
 
@@ -226,6 +251,19 @@ public class DiscordWS extends WebSocketAdapter {
 
 	@Override
 	public void onWebSocketBinary(byte[] payload, int offset, int len) {
+		if (etf) {
+			try {
+				JsonNode json = EtfCodec.decode(payload, offset, len);
+				if (Discord4J.LOGGER.isTraceEnabled(LogMarkers.WEBSOCKET_TRAFFIC)) {
+					Discord4J.LOGGER.trace(LogMarkers.WEBSOCKET_TRAFFIC, "Received: " + json);
+				}
+				onPayload(json);
+			} catch (IOException e) {
+				Discord4J.LOGGER.error(LogMarkers.WEBSOCKET, "ETF Parsing exception!", e);
+			}
+			return;
+		}
+
 		BufferedReader reader = new BufferedReader(new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(payload, offset, len))));
 		onWebSocketText(reader.lines().collect(Collectors.joining()));
 		try {
@@ -266,12 +304,22 @@ public class DiscordWS extends WebSocketAdapter {
 	 * Closes the websocket connection and resets state.
 	 */
 	void shutdown() {
+		shutdown(false);
+	}
+
+	/**
+	 * Closes the websocket connection and resets state.
+	 *
+	 * @param resumable Whether the gateway session should stay resumable after the connection is closed.
+	 */
+	void shutdown(boolean resumable) {
 		Discord4J.LOGGER.debug(LogMarkers.WEBSOCKET, "Shard {} shutting down.", shard.getInfo()[0]);
 		this.state = State.DISCONNECTING;
 
 		try {
 			heartbeatHandler.shutdown();
-			getSession().close(1000, null); // Discord doesn't care about the reason
+			// Discord doesn't care about the reason, but a normal closure invalidates the session
+			getSession().close(resumable ? 4000 : 1000, null);
 			wsClient.stop();
 			hasReceivedReady = false;
 			isReady = false;
@@ -288,7 +336,12 @@ public class DiscordWS extends WebSocketAdapter {
 		this.hasReceivedReady = false;
 		this.seq = 0;
 		this.sessionId = null;
+		this.restoredFromSnapshot = false;
+		// The guilds are copied first, so the user cache is never written to while the guild cache is locked
+		List<IGuild> guilds = new ArrayList<>(this.shard.guildCache.size());
+		this.shard.guildCache.forEach((guildID, guild) -> guilds.add(guild));
 		this.shard.guildCache.clear();
+		guilds.forEach(guild -> ((Guild) guild).releaseMembers());
 		this.shard.privateChannels.clear();
 	}
 
@@ -308,6 +361,19 @@ public class DiscordWS extends WebSocketAdapter {
 	 * @param payload The message to serialize and send.
 	 */
 	public void send(GatewayPayload payload) {
+		if (etf) {
+			JsonNode json = DiscordUtils.MAPPER.valueToTree(payload);
+			if (getSession() != null && getSession().isOpen()) {
+				// Only render the payload as text when it is actually logged
+				if (Discord4J.LOGGER.isTraceEnabled(LogMarkers.WEBSOCKET_TRAFFIC))
+					Discord4J.LOGGER.trace(LogMarkers.WEBSOCKET_TRAFFIC, "Sending: " + json.toString().replace(client.getToken(), "hunter2"));
+				getSession().getRemote().sendBytesByFuture(ByteBuffer.wrap(EtfCodec.encode(json)));
+			} else {
+				Discord4J.LOGGER.warn(LogMarkers.WEBSOCKET, "Attempt to send message on closed session: {}", json.toString().replace(client.getToken(), "hunter2"));
+			}
+			return;
+		}
+
 		try {
 			send(DiscordUtils.MAPPER.writeValueAsString(payload));
 		} catch (JsonProcessingException e) {
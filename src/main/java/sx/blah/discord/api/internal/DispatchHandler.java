@@ -268,6 +268,11 @@ class DispatchHandler {
 		ws.hasReceivedReady = true; // Technically a lie but irrelevant in the case of a resume.
 		ws.isReady = true;          //
 		client.getDispatcher().dispatch(new ResumedEvent(shard));
+
+		if (ws.restoredFromSnapshot) { // The shard was started from a cache snapshot, so it is now fully usable
+			ws.restoredFromSnapshot = false;
+			client.getDispatcher().dispatch(new ShardReadyEvent(shard));
+		}
 	}
 
 	private void messageCreate(MessageObject json) {
@@ -290,7 +295,7 @@ class DispatchHandler {
 			// check if our user is mentioned through role mentions
 			if (!mentioned) { //Not worth checking if already mentioned
 				for (String role : json.mention_roles) { //Check roles for a mention
-					if (client.getOurUser().getRolesForGuild(channel.getGuild()).contains(channel.getGuild().getRoleByID(Long.parseUnsignedLong(role)))) {
+					if (((User) client.getOurUser()).hasRole(channel.getGuild().getLongID(), Long.parseUnsignedLong(role))) {
 						mentioned = true;
 						break;
 					}
@@ -372,7 +377,7 @@ class DispatchHandler {
 		Guild guild = (Guild) client.getGuildByID(guildID);
 		if (guild != null) {
 			User user = (User) DiscordUtils.getUserFromGuildMemberResponse(guild, new MemberObject(event.user, event.roles));
-			guild.users.put(user);
+			guild.addMember(user);
 			guild.setTotalMemberCount(guild.getTotalMemberCount() + 1);
 			Instant timestamp = DiscordUtils.convertFromTimestamp(event.joined_at);
 			Discord4J.LOGGER.debug(LogMarkers.EVENTS, "User \"{}\" joined guild \"{}\".", user.getName(), guild.getName());
@@ -386,9 +391,7 @@ class DispatchHandler {
 		if (guild != null) {
 			User user = (User) guild.getUserByID(Long.parseUnsignedLong(event.user.id));
 			if (user != null) {
-				guild.users.remove(user);
-				guild.joinTimes.remove(user);
-				user.roles.remove(guild);
+				guild.removeMember(user);
 				guild.setTotalMemberCount(guild.getTotalMemberCount() - 1);
 				Discord4J.LOGGER.debug(LogMarkers.EVENTS, "User \"{}\" has been removed from or left guild \"{}\".", user.getName(), guild.getName());
 				client.dispatcher.dispatch(new UserLeaveEvent(guild, user));
@@ -401,30 +404,11 @@ class DispatchHandler {
 		User user = (User) client.getUserByID(Long.parseUnsignedLong(event.user.id));
 
 		if (guild != null && user != null) {
-			List<IRole> oldRoles = user.getRolesForGuild(guild);
-			boolean rolesChanged = oldRoles.size() != event.roles.length + 1;//Add one for the @everyone role
-			if (!rolesChanged) {
-				rolesChanged = oldRoles.stream().filter(role -> {
-					if (role.equals(guild.getEveryoneRole()))
-						return false;
-
-					for (String roleID : event.roles) {
-						if (role.getLongID() == Long.parseUnsignedLong(roleID)) {
-							return false;
-						}
-					}
-
-					return true;
-				}).collect(Collectors.toList()).size() > 0;
-			}
-
-			if (rolesChanged) {
-				user.roles.remove(guild);
-
-				for (String role : event.roles)
-					user.addRole(guild.getLongID(), guild.getRoleByID(Long.parseUnsignedLong(role)));
-
-				user.addRole(guild.getLongID(), guild.getEveryoneRole());
+			long[] newRoleIDs = DiscordUtils.getRoleIDs(guild, event.roles);
+			Arrays.sort(newRoleIDs);
+			if (!Arrays.equals(newRoleIDs, user.getRoleIDsForGuild(guild.getLongID()))) {
+				List<IRole> oldRoles = user.getRolesForGuild(guild);
+				guild.setMemberRoles(user, newRoleIDs);
 
 				client.dispatcher.dispatch(new UserRoleUpdateEvent(guild, user, oldRoles, user.getRolesForGuild(guild)));
 
@@ -436,7 +420,7 @@ class DispatchHandler {
 			if ((oldNick == null ^ event.nick == null)
 					|| (oldNick != null && !oldNick.equals(event.nick))
 					|| event.nick != null && !event.nick.equals(oldNick)) {
-				user.addNick(guild.getLongID(), event.nick);
+				guild.setMemberNick(user, event.nick);
 				client.dispatcher.dispatch(new NicknameChangedEvent(guild, user, oldNick, event.nick));
 			}
 		}
@@ -522,8 +506,11 @@ class DispatchHandler {
 		Guild guild = (Guild) client.getGuildByID(guildId);
 
 		// Clean up cache
+		client.REQUESTS.getResponseCache().invalidate(ResponseCache.Endpoint.GUILD_BANS, guildId);
+		client.REQUESTS.getResponseCache().invalidate(ResponseCache.Endpoint.GUILD_INVITES, guildId);
 		if (guild != null) {
 			((ShardImpl) guild.getShard()).guildCache.remove(guild);
+			guild.releaseMembers();
 			((User) client.getOurUser()).voiceStates.remove(guild.getLongID());
 			DiscordVoiceWS vWS = shard.voiceWebSockets.get(guildId);
 			if (vWS != null) {
@@ -569,10 +556,14 @@ class DispatchHandler {
 		if (json.type == ChannelObject.Type.GUILD_TEXT) {
 			Channel channel = (Channel) client.getChannelByID(Long.parseUnsignedLong(json.id));
 			if (channel != null) {
-				if (!channel.isPrivate())
+				if (!channel.isPrivate()) {
 					((Guild) channel.getGuild()).channels.remove(channel);
-				else
+					// The invites of the channel were deleted with it
+					client.REQUESTS.getResponseCache().invalidate(ResponseCache.Endpoint.GUILD_INVITES, channel.getGuild().getLongID());
+					client.REQUESTS.getResponseCache().invalidate(ResponseCache.Endpoint.INVITE);
+				} else {
 					shard.privateChannels.remove(channel);
+				}
 				client.dispatcher.dispatch(new ChannelDeleteEvent(channel));
 			}
 		} else if (json.type == ChannelObject.Type.GUILD_VOICE) {
@@ -644,7 +635,7 @@ class DispatchHandler {
 
 		for (MemberObject member : event.members) {
 			IUser user = DiscordUtils.getUserFromGuildMemberResponse(guildToUpdate, member);
-			guildToUpdate.users.put(user);
+			guildToUpdate.addMember(user);
 		}
 		if (guildToUpdate.getUsers().size() >= guildToUpdate.getTotalMemberCount()) {
 			client.getDispatcher().dispatch(new AllUsersReceivedEvent(guildToUpdate));
@@ -684,7 +675,7 @@ class DispatchHandler {
 				toUpdate = DiscordUtils.getRoleFromJSON(guild, event.role);
 				client.dispatcher.dispatch(new RoleUpdateEvent(oldRole, toUpdate));
 
-				if (guild.getRolesForUser(client.getOurUser()).contains(toUpdate))
+				if (client.getOurUser().hasRole(toUpdate))
 					((Guild) guild).loadWebhooks();
 			}
 		}
@@ -696,18 +687,20 @@ class DispatchHandler {
 			IRole role = guild.getRoleByID(Long.parseUnsignedLong(event.role_id));
 			if (role != null) {
 				guild.roles.remove(role);
+				guild.roleMembers.remove(role.getLongID());
+				guild.invalidatePermissions();
 				client.dispatcher.dispatch(new RoleDeleteEvent(role));
 			}
 		}
 	}
 
 	private void guildBanAdd(GuildBanEventResponse event) {
+		client.REQUESTS.getResponseCache().invalidate(ResponseCache.Endpoint.GUILD_BANS, Long.parseUnsignedLong(event.guild_id));
 		Guild guild = (Guild) client.getGuildByID(Long.parseUnsignedLong(event.guild_id));
 		if (guild != null) {
 			IUser user = DiscordUtils.getUserFromJSON(shard, event.user);
 			if (guild.getUserByID(user.getLongID()) != null) {
-				guild.users.remove(user);
-				guild.joinTimes.remove(user);
+				guild.removeMember(user);
 			}
 
 			client.dispatcher.dispatch(new UserBanEvent(guild, user));
@@ -715,6 +708,7 @@ class DispatchHandler {
 	}
 
 	private void guildBanRemove(GuildBanEventResponse event) {
+		client.REQUESTS.getResponseCache().invalidate(ResponseCache.Endpoint.GUILD_BANS, Long.parseUnsignedLong(event.guild_id));
 		IGuild guild = client.getGuildByID(Long.parseUnsignedLong(event.guild_id));
 		if (guild != null) {
 			IUser user = DiscordUtils.getUserFromJSON(shard, event.user);
@@ -784,10 +778,13 @@ class DispatchHandler {
 		if (channel == null) return;
 		if (!PermissionUtils.hasPermissions(channel, client.ourUser, Permissions.READ_MESSAGES, Permissions.READ_MESSAGE_HISTORY)) return; // Discord sends this event no matter our permissions for some reason.
 
-		boolean cached = ((Channel) channel).messages.containsKey(Long.parseUnsignedLong(event.message_id));
-		IMessage message = channel.fetchMessage(Long.parseUnsignedLong(event.message_id));
-		if (message == null) {
-			Discord4J.LOGGER.debug("Unable to fetch the message specified by a reaction add event\nObject={}", ToStringBuilder.reflectionToString(event));
+		long messageID = Long.parseUnsignedLong(event.message_id);
+		IUser user = getReactionUser(channel, event);
+		IMessage message = ((Channel) channel).messages.get(messageID);
+		if (message == null) { // Don't block the dispatch on a request, listeners which need the message fetch it lazily
+			ReactionEmoji emoji = ReactionEmoji.of(event.emoji.name, event.emoji.id == null ? 0 : Long.parseUnsignedLong(event.emoji.id));
+			client.dispatcher.dispatch(new ReactionAddEvent(channel, messageID, emoji, user,
+					() -> ((Channel) channel).fetchMessageAsync(messageID).thenApply(fetched -> getFetchedReaction(fetched, emoji, 1))));
 			return;
 		}
 		IReaction reaction = event.emoji.id == null
@@ -798,19 +795,10 @@ class DispatchHandler {
 		if (reaction == null) { // Only happens in the case of a cached message with a new reaction
 			long id = event.emoji.id == null ? 0 : Long.parseUnsignedLong(event.emoji.id);
 			reaction = new Reaction(message, 1, ReactionEmoji.of(event.emoji.name, id));
-		} else if (cached) {
+		} else {
 			reaction = new Reaction(message, reaction.getCount() + 1, reaction.getEmoji());
 		}
 		message.getReactions().add(reaction);
-
-		IUser user;
-		if (channel.isPrivate()) {
-			user = channel.getUsersHere().get(channel.getUsersHere().get(0).getLongID() == Long.parseUnsignedLong(event.user_id) ? 0 : 1);
-		}
-		else {
-			user = channel.getGuild().getUserByID(Long.parseUnsignedLong(event.user_id));
-		}
-
 		client.dispatcher.dispatch(new ReactionAddEvent(message, reaction, user));
 	}
 
@@ -820,10 +808,13 @@ class DispatchHandler {
 			return;
 		if (!PermissionUtils.hasPermissions(channel, client.ourUser, Permissions.READ_MESSAGES, Permissions.READ_MESSAGE_HISTORY)) return; // Discord sends this event no matter our permissions for some reason.
 
-		boolean cached = ((Channel) channel).messages.containsKey(Long.parseUnsignedLong(event.message_id));
-		IMessage message = channel.fetchMessage(Long.parseUnsignedLong(event.message_id));
-		if (message == null) {
-			Discord4J.LOGGER.debug("Unable to fetch the message specified by a reaction remove event\nObject={}", ToStringBuilder.reflectionToString(event));
+		long messageID = Long.parseUnsignedLong(event.message_id);
+		IUser user = getReactionUser(channel, event);
+		IMessage message = ((Channel) channel).messages.get(messageID);
+		if (message == null) { // Don't block the dispatch on a request, listeners which need the message fetch it lazily
+			ReactionEmoji emoji = ReactionEmoji.of(event.emoji.name, event.emoji.id == null ? 0 : Long.parseUnsignedLong(event.emoji.id));
+			client.dispatcher.dispatch(new ReactionRemoveEvent(channel, messageID, emoji, user,
+					() -> ((Channel) channel).fetchMessageAsync(messageID).thenApply(fetched -> getFetchedReaction(fetched, emoji, 0))));
 			return;
 		}
 		IReaction reaction = event.emoji.id == null
@@ -836,23 +827,32 @@ class DispatchHandler {
 			reaction = new Reaction(message, 0, ReactionEmoji.of(event.emoji.name, id));
 		}
 		else {
-			reaction = new Reaction(message, !cached ? reaction.getCount() : reaction.getCount() - 1, reaction.getEmoji());
+			reaction = new Reaction(message, reaction.getCount() - 1, reaction.getEmoji());
 		}
 
 		if (reaction.getCount() > 0) {
 			message.getReactions().add(reaction);
 		}
 
+		client.dispatcher.dispatch(new ReactionRemoveEvent(message, reaction, user));
+	}
 
-		IUser user;
+	private IUser getReactionUser(IChannel channel, ReactionEventResponse event) {
+		long userID = Long.parseUnsignedLong(event.user_id);
 		if (channel.isPrivate()) {
-			user = channel.getUsersHere().get(channel.getUsersHere().get(0).getLongID() == Long.parseUnsignedLong(event.user_id) ? 0 : 1);
-		}
-		else {
-			user = channel.getGuild().getUserByID(Long.parseUnsignedLong(event.user_id));
+			return channel.getUsersHere().get(channel.getUsersHere().get(0).getLongID() == userID ? 0 : 1);
 		}
+		return channel.getGuild().getUserByID(userID);
+	}
 
-		client.dispatcher.dispatch(new ReactionRemoveEvent(message, reaction, user));
+	/**
+	 * Gets the reaction with the given emoji on a message fetched after a reaction event. The fetched message already
+	 * reflects the event, so its reaction is used as is.
+	 */
+	private static IReaction getFetchedReaction(IMessage message, ReactionEmoji emoji, int fallbackCount) {
+		if (message == null) return null;
+		IReaction reaction = message.getReactionByEmoji(emoji);
+		return reaction == null ? new Reaction(message, fallbackCount, emoji) : reaction;
 	}
 
 
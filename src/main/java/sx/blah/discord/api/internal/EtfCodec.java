@@ -0,0 +1,326 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes and decodes gateway payloads in Erlang's External Term Format, which the gateway uses with
+ * <code>encoding=etf</code>.
+ *
+ * <p>Terms are decoded into the same {@link JsonNode} trees as JSON payloads, so the rest of the gateway code is shared
+ * by both encodings. Maps become objects, lists and tuples become arrays, binaries become text, and the atoms
+ * <code>nil</code>, <code>true</code> and <code>false</code> become null and booleans. Snowflakes are decoded as
+ * 64-bit integers.
+ *
+ * @see <a href="http://erlang.org/doc/apps/erts/erl_ext_dist.html">External Term Format</a>
+ */
+final class EtfCodec {
+
+	private static final int VERSION = 131;
+
+	private static final int NEW_FLOAT_EXT = 70;
+	private static final int COMPRESSED = 80;
+	private static final int SMALL_INTEGER_EXT = 97;
+	private static final int INTEGER_EXT = 98;
+	private static final int FLOAT_EXT = 99;
+	private static final int ATOM_EXT = 100;
+	private static final int SMALL_TUPLE_EXT = 104;
+	private static final int LARGE_TUPLE_EXT = 105;
+	private static final int NIL_EXT = 106;
+	private static final int STRING_EXT = 107;
+	private static final int LIST_EXT = 108;
+	private static final int BINARY_EXT = 109;
+	private static final int SMALL_BIG_EXT = 110;
+	private static final int LARGE_BIG_EXT = 111;
+	private static final int SMALL_ATOM_EXT = 115;
+	private static final int MAP_EXT = 116;
+	private static final int ATOM_UTF8_EXT = 118;
+	private static final int SMALL_ATOM_UTF8_EXT = 119;
+
+	private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+	private EtfCodec() {}
+
+	/**
+	 * Decodes a gateway payload. Payloads which are compressed with zlib as a whole, as Discord sends them when
+	 * compression was requested on identify, are inflated first.
+	 *
+	 * @param data The buffer holding the payload.
+	 * @param offset The offset of the payload in the buffer.
+	 * @param length The length of the payload.
+	 * @return The decoded payload.
+	 * @throws IOException If the payload is not a valid term.
+	 */
+	static JsonNode decode(byte[] data, int offset, int length) throws IOException {
+		if (length > 0 && (data[offset] & 0xFF) != VERSION) { // Not a term, so it must be zlib compressed
+			Inflater inflater = new Inflater();
+			inflater.setInput(data, offset, length);
+			ByteArrayOutputStream inflated = new ByteArrayOutputStream(length * 4);
+			byte[] buffer = new byte[8192];
+			try {
+				while (!inflater.finished()) {
+					int read = inflater.inflate(buffer);
+					if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+					inflated.write(buffer, 0, read);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Invalid compressed payload!", e);
+			} finally {
+				inflater.end();
+			}
+			return decode(inflated.toByteArray(), 0, inflated.size());
+		}
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+			if ((buffer.get() & 0xFF) != VERSION)
+				throw new IOException("Unsupported term format version!");
+			return decodeTerm(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated payload!", e);
+		}
+	}
+
+	private static JsonNode decodeTerm(ByteBuffer buffer) throws IOException {
+		int tag = buffer.get() & 0xFF;
+		switch (tag) {
+			case SMALL_INTEGER_EXT:
+				return NODES.numberNode(buffer.get() & 0xFF);
+			case INTEGER_EXT:
+				return NODES.numberNode(buffer.getInt());
+			case NEW_FLOAT_EXT:
+				return NODES.numberNode(buffer.getDouble());
+			case FLOAT_EXT:
+				return NODES.numberNode(Double.parseDouble(readString(buffer, 31, StandardCharsets.ISO_8859_1).trim()));
+			case SMALL_BIG_EXT:
+				return decodeBig(buffer, buffer.get() & 0xFF);
+			case LARGE_BIG_EXT:
+				return decodeBig(buffer, buffer.getInt());
+			case ATOM_EXT:
+				return decodeAtom(readString(buffer, buffer.getShort() & 0xFFFF, StandardCharsets.ISO_8859_1));
+			case SMALL_ATOM_EXT:
+				return decodeAtom(readString(buffer, buffer.get() & 0xFF, StandardCharsets.ISO_8859_1));
+			case ATOM_UTF8_EXT:
+				return decodeAtom(readString(buffer, buffer.getShort() & 0xFFFF, StandardCharsets.UTF_8));
+			case SMALL_ATOM_UTF8_EXT:
+				return decodeAtom(readString(buffer, buffer.get() & 0xFF, StandardCharsets.UTF_8));
+			case BINARY_EXT:
+				return NODES.textNode(readString(buffer, buffer.getInt(), StandardCharsets.UTF_8));
+			case STRING_EXT: { // A list of bytes
+				int length = buffer.getShort() & 0xFFFF;
+				ArrayNode array = NODES.arrayNode();
+				for (int i = 0; i < length; i++)
+					array.add(buffer.get() & 0xFF);
+				return array;
+			}
+			case NIL_EXT:
+				return NODES.arrayNode();
+			case LIST_EXT: {
+				ArrayNode array = decodeArray(buffer, buffer.getInt());
+				decodeTerm(buffer); // The tail, which is NIL_EXT for proper lists
+				return array;
+			}
+			case SMALL_TUPLE_EXT:
+				return decodeArray(buffer, buffer.get() & 0xFF);
+			case LARGE_TUPLE_EXT:
+				return decodeArray(buffer, buffer.getInt());
+			case MAP_EXT: {
+				int arity = buffer.getInt();
+				ObjectNode object = NODES.objectNode();
+				for (int i = 0; i < arity; i++) {
+					JsonNode key = decodeTerm(buffer);
+					object.set(key.asText(), decodeTerm(buffer));
+				}
+				return object;
+			}
+			case COMPRESSED: {
+				int size = buffer.getInt();
+				if (size < 0) throw new IOException("Invalid compressed term!");
+				Inflater inflater = new Inflater();
+				inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				byte[] inflated = new byte[size];
+				try {
+					if (inflater.inflate(inflated) != size)
+						throw new IOException("Invalid compressed term!");
+					buffer.position(buffer.position() + buffer.remaining() - inflater.getRemaining());
+				} catch (DataFormatException e) {
+					throw new IOException("Invalid compressed term!", e);
+				} finally {
+					inflater.end();
+				}
+				return decodeTerm(ByteBuffer.wrap(inflated));
+			}
+			default:
+				throw new IOException("Unsupported term type " + tag + "!");
+		}
+	}
+
+	private static ArrayNode decodeArray(ByteBuffer buffer, int length) throws IOException {
+		ArrayNode array = NODES.arrayNode();
+		for (int i = 0; i < length; i++)
+			array.add(decodeTerm(buffer));
+		return array;
+	}
+
+	private static JsonNode decodeAtom(String atom) {
+		switch (atom) {
+			case "nil":
+			case "null":
+				return NODES.nullNode();
+			case "true":
+				return NODES.booleanNode(true);
+			case "false":
+				return NODES.booleanNode(false);
+			default:
+				return NODES.textNode(atom);
+		}
+	}
+
+	/**
+	 * Decodes an integer stored as a sign byte followed by its magnitude in little-endian order. Snowflakes fit into a
+	 * long, so only larger values are decoded as {@link BigInteger}s.
+	 */
+	private static JsonNode decodeBig(ByteBuffer buffer, int length) {
+		boolean negative = buffer.get() != 0;
+		if (length <= 8) {
+			long value = 0;
+			for (int i = 0; i < length; i++)
+				value |= (buffer.get() & 0xFFL) << (8 * i);
+			if (value >= 0)
+				return NODES.numberNode(negative ? -value : value);
+			BigInteger unsigned = new BigInteger(Long.toUnsignedString(value)); // Above Long.MAX_VALUE
+			return NODES.numberNode(negative ? unsigned.negate() : unsigned);
+		}
+
+		byte[] magnitude = new byte[length];
+		for (int i = length - 1; i >= 0; i--)
+			magnitude[i] = buffer.get();
+		BigInteger value = new BigInteger(1, magnitude);
+		return NODES.numberNode(negative ? value.negate() : value);
+	}
+
+	private static String readString(ByteBuffer buffer, int length, Charset charset) {
+		if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, charset);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	/**
+	 * Encodes a gateway payload. Objects are encoded as maps with binary keys, which the gateway accepts in place of
+	 * atoms.
+	 *
+	 * @param payload The payload to encode.
+	 * @return The encoded payload.
+	 */
+	static byte[] encode(JsonNode payload) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		out.write(VERSION);
+		encodeTerm(payload, out);
+		return out.toByteArray();
+	}
+
+	private static void encodeTerm(JsonNode node, ByteArrayOutputStream out) {
+		if (node == null || node.isNull() || node.isMissingNode()) {
+			encodeAtom("nil", out);
+		} else if (node.isBoolean()) {
+			encodeAtom(node.booleanValue() ? "true" : "false", out);
+		} else if (node.isIntegralNumber()) {
+			encodeInteger(node.bigIntegerValue(), out);
+		} else if (node.isNumber()) {
+			out.write(NEW_FLOAT_EXT);
+			writeLong(Double.doubleToLongBits(node.doubleValue()), out);
+		} else if (node.isTextual()) {
+			byte[] text = node.textValue().getBytes(StandardCharsets.UTF_8);
+			out.write(BINARY_EXT);
+			writeInt(text.length, out);
+			out.write(text, 0, text.length);
+		} else if (node.isArray()) {
+			if (node.size() > 0) {
+				out.write(LIST_EXT);
+				writeInt(node.size(), out);
+				for (JsonNode element : node)
+					encodeTerm(element, out);
+			}
+			out.write(NIL_EXT);
+		} else if (node.isObject()) {
+			out.write(MAP_EXT);
+			writeInt(node.size(), out);
+			Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				encodeTerm(NODES.textNode(field.getKey()), out);
+				encodeTerm(field.getValue(), out);
+			}
+		} else {
+			encodeTerm(NODES.textNode(node.asText()), out);
+		}
+	}
+
+	private static void encodeAtom(String atom, ByteArrayOutputStream out) {
+		out.write(SMALL_ATOM_UTF8_EXT);
+		out.write(atom.length());
+		out.write(atom.getBytes(StandardCharsets.UTF_8), 0, atom.length());
+	}
+
+	private static void encodeInteger(BigInteger value, ByteArrayOutputStream out) {
+		if (value.signum() >= 0 && value.bitLength() <= 8) {
+			out.write(SMALL_INTEGER_EXT);
+			out.write(value.intValue());
+		} else if (value.bitLength() <= 31) {
+			out.write(INTEGER_EXT);
+			writeInt(value.intValue(), out);
+		} else {
+			byte[] magnitude = value.abs().toByteArray(); // Big-endian, possibly with a leading zero byte
+			int start = magnitude[0] == 0 ? 1 : 0;
+			int length = magnitude.length - start;
+			out.write(SMALL_BIG_EXT);
+			out.write(length);
+			out.write(value.signum() < 0 ? 1 : 0);
+			for (int i = magnitude.length - 1; i >= start; i--)
+				out.write(magnitude[i]);
+		}
+	}
+
+	private static void writeInt(int value, ByteArrayOutputStream out) {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static void writeLong(long value, ByteArrayOutputStream out) {
+		writeInt((int) (value >>> 32), out);
+		writeInt((int) value, out);
+	}
+}
@@ -0,0 +1,493 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import sx.blah.discord.Discord4J;
+import sx.blah.discord.util.LogMarkers;
+import sx.blah.discord.util.RateLimitException;
+import sx.blah.discord.util.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps track of Discord's rate limit buckets and holds back requests until their bucket allows them to be sent.
+ *
+ * <p>Requests are mapped to a route made of their method and path, where every ID except the major parameter (the
+ * channel, guild or webhook ID) is replaced by a placeholder. Routes which Discord reports with the same
+ * <code>X-RateLimit-Bucket</code> share their limits.
+ *
+ * <p>Requests which have to wait are queued in their bucket. Whenever the bucket frees up, the queued request with the
+ * highest {@link RequestPriority} is let through first, and requests of the same priority in the order they arrived.
+ * Requests which throw on rate limits are not queued, but fail with a {@link RateLimitException} instead.
+ *
+ * <p>If a {@link SharedRateLimitFile} is given, requests are also counted against the global and bucket limits shared
+ * by the other processes on the host, and the limits Discord reports are written back to it.
+ */
+final class RateLimiter {
+
+	/**
+	 * Path segments whose following ID is a major parameter and therefore part of the bucket.
+	 */
+	private static final String[] MAJOR_PARAMETERS = {"channels", "guilds", "webhooks"};
+
+	/**
+	 * The time in milliseconds after which a bucket which is no longer used is evicted.
+	 */
+	private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * The buckets for each known route.
+	 */
+	private final Map<String, Bucket> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * The buckets for each bucket reported by Discord, keyed by the reported bucket and the major parameter.
+	 */
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	/**
+	 * The time at which the global rate limit is over.
+	 */
+	private volatile long globalResetAt;
+
+	/**
+	 * The scheduler used to retry requests once their bucket resets.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Orders requests of the same priority by their arrival.
+	 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * The time at which idle buckets were last evicted.
+	 */
+	private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+
+	/**
+	 * The rate limit state shared with other processes (or null if it isn't shared).
+	 */
+	private final SharedRateLimitFile shared;
+
+	RateLimiter(ScheduledExecutorService scheduler, SharedRateLimitFile shared) {
+		this.scheduler = scheduler;
+		this.shared = shared;
+	}
+
+	/**
+	 * Reserves a slot for a request to the given path once its bucket allows it. No thread is blocked while the
+	 * request waits. Every reservation must be followed by either {@link #update(Bucket, Function)} or
+	 * {@link #release(Bucket)}.
+	 *
+	 * @param method The HTTP method of the request.
+	 * @param path The path of the request.
+	 * @param priority The priority of the request.
+	 * @param throwOnRateLimit Whether the future fails with a {@link RateLimitException} instead of waiting if the
+	 * bucket is exhausted until a known time.
+	 * @return A future which completes with the bucket the request was reserved in.
+	 */
+	CompletableFuture<Bucket> acquire(String method, String path, RequestPriority priority, boolean throwOnRateLimit) {
+		evictIdleBuckets();
+		Waiter waiter = new Waiter(priority, sequence.getAndIncrement(), throwOnRateLimit);
+		routes.computeIfAbsent(getRoute(method, path), Bucket::new).resolve().enqueue(waiter);
+		return waiter.future;
+	}
+
+	/**
+	 * Updates a bucket with the rate limit headers of a response to a request sent in it.
+	 *
+	 * @param bucket The bucket the request was reserved in.
+	 * @param headers Gets the value of a response header by its name, or null if it is not present.
+	 */
+	void update(Bucket bucket, Function<String, String> headers) {
+		String remaining = headers.apply("X-RateLimit-Remaining");
+		if (remaining == null) { // This route isn't limited
+			bucket.update(Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		String limit = headers.apply("X-RateLimit-Limit");
+		String resetAfter = headers.apply("X-RateLimit-Reset-After");
+		String reset = headers.apply("X-RateLimit-Reset");
+		long resetAt = resetAfter != null
+				? now + (long) Math.ceil(Double.parseDouble(resetAfter) * 1000)
+				: reset != null ? (long) Math.ceil(Double.parseDouble(reset) * 1000) : now;
+
+		Bucket target = bucket;
+		String reported = headers.apply("X-RateLimit-Bucket");
+		if (reported != null) {
+			String key = reported + ":" + bucket.majorParameter;
+			target = buckets.computeIfAbsent(key, k -> bucket);
+			target.sharedKey = key; // Other processes may know the bucket by a different route
+			if (target != bucket) {
+				routes.put(bucket.route, target);
+				bucket.mergeInto(target);
+			}
+		}
+
+		if (shared != null)
+			shared.update(target.sharedKey, Integer.parseInt(remaining), resetAt);
+		target.update(Integer.parseInt(remaining), limit == null ? 1 : Integer.parseInt(limit), resetAt);
+	}
+
+	/**
+	 * Gives back the slot reserved for a request which did not receive a response.
+	 *
+	 * @param bucket The bucket the request was reserved in.
+	 */
+	void release(Bucket bucket) {
+		bucket.release();
+	}
+
+	/**
+	 * Records a 429 response.
+	 *
+	 * @param bucket The bucket the request was reserved in.
+	 * @param retryAfter The time in milliseconds until requests may be sent again.
+	 * @param global Whether the global rate limit was hit.
+	 */
+	void rateLimited(Bucket bucket, long retryAfter, boolean global) {
+		bucket = bucket.resolve();
+		long resetAt = System.currentTimeMillis() + retryAfter;
+		if (global) {
+			globalResetAt = resetAt;
+			if (shared != null)
+				shared.globalRateLimited(resetAt);
+			bucket.release(); // Queued requests wait for the global limit when the bucket is drained
+		} else {
+			if (shared != null)
+				shared.update(bucket.sharedKey, 0, resetAt);
+			bucket.exhaust(resetAt);
+		}
+		Discord4J.LOGGER.debug(LogMarkers.API, "Rate limited on {} for {}ms (global: {})", bucket.route, retryAfter, global);
+	}
+
+	/**
+	 * Removes the buckets which have not been used for {@link #IDLE_TIMEOUT} and have reset, as every channel, guild
+	 * and webhook has buckets of its own. This runs at most once per timeout, on the thread of a request.
+	 *
+	 * <p>A request which looked up a bucket just before it was evicted is still sent in it. The next request of the
+	 * route starts over with a new bucket, which only lets a single request through until it learns the limits.
+	 */
+	private void evictIdleBuckets() {
+		long now = System.currentTimeMillis();
+		long last = lastEviction.get();
+		if (now - last < IDLE_TIMEOUT || !lastEviction.compareAndSet(last, now)) return;
+
+		routes.values().removeIf(bucket -> bucket.resolve().isIdle(now));
+		buckets.values().removeIf(bucket -> bucket.isIdle(now));
+	}
+
+	/**
+	 * Gets the route of a request, which is its method and path with every minor parameter replaced.
+	 *
+	 * @param method The HTTP method of the request.
+	 * @param path The path of the request.
+	 * @return The route of the request.
+	 */
+	static String getRoute(String method, String path) {
+		String[] segments = path.split("/");
+		boolean majorFound = false;
+		StringBuilder route = new StringBuilder(method).append(' ');
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (i > 0) {
+				route.append('/');
+				if (segments[i - 1].equals("reactions")) {
+					route.append("{emoji}");
+					continue;
+				}
+			}
+
+			if (!segment.isEmpty() && Character.isDigit(segment.charAt(0)) && isID(segment)) {
+				if (!majorFound && i > 0 && isMajorParameter(segments[i - 1])) {
+					majorFound = true;
+					route.append(segment);
+				} else {
+					route.append("{id}");
+				}
+			} else {
+				route.append(segment);
+			}
+		}
+		return route.toString();
+	}
+
+	private static boolean isID(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			if (!Character.isDigit(segment.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isMajorParameter(String segment) {
+		for (String major : MAJOR_PARAMETERS) {
+			if (major.equals(segment)) return true;
+		}
+		return false;
+	}
+
+	private static String getMajorParameter(String route) {
+		for (String major : MAJOR_PARAMETERS) {
+			int index = route.indexOf("/" + major + "/");
+			if (index != -1) {
+				int start = index + major.length() + 2;
+				int end = route.indexOf('/', start);
+				String id = end == -1 ? route.substring(start) : route.substring(start, end);
+				if (isID(id)) return id;
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * A request waiting for a slot in a bucket.
+	 */
+	private static final class Waiter implements Comparable<Waiter> {
+
+		final RequestPriority priority;
+		final long sequence;
+		final boolean throwOnRateLimit;
+		final CompletableFuture<Bucket> future = new CompletableFuture<>();
+
+		Waiter(RequestPriority priority, long sequence, boolean throwOnRateLimit) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.throwOnRateLimit = throwOnRateLimit;
+		}
+
+		@Override
+		public int compareTo(Waiter other) {
+			int compared = priority.compareTo(other.priority);
+			return compared != 0 ? compared : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/**
+	 * The rate limit state of a bucket.
+	 */
+	final class Bucket {
+
+		/**
+		 * The route this bucket was first created for.
+		 */
+		final String route;
+
+		/**
+		 * The major parameter of {@link #route}.
+		 */
+		final String majorParameter;
+
+		/**
+		 * The key of this bucket in the shared rate limit file. This is the bucket reported by Discord once it is
+		 * known, and the route until then.
+		 */
+		private volatile String sharedKey;
+
+		/**
+		 * The number of requests which may still be sent before the bucket resets. Until the first response arrives
+		 * only a single request is let through.
+		 */
+		private int remaining = 1;
+
+		/**
+		 * The number of requests allowed per reset interval.
+		 */
+		private int limit = 1;
+
+		/**
+		 * The time at which the bucket resets, or 0 if this is not known yet.
+		 */
+		private long resetAt;
+
+		/**
+		 * The bucket this one was found to share its limits with.
+		 */
+		private Bucket mergedInto;
+
+		/**
+		 * The requests waiting for a slot, highest priority first.
+		 */
+		private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+
+		/**
+		 * Whether a drain of the waiting requests is scheduled.
+		 */
+		private boolean drainScheduled;
+
+		/**
+		 * The time at which a request was last let through.
+		 */
+		private long lastUsed = System.currentTimeMillis();
+
+		Bucket(String route) {
+			this.route = route;
+			this.majorParameter = getMajorParameter(route);
+			this.sharedKey = route;
+		}
+
+		/**
+		 * Queues a request and lets through as many of the waiting requests as the bucket allows. A request which
+		 * throws on rate limits is failed instead if the bucket is exhausted until a known time.
+		 *
+		 * @param waiter The request to queue.
+		 */
+		void enqueue(Waiter waiter) {
+			long now = System.currentTimeMillis();
+			long globalDelay = globalResetAt - now;
+			long delay = 0;
+			synchronized (this) {
+				if (waiter.throwOnRateLimit && mergedInto == null)
+					delay = globalDelay > 0 ? globalDelay : remaining <= 0 && resetAt > now ? resetAt - now : 0;
+				if (delay <= 0)
+					waiters.add(waiter);
+			}
+
+			if (delay > 0) {
+				waiter.future.completeExceptionally(new RateLimitException("Rate limited on " + route, delay, route, globalDelay > 0));
+			} else {
+				drain();
+			}
+		}
+
+		/**
+		 * Gets the bucket which currently holds the limits of this bucket's route.
+		 *
+		 * @return The bucket which currently holds the limits.
+		 */
+		synchronized Bucket resolve() {
+			return mergedInto == null ? this : mergedInto.resolve();
+		}
+
+		/**
+		 * Gets whether this bucket has no waiting requests, has reset and has not been used for
+		 * {@link #IDLE_TIMEOUT}, so it no longer holds any state worth keeping.
+		 *
+		 * @param now The current time.
+		 * @return Whether the bucket is idle.
+		 */
+		synchronized boolean isIdle(long now) {
+			return waiters.isEmpty() && now - lastUsed >= IDLE_TIMEOUT && now >= resetAt;
+		}
+
+		void update(int remaining, int limit, long resetAt) {
+			synchronized (this) {
+				this.remaining = remaining;
+				this.limit = limit;
+				this.resetAt = resetAt;
+			}
+			drain();
+		}
+
+		void release() {
+			synchronized (this) {
+				if (remaining < limit) remaining++;
+			}
+			drain();
+		}
+
+		void exhaust(long resetAt) {
+			synchronized (this) {
+				this.remaining = 0;
+				this.resetAt = resetAt;
+			}
+			drain();
+		}
+
+		void mergeInto(Bucket bucket) {
+			synchronized (this) {
+				this.mergedInto = bucket;
+			}
+			drain();
+		}
+
+		/**
+		 * Lets through the waiting requests in order of priority for as long as the bucket has slots left. If the
+		 * bucket is exhausted until a known time, a drain is scheduled for then. The waiting requests are completed
+		 * outside of the lock as they may acquire other buckets.
+		 */
+		private void drain() {
+			List<Waiter> ready = new ArrayList<>();
+			List<Waiter> moved = null;
+			Bucket target = null;
+			long delay = -1;
+			synchronized (this) {
+				if (mergedInto != null) { // Merged since the requests were queued, move them to the merged bucket
+					target = mergedInto;
+					moved = new ArrayList<>(waiters);
+					waiters.clear();
+				} else {
+					long now = System.currentTimeMillis();
+					long globalDelay = globalResetAt - now;
+					while (!waiters.isEmpty()) {
+						if (globalDelay > 0) {
+							delay = globalDelay;
+							break;
+						} else if (remaining > 0) {
+							long sharedDelay = shared == null ? 0 : shared.tryAcquire(sharedKey);
+							if (sharedDelay > 0) { // Other processes used up the shared limits
+								delay = sharedDelay;
+								break;
+							}
+							remaining--;
+							lastUsed = now;
+							ready.add(waiters.poll());
+						} else if (resetAt == 0) { // Waiting on the response which tells us the limits
+							break;
+						} else if (now >= resetAt) { // The bucket has reset, let requests through until we hear otherwise
+							remaining = limit;
+							resetAt = 0;
+						} else {
+							delay = resetAt - now;
+							break;
+						}
+					}
+
+					if (delay >= 0 && !drainScheduled) {
+						drainScheduled = true;
+					} else {
+						delay = -1;
+					}
+				}
+			}
+
+			if (delay >= 0) {
+				scheduler.schedule(() -> {
+					synchronized (this) {
+						drainScheduled = false;
+					}
+					drain();
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+
+			ready.forEach(waiter -> waiter.future.complete(this));
+			if (moved != null)
+				moved.forEach(target.resolve()::enqueue);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection usage statistics of a {@link Requests} instance. All counters are cumulative since it was created.
+ *
+ * <p>A request leases a connection from the pool once the rate limiter lets it through and holds it until its response
+ * is complete. The lease wait is the time between those two points in which the request waited for a free connection.
+ */
+public class RequestStats {
+
+	private final LongAdder leases = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder pending = new LongAdder();
+	private final LongAdder active = new LongAdder();
+	private final LongAdder leaseWaitNanos = new LongAdder();
+	private final LongAccumulator maxLeaseWaitNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder leaseNanos = new LongAdder();
+
+	/**
+	 * Gets the number of requests which leased a connection.
+	 *
+	 * @return The number of leases.
+	 */
+	public long getLeases() {
+		return leases.sum();
+	}
+
+	/**
+	 * Gets the number of requests which failed without a response.
+	 *
+	 * @return The number of failed requests.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * Gets the number of requests which are currently waiting for a connection.
+	 *
+	 * @return The number of waiting requests.
+	 */
+	public long getPendingLeases() {
+		return pending.sum();
+	}
+
+	/**
+	 * Gets the number of connections which are currently leased.
+	 *
+	 * @return The number of leased connections.
+	 */
+	public long getActiveLeases() {
+		return active.sum();
+	}
+
+	/**
+	 * Gets the average time requests waited for a connection.
+	 *
+	 * @param unit The unit of the returned time.
+	 * @return The average lease wait.
+	 */
+	public long getAverageLeaseWait(TimeUnit unit) {
+		long leases = getLeases();
+		return leases == 0 ? 0 : unit.convert(leaseWaitNanos.sum() / leases, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Gets the longest time a request waited for a connection.
+	 *
+	 * @param unit The unit of the returned time.
+	 * @return The longest lease wait.
+	 */
+	public long getMaxLeaseWait(TimeUnit unit) {
+		return unit.convert(maxLeaseWaitNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Gets the average time requests held on to their connection.
+	 *
+	 * @param unit The unit of the returned time.
+	 * @return The average lease duration.
+	 */
+	public long getAverageLeaseDuration(TimeUnit unit) {
+		long leases = getLeases();
+		return leases == 0 ? 0 : unit.convert(leaseNanos.sum() / leases, TimeUnit.NANOSECONDS);
+	}
+
+	void queued() {
+		pending.increment();
+	}
+
+	void leased(long waitNanos) {
+		pending.decrement();
+		active.increment();
+		leases.increment();
+		leaseWaitNanos.add(waitNanos);
+		maxLeaseWaitNanos.accumulate(waitNanos);
+	}
+
+	void released(long leaseNanos) {
+		active.decrement();
+		this.leaseNanos.add(leaseNanos);
+	}
+
+	void abandoned() {
+		pending.decrement();
+	}
+
+	void failed() {
+		failures.increment();
+	}
+
+	@Override
+	public String toString() {
+		return "RequestStats{leases=" + getLeases() + ", failures=" + getFailures() + ", pending=" + getPendingLeases()
+				+ ", active=" + getActiveLeases() + ", averageLeaseWait=" + getAverageLeaseWait(TimeUnit.MILLISECONDS)
+				+ "ms, maxLeaseWait=" + getMaxLeaseWait(TimeUnit.MILLISECONDS) + "ms}";
+	}
+}
@@ -14,35 +14,70 @@
  *     You should have received a copy of the GNU Lesser General Public License
  *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package sx.blah.discord.api.internal;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.*;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.internal.json.responses.RateLimitResponse;
 import sx.blah.discord.util.DiscordException;
 import sx.blah.discord.util.LogMarkers;
 import sx.blah.discord.util.RateLimitException;
+import sx.blah.discord.util.RequestPriority;
+import sx.blah.discord.util.RetryPolicy;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static sx.blah.discord.Discord4J.*;
 
 /**
  * Used to send HTTP requests to Discord.
+ *
+ * <p>Requests are sent asynchronously on a Jetty {@link HttpClient} shared by all request types and by every instance
+ * with the same connection settings, so waiting requests do not hold on to threads and every request type draws from
+ * the same pool of keep-alive connections. The blocking
+ * <code>makeRequest</code> methods wait on their <code>makeRequestAsync</code> counterparts. The futures of requests
+ * complete on a separate pool of threads, so their callbacks may block or make further requests.
+ *
+ * <p>Requests are made with the {@link RequestPriority} of the thread they are made on. Requests which are not
+ * {@link RequestPriority#INTERACTIVE} may only use the connections which are not reserved for interactive requests,
+ * and wait in order of priority for one of those to free up.
+ *
+ * <p>Rate-limited requests wait until their bucket allows them to be sent, unless they are made within
+ * {@link #throwOnRateLimit(Runnable)}, in which case they fail with a {@link RateLimitException}.
  */
 public class Requests {
 
@@ -51,6 +86,62 @@ public class Requests {
 	 */
 	public static final String USER_AGENT = String.format("DiscordBot (%s, %s)", URL, VERSION);
 
+	/**
+	 * The default maximum number of connections per host.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+	/**
+	 * The default number of connections per host which are reserved for interactive requests.
+	 */
+	public static final int DEFAULT_RESERVED_CONNECTIONS = 16;
+
+	/**
+	 * The default time in milliseconds an idle connection is kept alive.
+	 */
+	public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+	/**
+	 * The default time in milliseconds the result of a GET request is shared after it completed.
+	 */
+	public static final long DEFAULT_GET_SHARING_WINDOW = 0;
+
+	/**
+	 * An empty array of headers.
+	 */
+	private static final BasicNameValuePair[] NO_HEADERS = new BasicNameValuePair[0];
+
+	/**
+	 * The maximum size of a response body which is buffered.
+	 */
+	private static final int MAX_RESPONSE_LENGTH = 16 * 1024 * 1024;
+
+	/**
+	 * The scheduler used to delay rate limited and retried requests.
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+			DiscordUtils.createDaemonThreadFactory("Requests Scheduler"));
+
+	/**
+	 * The executor request futures are completed on. Callbacks may block, e.g. by making further requests, so they
+	 * must not run on the threads of the HTTP client, which complete every response.
+	 */
+	private static final ExecutorService CALLBACK_EXECUTOR = Executors.newCachedThreadPool(
+			DiscordUtils.createDaemonThreadFactory("Requests Callback Handler"));
+
+	/**
+	 * The HTTP clients requests are made on, keyed by their maximum number of connections and keep-alive time. They are
+	 * shared by every instance with the same settings and are never stopped, so clients which are created and dropped
+	 * do not leak threads or connection pools.
+	 */
+	private static final Map<String, HttpClient> HTTP_CLIENTS = new ConcurrentHashMap<>();
+
+	/**
+	 * Whether requests made on the current thread fail with a {@link RateLimitException} instead of waiting for their
+	 * bucket.
+	 */
+	private static final ThreadLocal<Boolean> THROW_ON_RATE_LIMIT = ThreadLocal.withInitial(() -> false);
+
 	/**
 	 * A Requests instance that has no client associated with it.
 	 */
@@ -82,14 +173,214 @@ public class Requests {
 	 */
 	private final DiscordClientImpl client;
 
+	/**
+	 * The rate limiter shared by all request types.
+	 */
+	private final RateLimiter rateLimiter;
+
+	/**
+	 * The connection usage statistics.
+	 */
+	private final RequestStats stats = new RequestStats();
+
+	/**
+	 * The HTTP client requests are made on, which is shared with other instances.
+	 */
+	private final HttpClient httpClient;
+
+	/**
+	 * The time in milliseconds the result of a GET request is shared after it completed.
+	 */
+	private final long getSharingWindow;
+
+	/**
+	 * The cache of responses of slow-changing endpoints.
+	 */
+	private final ResponseCache responseCache;
+
+	/**
+	 * The number of connections requests which are not interactive may use.
+	 */
+	private final int sharedConnections;
+
+	/**
+	 * The number of requests which are not interactive and are in flight. Guarded by {@link #pendingRequests}.
+	 */
+	private int sharedInFlight;
+
+	/**
+	 * The requests which are not interactive and are waiting for a connection, highest priority first.
+	 */
+	private final PriorityQueue<PendingRequest> pendingRequests = new PriorityQueue<>();
+
+	/**
+	 * Orders pending requests of the same priority by their arrival.
+	 */
+	private final AtomicLong pendingSequence = new AtomicLong();
+
 	public Requests(DiscordClientImpl client) {
+		this(client, DEFAULT_MAX_CONNECTIONS, DEFAULT_KEEP_ALIVE, DEFAULT_GET_SHARING_WINDOW, Collections.emptyMap(),
+				DEFAULT_RESERVED_CONNECTIONS, null);
+	}
+
+	/**
+	 * @param client The client used for these requests.
+	 * @param maxConnections The maximum number of connections per host.
+	 * @param keepAlive The time in milliseconds an idle connection is kept alive.
+	 * @param getSharingWindow The time in milliseconds the result of a GET request is shared after it completed.
+	 * @param responseCacheTTLs The time in milliseconds responses are cached for, per endpoint.
+	 * @param reservedConnections The number of connections per host which are reserved for interactive requests.
+	 * At least one connection is always left to other requests.
+	 * @param sharedRateLimitFile The file through which rate limits are shared with other processes on the host (or
+	 * null to not share them).
+	 */
+	public Requests(DiscordClientImpl client, int maxConnections, long keepAlive, long getSharingWindow,
+					Map<ResponseCache.Endpoint, Long> responseCacheTTLs, int reservedConnections, File sharedRateLimitFile) {
 		this.client = client;
+		this.rateLimiter = new RateLimiter(SCHEDULER,
+				sharedRateLimitFile == null ? null : SharedRateLimitFile.open(sharedRateLimitFile));
+		this.httpClient = HTTP_CLIENTS.computeIfAbsent(maxConnections + ":" + keepAlive,
+				settings -> createHttpClient(maxConnections, keepAlive));
+		this.getSharingWindow = getSharingWindow;
+		this.responseCache = new ResponseCache(responseCacheTTLs);
+		this.sharedConnections = Math.max(1, maxConnections - reservedConnections);
+
+		POST = new Request("POST", true, client);
+		GET = new Request("GET", false, client);
+		DELETE = new Request("DELETE", false, client);
+		PATCH = new Request("PATCH", true, client);
+		PUT = new Request("PUT", true, client);
+	}
+
+	/**
+	 * Waits for the result of a request made asynchronously.
+	 *
+	 * @param future The future of the request.
+	 * @param <T> The type of the result of the request.
+	 * @return The result of the request.
+	 */
+	public static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new DiscordException("Request failed!", e.getCause());
+		}
+	}
+
+	/**
+	 * Runs an action during which requests made on the current thread fail with a {@link RateLimitException} instead
+	 * of waiting when their bucket is rate limited, or when Discord responds with a 429. This is used by
+	 * {@link sx.blah.discord.util.RequestBuffer} to retry rate limited requests without holding on to its threads.
+	 *
+	 * @param action The action to run.
+	 */
+	public static void throwOnRateLimit(Runnable action) {
+		boolean previous = THROW_ON_RATE_LIMIT.get();
+		THROW_ON_RATE_LIMIT.set(true);
+		try {
+			action.run();
+		} finally {
+			THROW_ON_RATE_LIMIT.set(previous);
+		}
+	}
+
+	/**
+	 * Gets the connection usage statistics of these requests.
+	 *
+	 * @return The connection usage statistics.
+	 */
+	public RequestStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Gets the cache of responses of slow-changing endpoints.
+	 *
+	 * @return The response cache.
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
 
-		POST = new Request(HttpPost.class, client);
-		GET = new Request(HttpGet.class, client);
-		DELETE = new Request(HttpDelete.class, client);
-		PATCH = new Request(HttpPatch.class, client);
-		PUT = new Request(HttpPut.class, client);
+	/**
+	 * Runs a request once a connection it may use is free. Interactive requests may use every connection and run
+	 * immediately. Every request which is run must be followed by {@link #releaseConnection(RequestPriority)}.
+	 */
+	private void leaseConnection(RequestPriority priority, Runnable request) {
+		if (priority != RequestPriority.INTERACTIVE) {
+			synchronized (pendingRequests) {
+				if (sharedInFlight >= sharedConnections) {
+					pendingRequests.add(new PendingRequest(priority, pendingSequence.getAndIncrement(), request));
+					return;
+				}
+				sharedInFlight++;
+			}
+		}
+		request.run();
+	}
+
+	/**
+	 * Hands the connection of a completed request to the pending request with the highest priority.
+	 */
+	private void releaseConnection(RequestPriority priority) {
+		if (priority == RequestPriority.INTERACTIVE) return;
+
+		PendingRequest next;
+		synchronized (pendingRequests) {
+			next = pendingRequests.poll();
+			if (next == null) sharedInFlight--;
+		}
+		if (next != null) next.request.run();
+	}
+
+	/**
+	 * A request which is not interactive and is waiting for a connection.
+	 */
+	private static final class PendingRequest implements Comparable<PendingRequest> {
+
+		final RequestPriority priority;
+		final long sequence;
+		final Runnable request;
+
+		PendingRequest(RequestPriority priority, long sequence, Runnable request) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.request = request;
+		}
+
+		@Override
+		public int compareTo(PendingRequest other) {
+			int compared = priority.compareTo(other.priority);
+			return compared != 0 ? compared : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private static HttpClient createHttpClient(int maxConnections, long keepAlive) {
+		QueuedThreadPool threadPool = new QueuedThreadPool(8, 2);
+		threadPool.setName("Discord4J Requests");
+		threadPool.setDaemon(true);
+
+		SslContextFactory sslContextFactory = new SslContextFactory();
+		sslContextFactory.setSessionCachingEnabled(true); // Resumes TLS sessions when new connections are opened
+		sslContextFactory.setEndpointIdentificationAlgorithm("HTTPS"); // Verifies the hostname of the certificate
+
+		HttpClient httpClient = new HttpClient(sslContextFactory);
+		httpClient.setExecutor(threadPool);
+		// The client is never stopped, so none of its threads may keep the JVM alive
+		httpClient.setScheduler(new ScheduledExecutorScheduler("Discord4J Requests Scheduler", true));
+		httpClient.setMaxConnectionsPerDestination(maxConnections);
+		httpClient.setIdleTimeout(keepAlive);
+		httpClient.setUserAgentField(new HttpField(HttpHeader.USER_AGENT, USER_AGENT));
+		// The rate limiter already holds requests back
+		httpClient.setMaxRequestsQueuedPerDestination(Integer.MAX_VALUE);
+		try {
+			httpClient.start();
+		} catch (Exception e) {
+			throw new DiscordException("Unable to start the HTTP client!", e);
+		}
+		return httpClient;
 	}
 
 	/**
@@ -103,28 +394,23 @@ public class Requests {
 		private final DiscordClientImpl client;
 
 		/**
-		 * The HTTP client requests are made on.
-		 */
-		//Same as HttpClients.createDefault() but with the proper user-agent
-		private final CloseableHttpClient CLIENT = HttpClients.custom().setUserAgent(USER_AGENT).build();
-
-		/**
-		 * The class of the method type used for the request
+		 * The HTTP method used for the request.
 		 */
-		final Class<? extends HttpUriRequest> requestClass;
+		final String method;
 
 		/**
-		 * Keeps track of the time when the global rate limit retry-after interval is over
+		 * Whether requests of this method may have a body.
 		 */
-		private final AtomicLong globalRetryAfter = new AtomicLong(-1);
+		private final boolean allowsEntity;
 
 		/**
-		 * Keeps track of per-method rate limits. Pair is method, path
+		 * The typed GET requests which are in flight (or within the sharing window), keyed by result class and url.
 		 */
-		private final Map<Pair<String, String>, Long> retryAfters = new ConcurrentHashMap<>();
+		private final Map<String, CompletableFuture<?>> sharedRequests = new ConcurrentHashMap<>();
 
-		private Request(Class<? extends HttpUriRequest> clazz, DiscordClientImpl client) {
-			this.requestClass = clazz;
+		private Request(String method, boolean allowsEntity, DiscordClientImpl client) {
+			this.method = method;
+			this.allowsEntity = allowsEntity;
 			this.client = client;
 		}
 
@@ -139,11 +425,7 @@ public class Requests {
 		 * @return The deserialized response.
 		 */
 		public <T> T makeRequest(String url, Object entity, Class<T> clazz, BasicNameValuePair... headers) {
-			try {
-				return makeRequest(url, DiscordUtils.MAPPER.writeValueAsString(entity), clazz, headers);
-			} catch (JsonProcessingException e) {
-				throw new DiscordException("Unable to serialize request!", e);
-			}
+			return join(makeRequestAsync(url, entity, clazz, headers));
 		}
 
 		/**
@@ -157,12 +439,7 @@ public class Requests {
 		 * @return The deserialized response.
 		 */
 		public <T> T makeRequest(String url, String entity, Class<T> clazz, BasicNameValuePair... headers) {
-			try {
-				String response = makeRequest(url, entity, headers);
-				return response == null ? null : DiscordUtils.MAPPER.readValue(response, clazz);
-			} catch (IOException e) {
-				throw new DiscordException("Unable to serialize request!", e);
-			}
+			return join(makeRequestAsync(url, entity, clazz, headers));
 		}
 
 		/**
@@ -175,12 +452,7 @@ public class Requests {
 		 * @return The deserialized response.
 		 */
 		public <T> T makeRequest(String url, Class<T> clazz, BasicNameValuePair... headers) {
-			try {
-				String response = makeRequest(url, headers);
-				return response == null ? null : DiscordUtils.MAPPER.readValue(response, clazz);
-			} catch (IOException e) {
-				throw new DiscordException("Unable to serialize request!", e);
-			}
+			return join(makeRequestAsync(url, clazz, headers));
 		}
 
 		/**
@@ -191,11 +463,7 @@ public class Requests {
 		 * @param headers The headers to include in the request.
 		 */
 		public void makeRequest(String url, Object entity, BasicNameValuePair... headers) {
-			try {
-				makeRequest(url, DiscordUtils.MAPPER.writeValueAsString(entity), headers);
-			} catch (IOException e) {
-				throw new DiscordException("Unable to serialize request!", e);
-			}
+			join(makeRequestAsync(url, serialize(entity), headers));
 		}
 
 		/**
@@ -207,7 +475,7 @@ public class Requests {
 		 * @return The response as a byte array.
 		 */
 		public String makeRequest(String url, String entity, BasicNameValuePair... headers) {
-			return makeRequest(url, new StringEntity(entity, "UTF-8"), headers);
+			return join(makeRequestAsync(url, entity, headers));
 		}
 
 		/**
@@ -218,20 +486,9 @@ public class Requests {
 		 * @return The response as a byte array.
 		 */
 		public String makeRequest(String url, BasicNameValuePair... headers) {
-			try {
-				HttpUriRequest request = this.requestClass.getConstructor(String.class).newInstance(url);
-				for (BasicNameValuePair header : headers) {
-					request.addHeader(header.getName(), header.getValue());
-				}
-
-				return request(request);
-			} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | InstantiationException e) {
-				Discord4J.LOGGER.error(LogMarkers.API, "Discord4J Internal Exception", e);
-				return null;
-			}
+			return join(makeRequestAsync(url, headers));
 		}
 
-
 		/**
 		 * Makes a request.
 		 *
@@ -241,116 +498,428 @@ public class Requests {
 		 * @return The response as a byte array.
 		 */
 		public String makeRequest(String url, HttpEntity entity, BasicNameValuePair... headers) {
+			return join(makeRequestAsync(url, entity, headers));
+		}
+
+		/**
+		 * Makes a request asynchronously.
+		 *
+		 * @param url The url to make the request to.
+		 * @param entity Any data to serialize and send in the body of the request.
+		 * @param clazz The class of the object to deserialize the json response into.
+		 * @param headers The headers to include in the request.
+		 * @param <T> The type of the object to deserialize the json response into.
+		 * @return A future which completes with the deserialized response.
+		 */
+		public <T> CompletableFuture<T> makeRequestAsync(String url, Object entity, Class<T> clazz, BasicNameValuePair... headers) {
+			return makeRequestAsync(url, serialize(entity), clazz, headers);
+		}
+
+		/**
+		 * Makes a request asynchronously.
+		 *
+		 * @param url The url to make the request to.
+		 * @param entity Any data to serialize and send in the body of the request.
+		 * @param clazz The class of the object to deserialize the json response into.
+		 * @param headers The headers to include in the request.
+		 * @param <T> The type of the object to deserialize the json response into.
+		 * @return A future which completes with the deserialized response.
+		 */
+		public <T> CompletableFuture<T> makeRequestAsync(String url, String entity, Class<T> clazz, BasicNameValuePair... headers) {
+			String contentType = getContentType(headers);
+			return send(url, contentType, bytes(contentType, entity.getBytes(StandardCharsets.UTF_8)), headers)
+					.thenApply(response -> deserialize(response, clazz));
+		}
+
+		/**
+		 * Makes a request asynchronously.
+		 *
+		 * @param url The url to make the request to.
+		 * @param clazz The class of the object to deserialize the json response into.
+		 * @param headers The headers to include in the request.
+		 * @param <T> The type of the object to deserialize the json response into.
+		 * @return A future which completes with the deserialized response.
+		 */
+		public <T> CompletableFuture<T> makeRequestAsync(String url, Class<T> clazz, BasicNameValuePair... headers) {
+			if (!method.equals("GET") || headers.length > 0)
+				return send(url, getContentType(headers), null, headers).thenApply(response -> deserialize(response, clazz));
+
+			String path = URI.create(url).getPath();
+			ResponseCache.Endpoint endpoint = responseCache.getEndpoint(path);
+			return endpoint == null ? shareRequest(url, clazz) : cachedRequest(url, path, endpoint, clazz);
+		}
+
+		/**
+		 * Makes a GET request to a cached endpoint. Like {@link #shareRequest(String, Class)}, the result is shared
+		 * with other callers, so it must not be modified.
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> CompletableFuture<T> cachedRequest(String url, String path, ResponseCache.Endpoint endpoint, Class<T> clazz) {
+			String key = clazz.getName() + ' ' + url;
+			ResponseCache.Entry cached = responseCache.get(key);
+			if (cached != null && !cached.isExpired())
+				return CompletableFuture.completedFuture(clazz.cast(cached.value));
+
+			CompletableFuture<T> future = new CompletableFuture<>();
+			boolean share = !THROW_ON_RATE_LIMIT.get(); // A rate limit must only fail the caller which asked for it
+			CompletableFuture<?> shared = share ? sharedRequests.putIfAbsent(key, future) : null;
+			if (shared != null) return (CompletableFuture<T>) shared;
+
+			long generation = responseCache.getGeneration();
+			AtomicReference<Response> received = new AtomicReference<>();
+			BasicNameValuePair[] validators = cached == null ? NO_HEADERS : cached.getValidators();
+			send(url, getContentType(NO_HEADERS), null, validators, received::set)
+					.thenApply(response -> {
+						Response headers = received.get();
+						if (cached != null && headers != null && headers.getStatus() == 304) {
+							responseCache.put(key, path, endpoint, cached.value, cached.etag, cached.lastModified, generation);
+							return clazz.cast(cached.value);
+						}
+
+						T result = deserialize(response, clazz);
+						if (result != null && headers != null) {
+							responseCache.put(key, path, endpoint, result, headers.getHeaders().get("ETag"),
+									headers.getHeaders().get("Last-Modified"), generation);
+						}
+						return result;
+					})
+					.whenComplete((result, throwable) -> {
+						if (share) sharedRequests.remove(key, future);
+						if (throwable != null) {
+							future.completeExceptionally(throwable);
+						} else {
+							future.complete(result);
+						}
+					});
+			return future;
+		}
+
+		/**
+		 * Makes a GET request whose deserialized result is shared with every identical request made while it is in
+		 * flight, or within the sharing window after it completed. Callers must therefore not modify the result.
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> CompletableFuture<T> shareRequest(String url, Class<T> clazz) {
+			if (THROW_ON_RATE_LIMIT.get()) // A rate limit must only fail the caller which asked for it
+				return send(url, getContentType(NO_HEADERS), null, NO_HEADERS)
+						.thenApply(response -> deserialize(response, clazz));
+
+			String key = clazz.getName() + ' ' + url;
+			CompletableFuture<T> future = new CompletableFuture<>();
+			CompletableFuture<?> shared = sharedRequests.putIfAbsent(key, future);
+			if (shared != null) return (CompletableFuture<T>) shared;
+
+			send(url, getContentType(NO_HEADERS), null, NO_HEADERS)
+					.thenApply(response -> deserialize(response, clazz))
+					.whenComplete((result, throwable) -> {
+						if (throwable != null || getSharingWindow <= 0) {
+							sharedRequests.remove(key, future);
+						} else {
+							SCHEDULER.schedule(() -> sharedRequests.remove(key, future), getSharingWindow,
+									TimeUnit.MILLISECONDS);
+						}
+
+						if (throwable != null) {
+							future.completeExceptionally(throwable);
+						} else {
+							future.complete(result);
+						}
+					});
+			return future;
+		}
+
+		/**
+		 * Makes a request asynchronously.
+		 *
+		 * @param url The url to make the request to.
+		 * @param entity Any data to serialize and send in the body of the request.
+		 * @param headers The headers to include in the request.
+		 * @return A future which completes with the response.
+		 */
+		public CompletableFuture<String> makeRequestAsync(String url, String entity, BasicNameValuePair... headers) {
+			String contentType = getContentType(headers);
+			return send(url, contentType, bytes(contentType, entity.getBytes(StandardCharsets.UTF_8)), headers)
+					.thenApply(this::readString);
+		}
+
+		/**
+		 * Makes a request asynchronously.
+		 *
+		 * @param url The url to make the request to.
+		 * @param headers The headers to include in the request.
+		 * @return A future which completes with the response.
+		 */
+		public CompletableFuture<String> makeRequestAsync(String url, BasicNameValuePair... headers) {
+			return send(url, getContentType(headers), null, headers).thenApply(this::readString);
+		}
+
+		/**
+		 * Makes a request asynchronously.
+		 *
+		 * @param url The url to make the request to.
+		 * @param entity Any data to serialize and send in the body of the request.
+		 * @param headers The headers to include in the request.
+		 * @return A future which completes with the response.
+		 */
+		public CompletableFuture<String> makeRequestAsync(String url, HttpEntity entity, BasicNameValuePair... headers) {
 			try {
-				if (HttpEntityEnclosingRequestBase.class.isAssignableFrom(this.requestClass)) {
-					HttpEntityEnclosingRequestBase request = (HttpEntityEnclosingRequestBase)
-							this.requestClass.getConstructor(String.class).newInstance(url);
-					for (BasicNameValuePair header : headers) {
-						request.addHeader(header.getName(), header.getValue());
-					}
-					request.setEntity(entity);
-					return request(request);
-				} else {
-					LOGGER.error(LogMarkers.API, "Tried to attach HTTP entity to invalid type! ({})", this.requestClass.getSimpleName());
-				}
-			} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | InstantiationException e) {
-				Discord4J.LOGGER.error(LogMarkers.API, "Discord4J Internal Exception", e);
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				entity.writeTo(content);
+				String contentType = entity.getContentType() == null ? getContentType(headers) : entity.getContentType().getValue();
+				return send(url, contentType, bytes(contentType, content.toByteArray()), headers).thenApply(this::readString);
+			} catch (IOException e) {
+				throw new DiscordException("Unable to serialize request!", e);
 			}
-			return null;
 		}
 
-		private String request(HttpUriRequest request) {
-			return request(request, 1, client == null ? 0 : client.getRetryCount());
+		/**
+		 * Makes a request asynchronously with a body which is streamed from the given content instead of being
+		 * buffered first. The supplier is called again for every retry of the request, so it must provide fresh
+		 * content each time.
+		 *
+		 * @param url The url to make the request to.
+		 * @param content Supplies the body of the request, including its content type.
+		 * @param clazz The class of the object to deserialize the json response into.
+		 * @param headers The headers to include in the request.
+		 * @param <T> The type of the object to deserialize the json response into.
+		 * @return A future which completes with the deserialized response.
+		 */
+		public <T> CompletableFuture<T> makeRequestAsync(String url, Supplier<? extends ContentProvider> content, Class<T> clazz,
+														 BasicNameValuePair... headers) {
+			return send(url, getContentType(headers), content, headers).thenApply(response -> deserialize(response, clazz));
 		}
 
-		private String request(HttpUriRequest request, long sleepTime, int retry) {
-			if (client != null)
-				request.addHeader("Authorization", client.getToken());
+		private Supplier<ContentProvider> bytes(String contentType, byte[] content) {
+			return () -> new BytesContentProvider(contentType, content);
+		}
 
-			if (request.containsHeader("Content-Type")) {
-				if (request.getFirstHeader("Content-Type").getValue().equals("multipart/form-data")) {
-					request.removeHeaders("Content-Type");
-				}
-			} else {
-				request.addHeader("Content-Type", "application/json; charset=utf-8");
+		private String serialize(Object entity) {
+			try {
+				return DiscordUtils.MAPPER.writeValueAsString(entity);
+			} catch (JsonProcessingException e) {
+				throw new DiscordException("Unable to serialize request!", e);
 			}
+		}
 
-			if (globalRetryAfter.get() != -1) {
-				if (System.currentTimeMillis() > globalRetryAfter.get())
-					globalRetryAfter.set(-1);
-				else
-					throw new RateLimitException("Global rate limit exceeded.",
-							globalRetryAfter.get() - System.currentTimeMillis(), request.getMethod(), true);
+		private <T> T deserialize(InputStream response, Class<T> clazz) {
+			try {
+				return response == null ? null : DiscordUtils.MAPPER.readValue(response, clazz);
+			} catch (IOException e) {
+				throw new DiscordException("Unable to serialize request!", e);
 			}
+		}
 
-			Pair<String, String> methodRequestPair = Pair.of(request.getMethod(), request.getURI().getPath());
+		/**
+		 * Reads the rate limit of a 429 response from its body. If the body is not Discord's JSON (e.g. an error page
+		 * served by Cloudflare), the rate limit is read from the headers instead.
+		 */
+		private RateLimitResponse getRateLimit(Response response, BufferingResponseListener body) {
+			try {
+				return DiscordUtils.MAPPER.readValue(body.getContentAsInputStream(), RateLimitResponse.class);
+			} catch (IOException e) {
+				LOGGER.debug(LogMarkers.API, "Received a 429 without a JSON body, reading the rate limit from its headers.");
+			}
 
-			if (retryAfters.containsKey(methodRequestPair)) {
-				if (System.currentTimeMillis() > retryAfters.get(methodRequestPair))
-					retryAfters.remove(methodRequestPair);
-				else
-					throw new RateLimitException("Rate limit exceeded.",
-							retryAfters.get(methodRequestPair) - System.currentTimeMillis(),
-							String.format("%s %s", methodRequestPair.getLeft(), methodRequestPair.getRight()), false);
+			RateLimitResponse rateLimit = new RateLimitResponse();
+			rateLimit.message = "You are being rate limited.";
+			rateLimit.global = Boolean.parseBoolean(response.getHeaders().get("X-RateLimit-Global"));
+			rateLimit.retry_after = 1000; // Backs off for a second if neither header is present
+			String resetAfter = response.getHeaders().get("X-RateLimit-Reset-After");
+			String retryAfter = response.getHeaders().get("Retry-After"); // In seconds, as sent by Cloudflare
+			try {
+				if (resetAfter != null) {
+					rateLimit.retry_after = (long) Math.ceil(Double.parseDouble(resetAfter) * 1000);
+				} else if (retryAfter != null) {
+					rateLimit.retry_after = (long) Math.ceil(Double.parseDouble(retryAfter) * 1000);
+				}
+			} catch (NumberFormatException e) {
+				LOGGER.debug(LogMarkers.API, "Unable to parse the retry delay of a 429, backing off for a second.");
 			}
+			return rateLimit;
+		}
 
-			try (CloseableHttpResponse response = CLIENT.execute(request)) {
-				int responseCode = response.getStatusLine().getStatusCode();
+		private String readString(InputStream response) {
+			try {
+				return response == null ? null : IOUtils.toString(response, StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new DiscordException("Unable to read response!", e);
+			}
+		}
 
-				if (response.containsHeader("X-RateLimit-Remaining")) {
-					int remaining = Integer.parseInt(response.getFirstHeader("X-RateLimit-Remaining").getValue());
-					if (remaining == 0) {
-						retryAfters.put(methodRequestPair,
-								Long.parseLong(response.getFirstHeader("X-RateLimit-Reset").getValue()) * 1000);
-					}
-				}
+		private String getContentType(BasicNameValuePair[] headers) {
+			for (BasicNameValuePair header : headers) {
+				if (header.getName().equalsIgnoreCase("Content-Type") && !header.getValue().equals("multipart/form-data"))
+					return header.getValue();
+			}
+			return "application/json; charset=utf-8";
+		}
 
-				String data = null;
-				if (response.getEntity() != null)
-					data = EntityUtils.toString(response.getEntity());
-
-				if (responseCode == 404) {
-					if (!request.getURI().toString().contains("invite") && !request.getURI().toString().contains("messages") && !request.getURI().toString().contains("users")) //Suppresses common 404s which are a result on queries to verify if something exists or not
-						LOGGER.error(LogMarkers.API, "Received 404 error, please notify the developer and include the URL ({})", request.getURI());
-					return null;
-				} else if (responseCode == 403) {
-					LOGGER.error(LogMarkers.API, "Received 403 forbidden error for url {}. If you believe this is a Discord4J error, report this!", request.getURI());
-					return null;
-				} else if (responseCode == 204) { //There is a no content response when deleting messages
-					return null;
-				} else if ((responseCode >= 500 && responseCode < 600) || (responseCode == 400 && data != null && data.contains("cloudflare"))) {
-					if (retry == 0)
-						throw new DiscordException(String.format("Failed to make a %s failed request after %s tries!",
-								responseCode, client == null ? 0 : client.getRetryCount()));
-					try {
-						Thread.sleep(sleepTime);
-					} catch (InterruptedException e) {
-						throw new DiscordException("Interrupted while waiting to retry a 5xx response!", e);
-					}
-					return request(request, (long) (Math.pow(sleepTime, 2) * ThreadLocalRandom.current().nextLong(5)), retry - 1);
+		/**
+		 * Sends a request.
+		 *
+		 * @return A future which completes with a stream over the buffered body of a successful response, or null if it
+		 * had none.
+		 */
+		private CompletableFuture<InputStream> send(String url, String contentType, Supplier<? extends ContentProvider> content,
+													BasicNameValuePair[] headers) {
+			return send(url, contentType, content, headers, null);
+		}
 
-				} else if ((responseCode < 200 || responseCode > 299) && responseCode != 429) {
-					throw new DiscordException("Error on request to " + request.getURI() + ". Received response code " + responseCode + ". With response text: " + data);
-				}
+		/**
+		 * Sends a request.
+		 *
+		 * @param onHeaders Called with the final response before the future completes (may be null).
+		 * @return A future which completes with a stream over the buffered body of a successful response, or null if it
+		 * had none.
+		 */
+		private CompletableFuture<InputStream> send(String url, String contentType, Supplier<? extends ContentProvider> content,
+													BasicNameValuePair[] headers, Consumer<Response> onHeaders) {
+			CompletableFuture<InputStream> future = new CompletableFuture<>();
+			if (content != null && !allowsEntity) {
+				LOGGER.error(LogMarkers.API, "Tried to attach HTTP entity to invalid type! ({})", method);
+				future.complete(null);
+				return future;
+			}
+
+			send(url, contentType, content, headers, onHeaders, RequestPriority.current(), THROW_ON_RATE_LIMIT.get(),
+					future, 0);
+			// Hands the result over to the callback executor, so no callback can hold on to a thread of the HTTP client
+			return future.whenCompleteAsync((response, throwable) -> {}, CALLBACK_EXECUTOR);
+		}
 
-				if (responseCode == 429) {
-					RateLimitResponse rateLimitResponse = DiscordUtils.MAPPER.readValue(data, RateLimitResponse.class);
+		private void send(String url, String contentType, Supplier<? extends ContentProvider> content, BasicNameValuePair[] headers,
+						  Consumer<Response> onHeaders, RequestPriority priority, boolean throwOnRateLimit,
+						  CompletableFuture<InputStream> future, int retries) {
+			rateLimiter.acquire(method, URI.create(url).getPath(), priority, throwOnRateLimit)
+					.thenAccept(bucket -> leaseConnection(priority, () -> {
+						AtomicBoolean completed = new AtomicBoolean(); // Guards against releasing the slots twice
+						try {
+							send(url, contentType, content, headers, onHeaders, priority, throwOnRateLimit, future, retries,
+									bucket, completed);
+						} catch (RuntimeException e) { // The request was never sent, so its slots are given back
+							if (completed.compareAndSet(false, true)) {
+								releaseConnection(priority);
+								rateLimiter.release(bucket);
+								future.completeExceptionally(e);
+							}
+						}
+					}))
+					.exceptionally(throwable -> { // The request was rate limited or couldn't be queued
+						future.completeExceptionally(
+								throwable instanceof CompletionException ? throwable.getCause() : throwable);
+						return null;
+					});
+		}
 
-					if (rateLimitResponse.global) {
-						globalRetryAfter.set(System.currentTimeMillis() + rateLimitResponse.retry_after);
+		/**
+		 * Sends a request once it has a slot in its bucket and a connection. Exactly one of the response listener and
+		 * the caller, whichever sets <code>completed</code> first, completes the request and releases its slots.
+		 */
+		private void send(String url, String contentType, Supplier<? extends ContentProvider> content, BasicNameValuePair[] headers,
+						  Consumer<Response> onHeaders, RequestPriority priority, boolean throwOnRateLimit,
+						  CompletableFuture<InputStream> future, int retries, RateLimiter.Bucket bucket, AtomicBoolean completed) {
+			org.eclipse.jetty.client.api.Request request = httpClient.newRequest(url).method(method);
+			if (client != null)
+				request.header("Authorization", client.getToken());
+			for (BasicNameValuePair header : headers) {
+				if (!header.getName().equalsIgnoreCase("Content-Type"))
+					request.header(header.getName(), header.getValue());
+			}
+			if (content != null) {
+				request.content(content.get());
+			} else {
+				request.header("Content-Type", contentType);
+			}
+
+			long queuedAt = System.nanoTime();
+			AtomicLong leasedAt = new AtomicLong();
+			stats.queued();
+			request.onRequestBegin(begun -> {
+				long now = System.nanoTime();
+				leasedAt.set(now);
+				stats.leased(now - queuedAt);
+			});
+
+			request.send(new BufferingResponseListener(MAX_RESPONSE_LENGTH) {
+				@Override
+				public void onComplete(Result result) {
+					if (!completed.compareAndSet(false, true)) return;
+
+					releaseConnection(priority);
+					if (leasedAt.get() == 0) {
+						stats.abandoned();
 					} else {
-						retryAfters.put(methodRequestPair, System.currentTimeMillis() + rateLimitResponse.retry_after);
+						stats.released(System.nanoTime() - leasedAt.get());
+					}
+
+					if (result.isFailed()) {
+						stats.failed();
+						rateLimiter.release(bucket);
+						Discord4J.LOGGER.error(LogMarkers.API, "Discord4J Internal Exception", result.getFailure());
+						future.complete(null);
+						return;
 					}
 
-					throw new RateLimitException(rateLimitResponse.message, rateLimitResponse.retry_after,
-							String.format("%s %s", methodRequestPair.getLeft(), methodRequestPair.getRight()),
-							rateLimitResponse.global);
+					Response response = result.getResponse();
+					try {
+						rateLimiter.update(bucket, name -> response.getHeaders().get(name));
+						onResponse(url, contentType, content, headers, onHeaders, priority, throwOnRateLimit, future,
+								retries, bucket, response, this);
+					} catch (RuntimeException e) {
+						future.completeExceptionally(e);
+					}
 				}
+			});
+		}
 
-				return data;
-			} catch (IOException e) {
-				Discord4J.LOGGER.error(LogMarkers.API, "Discord4J Internal Exception", e);
-				return null;
+		private void onResponse(String url, String contentType, Supplier<? extends ContentProvider> content, BasicNameValuePair[] headers,
+								Consumer<Response> onHeaders, RequestPriority priority, boolean throwOnRateLimit,
+								CompletableFuture<InputStream> future, int retries, RateLimiter.Bucket bucket, Response response,
+								BufferingResponseListener body) {
+			int responseCode = response.getStatus();
+			if (!method.equals("GET") && responseCode >= 200 && responseCode < 300)
+				responseCache.modified(URI.create(url).getPath());
+			if (onHeaders != null && responseCode != 429 && responseCode < 500)
+				onHeaders.accept(response);
+
+			if (responseCode == 404) {
+				if (!url.contains("invite") && !url.contains("messages") && !url.contains("users")) //Suppresses common 404s which are a result on queries to verify if something exists or not
+					LOGGER.error(LogMarkers.API, "Received 404 error, please notify the developer and include the URL ({})", url);
+				future.complete(null);
+			} else if (responseCode == 403) {
+				LOGGER.error(LogMarkers.API, "Received 403 forbidden error for url {}. If you believe this is a Discord4J error, report this!", url);
+				future.complete(null);
+			} else if (responseCode == 204) { //There is a no content response when deleting messages
+				future.complete(null);
+			} else if (responseCode == 304) { // The cached response is still valid
+				future.complete(null);
+			} else if ((responseCode >= 500 && responseCode < 600) || (responseCode == 400 && body.getContentAsString("UTF-8").contains("cloudflare"))) {
+				RetryPolicy retryPolicy = client == null ? RetryPolicy.NONE : client.getRetryPolicy();
+				if (!retryPolicy.shouldRetry(retries)) {
+					future.completeExceptionally(new DiscordException(String.format(
+							"Failed to make a %s failed request after %s tries!", responseCode, retries)));
+				} else {
+					SCHEDULER.schedule(() -> send(url, contentType, content, headers, onHeaders, priority, throwOnRateLimit,
+							future, retries + 1), retryPolicy.getDelay(retries), TimeUnit.MILLISECONDS);
+				}
+			} else if (responseCode == 429) {
+				RateLimitResponse rateLimitResponse = getRateLimit(response, body);
+				rateLimiter.rateLimited(bucket, rateLimitResponse.retry_after, rateLimitResponse.global);
+				if (throwOnRateLimit) {
+					future.completeExceptionally(new RateLimitException(rateLimitResponse.message, rateLimitResponse.retry_after,
+							bucket.route, rateLimitResponse.global));
+				} else { // The limiter holds the request back until it may be sent again
+					send(url, contentType, content, headers, onHeaders, priority, throwOnRateLimit, future, retries);
+				}
+			} else if (responseCode < 200 || responseCode > 299) {
+				future.completeExceptionally(new DiscordException("Error on request to " + url + ". Received response code " + responseCode + ". With response text: " + body.getContentAsString("UTF-8")));
+			} else {
+				InputStream data = body.getContentAsInputStream(); // Reads the buffer without copying it
+				try {
+					future.complete(data.available() == 0 ? null : data);
+				} catch (IOException e) {
+					future.completeExceptionally(new DiscordException("Unable to read response!", e));
+				}
 			}
 		}
 	}
@@ -0,0 +1,276 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import org.apache.http.message.BasicNameValuePair;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the responses of slow-changing GET endpoints of a {@link Requests} instance.
+ *
+ * <p>Responses are kept for the time to live of their endpoint. Once that has passed, the response is revalidated
+ * with its <code>ETag</code> or <code>Last-Modified</code> header if Discord sent one, and requested again otherwise.
+ * Responses are also dropped when a request through the same client modifies them, and when a gateway event says
+ * they changed. Expired responses are dropped once they can no longer be revalidated, or have been expired for another
+ * time to live.
+ */
+public class ResponseCache {
+
+	/**
+	 * The time in milliseconds between purges of the expired responses.
+	 */
+	private static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * The endpoints whose responses may be cached.
+	 */
+	public enum Endpoint {
+		/**
+		 * The available voice regions. Both the general and the per-guild lists are included.
+		 */
+		REGIONS(".*/voice/regions|.*/guilds/(\\d+)/regions", TimeUnit.HOURS.toMillis(1)),
+		/**
+		 * The OAuth application info of the bot, used by the application info getters of the client.
+		 */
+		APPLICATION_INFO(".*/oauth2/applications/@me", TimeUnit.MINUTES.toMillis(10)),
+		/**
+		 * The bans of a guild.
+		 */
+		GUILD_BANS(".*/guilds/(\\d+)/bans", TimeUnit.MINUTES.toMillis(5)),
+		/**
+		 * The invites of a guild. Their use counts change on every join without a gateway event, so this endpoint is
+		 * only cached if a time to live is set for it.
+		 */
+		GUILD_INVITES(".*/guilds/(\\d+)/invites", 0),
+		/**
+		 * An invite looked up by its code. Like {@link #GUILD_INVITES}, this is only cached if a time to live is set
+		 * for it.
+		 */
+		INVITE(".*/invite/([^/]+)", 0);
+
+		private final Pattern pattern;
+		private final long defaultTTL;
+
+		Endpoint(String pattern, long defaultTTL) {
+			this.pattern = Pattern.compile(pattern);
+			this.defaultTTL = defaultTTL;
+		}
+
+		/**
+		 * Gets the time in milliseconds responses of the endpoint are cached by default.
+		 *
+		 * @return The default time to live.
+		 */
+		public long getDefaultTTL() {
+			return defaultTTL;
+		}
+	}
+
+	/**
+	 * The time in milliseconds responses are cached for, per endpoint.
+	 */
+	private final Map<Endpoint, Long> ttls = new EnumMap<>(Endpoint.class);
+
+	/**
+	 * The cached responses, keyed by result class and url.
+	 */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented on every invalidation, so responses which were requested before it are not cached.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * The time at which the expired responses were last purged.
+	 */
+	private final AtomicLong lastPurge = new AtomicLong(System.currentTimeMillis());
+
+	/**
+	 * @param ttls The time in milliseconds responses are cached for, per endpoint. Endpoints which are missing use
+	 * their default time to live, and a time to live of 0 or less disables caching of the endpoint.
+	 */
+	public ResponseCache(Map<Endpoint, Long> ttls) {
+		for (Endpoint endpoint : Endpoint.values())
+			this.ttls.put(endpoint, ttls.getOrDefault(endpoint, endpoint.getDefaultTTL()));
+	}
+
+	/**
+	 * Drops the cached responses of an endpoint.
+	 *
+	 * @param endpoint The endpoint whose responses to drop.
+	 */
+	public void invalidate(Endpoint endpoint) {
+		generation.incrementAndGet();
+		entries.values().removeIf(entry -> entry.endpoint == endpoint);
+	}
+
+	/**
+	 * Drops the cached responses of an endpoint for a guild.
+	 *
+	 * @param endpoint The endpoint whose responses to drop.
+	 * @param guildID The ID of the guild.
+	 */
+	public void invalidate(Endpoint endpoint, long guildID) {
+		String id = Long.toUnsignedString(guildID);
+		generation.incrementAndGet();
+		entries.values().removeIf(entry -> entry.endpoint == endpoint && id.equals(entry.id));
+	}
+
+	/**
+	 * Drops all cached responses.
+	 */
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+
+	/**
+	 * Gets the cached endpoint a path belongs to.
+	 *
+	 * @param path The path of the request.
+	 * @return The endpoint, or null if responses of the path are not cached.
+	 */
+	Endpoint getEndpoint(String path) {
+		for (Endpoint endpoint : Endpoint.values()) {
+			if (ttls.get(endpoint) > 0 && endpoint.pattern.matcher(path).matches())
+				return endpoint;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the current generation of the cache, which must be passed back when a response is stored.
+	 */
+	long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Gets a cached response. Expired responses which can't be revalidated are dropped instead.
+	 */
+	Entry get(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null && entry.isExpired() && !entry.canRevalidate()) {
+			entries.remove(key, entry);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Caches a response unless the cache was invalidated since the request was made.
+	 */
+	void put(String key, String path, Endpoint endpoint, Object value, String etag, String lastModified, long generation) {
+		Matcher matcher = endpoint.pattern.matcher(path);
+		String id = null;
+		if (matcher.matches()) {
+			for (int i = 1; i <= matcher.groupCount() && id == null; i++)
+				id = matcher.group(i);
+		}
+
+		Entry entry = new Entry(endpoint, id, path, value, etag, lastModified, System.currentTimeMillis() + ttls.get(endpoint));
+		entries.put(key, entry);
+		if (this.generation.get() != generation)
+			entries.remove(key, entry);
+		purgeExpired();
+	}
+
+	/**
+	 * Drops the expired responses which can't be revalidated, or which have been expired for another time to live.
+	 * This runs at most once per {@link #PURGE_INTERVAL}, so responses which are never requested again don't pile up.
+	 */
+	private void purgeExpired() {
+		long now = System.currentTimeMillis();
+		long last = lastPurge.get();
+		if (now - last < PURGE_INTERVAL || !lastPurge.compareAndSet(last, now)) return;
+
+		entries.values().removeIf(entry -> now >= entry.expiresAt
+				&& (!entry.canRevalidate() || now >= entry.expiresAt + ttls.get(entry.endpoint)));
+	}
+
+	/**
+	 * Drops the cached responses which may have been changed by a successful request which modified the given path.
+	 */
+	void modified(String path) {
+		boolean invites = path.contains("/invite");
+		if (!invites && !path.contains("/bans")) return; // Other requests can't modify cached endpoints
+
+		generation.incrementAndGet();
+		entries.values().removeIf(entry -> path.startsWith(entry.path)
+				|| (invites && (entry.endpoint == Endpoint.INVITE || entry.endpoint == Endpoint.GUILD_INVITES)));
+	}
+
+	/**
+	 * A cached response.
+	 */
+	static final class Entry {
+
+		final Endpoint endpoint;
+		/**
+		 * The ID of the guild or the invite code the response belongs to (or null if it belongs to neither).
+		 */
+		final String id;
+		final String path;
+		final Object value;
+		final String etag;
+		final String lastModified;
+		final long expiresAt;
+
+		private Entry(Endpoint endpoint, String id, String path, Object value, String etag, String lastModified, long expiresAt) {
+			this.endpoint = endpoint;
+			this.id = id;
+			this.path = path;
+			this.value = value;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() >= expiresAt;
+		}
+
+		/**
+		 * Gets whether the response can be revalidated once it expired.
+		 */
+		boolean canRevalidate() {
+			return etag != null || lastModified != null;
+		}
+
+		/**
+		 * Gets the headers which revalidate the response, or an empty array if it can't be revalidated.
+		 */
+		BasicNameValuePair[] getValidators() {
+			List<BasicNameValuePair> validators = new ArrayList<>(2);
+			if (etag != null)
+				validators.add(new BasicNameValuePair("If-None-Match", etag));
+			if (lastModified != null)
+				validators.add(new BasicNameValuePair("If-Modified-Since", lastModified));
+			return validators.toArray(new BasicNameValuePair[0]);
+		}
+	}
+}
@@ -17,6 +17,7 @@
 
 package sx.blah.discord.api.internal;
 
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.IDiscordClient;
 import sx.blah.discord.api.IShard;
@@ -34,7 +35,8 @@ import sx.blah.discord.util.LogMarkers;
 import sx.blah.discord.util.RequestBuffer;
 import sx.blah.discord.util.cache.Cache;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -101,6 +103,8 @@ public class ShardImpl implements IShard {
 	public void login() {
 		Discord4J.LOGGER.trace(LogMarkers.API, "Shard logging in.");
 		this.ws = new DiscordWS(this, gateway, client.maxMissedPings, identifyPresence);
+		if (client.getCacheSnapshotDirectory() != null)
+			CacheSnapshot.restore(this, ws, client.getCacheSnapshotDirectory());
 		this.ws.connect();
 	}
 
@@ -116,7 +120,12 @@ public class ShardImpl implements IShard {
 			}).get()
 		);
 		getClient().getDispatcher().dispatch(new DisconnectedEvent(DisconnectedEvent.Reason.LOGGED_OUT, this));
-		ws.shutdown();
+		if (client.getCacheSnapshotDirectory() != null) {
+			ws.shutdown(true);
+			CacheSnapshot.write(this, ws, client.getCacheSnapshotDirectory());
+		} else {
+			ws.shutdown();
+		}
 	}
 
 	@Override
@@ -173,9 +182,8 @@ public class ShardImpl implements IShard {
 
 	@Override
 	public List<IChannel> getChannels(boolean includePrivate) {
-		List<IChannel> channels = guildCache.stream()
-				.flatMap(g -> g.getChannels().stream())
-				.collect(Collectors.toList());
+		List<IChannel> channels = new ArrayList<>();
+		forEachChannel((channelID, channel) -> channels.add(channel));
 
 		if (includePrivate)
 			channels.addAll(privateChannels.values());
@@ -195,12 +203,16 @@ public class ShardImpl implements IShard {
 		return channel == null ? privateChannels.get(id) : channel;
 	}
 
+	@Override
+	public void forEachChannel(LongObjConsumer<? super IChannel> action) {
+		guildCache.forEach((guildID, guild) -> guild.forEachChannel(action));
+	}
+
 	@Override
 	public List<IVoiceChannel> getVoiceChannels() {
-		return guildCache.stream()
-				.map(IGuild::getVoiceChannels)
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IVoiceChannel> voiceChannels = new ArrayList<>();
+		guildCache.forEach((guildID, guild) -> guild.forEachVoiceChannel((channelID, channel) -> voiceChannels.add(channel)));
+		return voiceChannels;
 	}
 
 	@Override
@@ -215,7 +227,7 @@ public class ShardImpl implements IShard {
 
 	@Override
 	public List<IGuild> getGuilds() {
-		return new LinkedList<>(guildCache.values());
+		return new ArrayList<>(guildCache.values());
 	}
 
 	@Override
@@ -224,16 +236,14 @@ public class ShardImpl implements IShard {
 	}
 
 	@Override
-	public List<IUser> getUsers() {
-		List<IUser> guildUserList = guildCache.stream()
-				.map(IGuild::getUsers)
-				.flatMap(List::stream)
-				.distinct()
-				.collect(Collectors.toList());
-
-		if (client.getOurUser() != null && !guildUserList.contains(client.getOurUser()))
-			guildUserList.add(client.getOurUser());
+	public void forEachGuild(LongObjConsumer<? super IGuild> action) {
+		guildCache.forEach(action);
+	}
 
+	@Override
+	public List<IUser> getUsers() {
+		List<IUser> guildUserList = new ArrayList<>();
+		forEachUser((userID, user) -> guildUserList.add(user));
 		return guildUserList;
 	}
 
@@ -241,7 +251,39 @@ public class ShardImpl implements IShard {
 	public IUser getUserByID(long userID) {
 		IUser ourUser = getClient().getOurUser();
 		if (ourUser != null && userID == ourUser.getLongID()) return ourUser;
-		return guildCache.findResult((guildID, guild) -> guild.getUserByID(userID));
+		IUser user = client.userCache.get(userID);
+		return user != null && ((User) user).isMemberOfAny(guildCache::containsKey) ? user : null;
+	}
+
+	@Override
+	public void forEachUser(LongObjConsumer<? super IUser> action) {
+		IUser ourUser = client.getOurUser();
+		List<IGuild> guilds = copyGuilds();
+		long[] guildIDs = guilds.stream().mapToLong(IGuild::getLongID).sorted().toArray();
+		for (IGuild guild : guilds) {
+			long guildID = guild.getLongID();
+			// Members of several of the shard's guilds are only visited in the one with the lowest ID. Only the
+			// guild's member cache is locked while the action runs.
+			guild.forEachUser((userID, user) -> {
+				if (user != ourUser
+						&& !((User) user).isMemberOfAny(id -> id < guildID && Arrays.binarySearch(guildIDs, id) >= 0))
+					action.accept(userID, user);
+			});
+		}
+
+		if (ourUser != null)
+			action.accept(ourUser.getLongID(), ourUser);
+	}
+
+	/**
+	 * Copies the guilds of the shard, so they can be iterated without holding the lock of the guild cache.
+	 *
+	 * @return The guilds of the shard.
+	 */
+	private List<IGuild> copyGuilds() {
+		List<IGuild> guilds = new ArrayList<>(guildCache.size());
+		guildCache.forEach((guildID, guild) -> guilds.add(guild));
+		return guilds;
 	}
 
 	@Override
@@ -252,10 +294,9 @@ public class ShardImpl implements IShard {
 
 	@Override
 	public List<IRole> getRoles() {
-		return guildCache.stream()
-				.map(IGuild::getRoles)
-				.flatMap(List::stream)
-				.collect(Collectors.toList());
+		List<IRole> roles = new ArrayList<>();
+		forEachRole((roleID, role) -> roles.add(role));
+		return roles;
 	}
 
 	@Override
@@ -263,6 +304,11 @@ public class ShardImpl implements IShard {
 		return guildCache.findResult((guildID, guild) -> guild.getRoleByID(roleID));
 	}
 
+	@Override
+	public void forEachRole(LongObjConsumer<? super IRole> action) {
+		guildCache.forEach((guildID, guild) -> guild.forEachRole(action));
+	}
+
 	@Override
 	public List<IMessage> getMessages(boolean includePrivate) {
 		return getChannels(includePrivate).stream()
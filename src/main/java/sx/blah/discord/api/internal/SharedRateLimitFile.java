@@ -0,0 +1,218 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import sx.blah.discord.util.DiscordException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rate limit state which is shared by every process on a host through a memory-mapped file.
+ *
+ * <p>The file holds the global rate limit and a fixed number of slots for the buckets of routes. Every read and write
+ * happens while the whole file is locked, so each check-and-take of a slot is atomic across processes. Processes
+ * count the requests they send against both the bot-wide limit of {@value #GLOBAL_LIMIT} requests per second and the
+ * remaining requests of their bucket, and write the limits Discord reports back into the file for the others.
+ */
+final class SharedRateLimitFile {
+
+	/**
+	 * The number of requests per second which Discord allows per bot across all routes.
+	 */
+	static final int GLOBAL_LIMIT = 50;
+
+	private static final int MAGIC = 0x44344A52;
+	private static final int VERSION = 1;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int GLOBAL_RESET_OFFSET = 8;
+	private static final int WINDOW_START_OFFSET = 16;
+	private static final int WINDOW_COUNT_OFFSET = 24;
+
+	private static final int SLOTS_OFFSET = 64;
+	private static final int SLOT_COUNT = 4096;
+	private static final int SLOT_SIZE = 24;
+	private static final int SLOT_KEY = 0;
+	private static final int SLOT_RESET = 8;
+	private static final int SLOT_REMAINING = 16;
+	/**
+	 * The number of slots searched for a bucket, starting at the slot its key hashes to.
+	 */
+	private static final int PROBES = 8;
+
+	private static final int SIZE = SLOTS_OFFSET + SLOT_COUNT * SLOT_SIZE;
+
+	/**
+	 * The open files, keyed by their canonical path. A file is only locked through one channel per process, as file
+	 * locks are held by the whole process.
+	 */
+	private static final Map<String, SharedRateLimitFile> OPEN_FILES = new HashMap<>();
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	private SharedRateLimitFile(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+
+		try (FileLock ignored = channel.lock()) {
+			if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+				for (int i = 0; i < SIZE; i += 8)
+					buffer.putLong(i, 0);
+				buffer.putInt(MAGIC_OFFSET, MAGIC);
+				buffer.putInt(VERSION_OFFSET, VERSION);
+			}
+		}
+	}
+
+	/**
+	 * Opens a shared rate limit file, creating it if it doesn't exist.
+	 *
+	 * @param file The file to open.
+	 * @return The shared rate limit state of the file.
+	 */
+	static SharedRateLimitFile open(File file) {
+		try {
+			String path = file.getCanonicalPath();
+			synchronized (OPEN_FILES) {
+				SharedRateLimitFile shared = OPEN_FILES.get(path);
+				if (shared == null) {
+					shared = new SharedRateLimitFile(file);
+					OPEN_FILES.put(path, shared);
+				}
+				return shared;
+			}
+		} catch (IOException e) {
+			throw new DiscordException("Unable to open the shared rate limit file " + file, e);
+		}
+	}
+
+	/**
+	 * Takes a request from the global limit and the bucket of the given key if both allow it.
+	 *
+	 * @param key The key of the bucket.
+	 * @return 0 if the request may be sent, or the time in milliseconds to wait before trying again.
+	 */
+	synchronized long tryAcquire(String key) {
+		try (FileLock ignored = channel.lock()) {
+			long now = System.currentTimeMillis();
+			long globalResetAt = buffer.getLong(GLOBAL_RESET_OFFSET);
+			if (globalResetAt > now)
+				return globalResetAt - now;
+
+			int slot = findSlot(hash(key), false);
+			if (slot != -1 && buffer.getLong(slot + SLOT_RESET) > now && buffer.getInt(slot + SLOT_REMAINING) <= 0)
+				return buffer.getLong(slot + SLOT_RESET) - now;
+
+			long windowStart = buffer.getLong(WINDOW_START_OFFSET);
+			if (now - windowStart >= 1000 || now < windowStart) {
+				windowStart = now;
+				buffer.putLong(WINDOW_START_OFFSET, now);
+				buffer.putInt(WINDOW_COUNT_OFFSET, 0);
+			}
+			int count = buffer.getInt(WINDOW_COUNT_OFFSET);
+			if (count >= GLOBAL_LIMIT)
+				return windowStart + 1000 - now;
+
+			buffer.putInt(WINDOW_COUNT_OFFSET, count + 1);
+			if (slot != -1 && buffer.getLong(slot + SLOT_RESET) > now)
+				buffer.putInt(slot + SLOT_REMAINING, buffer.getInt(slot + SLOT_REMAINING) - 1);
+			return 0;
+		} catch (IOException e) {
+			throw new DiscordException("Unable to lock the shared rate limit file!", e);
+		}
+	}
+
+	/**
+	 * Records the limits Discord reported for a bucket.
+	 *
+	 * @param key The key of the bucket.
+	 * @param remaining The number of requests which may still be sent before the bucket resets.
+	 * @param resetAt The time at which the bucket resets.
+	 */
+	synchronized void update(String key, int remaining, long resetAt) {
+		try (FileLock ignored = channel.lock()) {
+			long hash = hash(key);
+			int slot = findSlot(hash, true);
+			buffer.putLong(slot + SLOT_KEY, hash);
+			buffer.putLong(slot + SLOT_RESET, resetAt);
+			buffer.putInt(slot + SLOT_REMAINING, remaining);
+		} catch (IOException e) {
+			throw new DiscordException("Unable to lock the shared rate limit file!", e);
+		}
+	}
+
+	/**
+	 * Records that the global rate limit was hit.
+	 *
+	 * @param resetAt The time at which requests may be sent again.
+	 */
+	synchronized void globalRateLimited(long resetAt) {
+		try (FileLock ignored = channel.lock()) {
+			if (buffer.getLong(GLOBAL_RESET_OFFSET) < resetAt)
+				buffer.putLong(GLOBAL_RESET_OFFSET, resetAt);
+		} catch (IOException e) {
+			throw new DiscordException("Unable to lock the shared rate limit file!", e);
+		}
+	}
+
+	/**
+	 * Finds the slot of a bucket. Must be called while the file is locked.
+	 *
+	 * @param hash The hash of the bucket's key.
+	 * @param claim Whether to claim a slot if the bucket has none. Empty slots are claimed first, and otherwise the
+	 * slot which resets the soonest.
+	 * @return The offset of the slot, or -1 if the bucket has none and none was claimed.
+	 */
+	private int findSlot(long hash, boolean claim) {
+		int start = (int) Long.remainderUnsigned(hash, SLOT_COUNT);
+		int candidate = -1;
+		long candidateReset = Long.MAX_VALUE;
+		for (int i = 0; i < PROBES; i++) {
+			int slot = SLOTS_OFFSET + ((start + i) % SLOT_COUNT) * SLOT_SIZE;
+			long key = buffer.getLong(slot + SLOT_KEY);
+			if (key == hash) return slot;
+
+			long reset = key == 0 ? 0 : buffer.getLong(slot + SLOT_RESET);
+			if (reset < candidateReset) {
+				candidate = slot;
+				candidateReset = reset;
+			}
+		}
+		return claim ? candidate : -1;
+	}
+
+	/**
+	 * Hashes the key of a bucket with 64-bit FNV-1a. 0 marks empty slots, so it is never returned.
+	 */
+	private static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash == 0 ? 1 : hash;
+	}
+}
@@ -22,8 +22,9 @@ import sx.blah.discord.api.events.Event;
 
 /**
  * Dispatched when all shards have received all available guilds. This means that a
- * {@link sx.blah.discord.handle.impl.events.shard.ShardReadyEvent} has been fired for each shard.
+ * {@link sx.blah.discord.handle.impl.events.shard.ShardReadyEvent} has been fired for each shard the client manages.
  *
+ * @see sx.blah.discord.handle.impl.events.shard.ShardRangeReadyEvent
  * @see IDiscordClient#isReady()
  */
 public class ReadyEvent extends Event {
@@ -59,6 +59,7 @@ public abstract class MessageEvent extends ChannelEvent {
 	 * @return The author of the message.
 	 */
 	public IUser getAuthor() {
+		IMessage message = getMessage();
 		return message == null ? null : message.getAuthor();
 	}
 
@@ -17,10 +17,15 @@
 
 package sx.blah.discord.handle.impl.events.guild.channel.message.reaction;
 
+import sx.blah.discord.handle.impl.obj.ReactionEmoji;
+import sx.blah.discord.handle.obj.IChannel;
 import sx.blah.discord.handle.obj.IMessage;
 import sx.blah.discord.handle.obj.IReaction;
 import sx.blah.discord.handle.obj.IUser;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * Dispatched when a reaction gets added to a message.
  */
@@ -29,4 +34,8 @@ public class ReactionAddEvent extends ReactionEvent {
 	public ReactionAddEvent(IMessage message, IReaction reaction, IUser user) {
 		super(message, reaction, user);
 	}
+
+	public ReactionAddEvent(IChannel channel, long messageID, ReactionEmoji emoji, IUser user, Supplier<CompletableFuture<IReaction>> reactionFetcher) {
+		super(channel, messageID, emoji, user, reactionFetcher);
+	}
 }
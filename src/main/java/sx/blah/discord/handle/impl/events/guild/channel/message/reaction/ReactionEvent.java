@@ -17,32 +17,111 @@
 
 package sx.blah.discord.handle.impl.events.guild.channel.message.reaction;
 
+import sx.blah.discord.api.internal.Requests;
 import sx.blah.discord.handle.impl.events.guild.channel.message.MessageEvent;
+import sx.blah.discord.handle.impl.obj.ReactionEmoji;
+import sx.blah.discord.handle.obj.IChannel;
 import sx.blah.discord.handle.obj.IMessage;
 import sx.blah.discord.handle.obj.IReaction;
 import sx.blah.discord.handle.obj.IUser;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * A generic reaction-related event.
+ *
+ * <p>If the message was not cached when the reaction was received, the event is dispatched without it. The message
+ * and reaction are then fetched the first time they are requested, either blocking through {@link #getMessage()} and
+ * {@link #getReaction()} or asynchronously through {@link #fetchMessage()} and {@link #fetchReaction()}.
  */
 public abstract class ReactionEvent extends MessageEvent {
 
-	private final IReaction reaction;
+	private final ReactionEmoji emoji;
 	private final IUser user;
+	private final Supplier<CompletableFuture<IReaction>> reactionFetcher;
+	private IReaction reaction;
+	private CompletableFuture<IReaction> reactionFuture;
 
 	public ReactionEvent(IMessage message, IReaction reaction, IUser user) {
 		super(message);
+		this.emoji = reaction.getEmoji();
+		this.user = user;
+		this.reactionFetcher = null;
 		this.reaction = reaction;
+		this.reactionFuture = CompletableFuture.completedFuture(reaction);
+	}
+
+	public ReactionEvent(IChannel channel, long messageID, ReactionEmoji emoji, IUser user, Supplier<CompletableFuture<IReaction>> reactionFetcher) {
+		super(channel, messageID);
+		this.emoji = emoji;
 		this.user = user;
+		this.reactionFetcher = reactionFetcher;
+	}
+
+	/**
+	 * Gets the message involved in the event. If it was not cached when the event was received, it is fetched and the
+	 * calling thread blocks until the request completes. Like {@link IChannel#fetchMessage(long)}, this throws if the
+	 * request fails, e.g. with a {@link sx.blah.discord.util.MissingPermissionsException}.
+	 *
+	 * @return The message involved, or null if it no longer exists.
+	 */
+	@Override
+	public IMessage getMessage() {
+		IMessage message = super.getMessage();
+		if (message != null) return message;
+
+		IReaction reaction = getReaction();
+		return reaction == null ? null : reaction.getMessage();
 	}
 
 	/**
-	 * Gets the reaction object for the event.
+	 * Gets the message involved in the event without blocking.
 	 *
-	 * @return The reaction object.
+	 * @return A future which completes with the message involved.
+	 */
+	public CompletableFuture<IMessage> fetchMessage() {
+		return fetchReaction().thenApply(reaction -> reaction == null ? null : reaction.getMessage());
+	}
+
+	/**
+	 * Gets the reaction object for the event. If the message was not cached when the event was received, it is
+	 * fetched and the calling thread blocks until the request completes. Like {@link IChannel#fetchMessage(long)}, this
+	 * throws if the request fails, e.g. with a {@link sx.blah.discord.util.MissingPermissionsException}.
+	 *
+	 * @return The reaction object, or null if the message no longer exists.
 	 */
 	public IReaction getReaction() {
-		return reaction;
+		synchronized (this) {
+			if (reaction != null) return reaction;
+		}
+
+		IReaction fetched = Requests.join(fetchReaction());
+		synchronized (this) {
+			reaction = fetched;
+		}
+		return fetched;
+	}
+
+	/**
+	 * Gets the reaction object for the event without blocking.
+	 *
+	 * @return A future which completes with the reaction object.
+	 */
+	public synchronized CompletableFuture<IReaction> fetchReaction() {
+		if (reactionFuture == null) {
+			reactionFuture = reactionFetcher.get();
+		}
+		return reactionFuture;
+	}
+
+	/**
+	 * Gets the emoji of the reaction. This is always present and never requires a request.
+	 *
+	 * @return The emoji of the reaction.
+	 */
+	public ReactionEmoji getEmoji() {
+		return emoji;
 	}
 
 	/**
@@ -59,9 +138,10 @@ public abstract class ReactionEvent extends MessageEvent {
 	 *
 	 * <p>This is equivalent to <code>getReaction().getCount()</code>
 	 *
-	 * @return The number of users who have reacted with the same reaction.
+	 * @return The number of users who have reacted with the same reaction, or 0 if the message no longer exists.
 	 */
 	public int getCount() {
-		return reaction.getCount();
+		IReaction reaction = getReaction();
+		return reaction == null ? 0 : reaction.getCount();
 	}
 }
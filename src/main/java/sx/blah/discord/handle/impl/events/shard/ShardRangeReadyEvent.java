@@ -0,0 +1,75 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.handle.impl.events.shard;
+
+import sx.blah.discord.api.IShard;
+import sx.blah.discord.api.events.Event;
+
+import java.util.List;
+
+/**
+ * Dispatched when every shard the client manages has received all available guilds. It is dispatched right before the
+ * {@link sx.blah.discord.handle.impl.events.ReadyEvent}, and tells which of the bot's shards are ready when they are
+ * spread over several processes.
+ *
+ * @see sx.blah.discord.api.ClientBuilder#setShardRange(int, int, int)
+ * @see sx.blah.discord.api.ClientBuilder#setShards(int, int...)
+ */
+public class ShardRangeReadyEvent extends Event {
+
+	/**
+	 * The shards which are ready.
+	 */
+	private final List<IShard> shards;
+
+	/**
+	 * The total number of shards of the bot.
+	 */
+	private final int totalShards;
+
+	public ShardRangeReadyEvent(List<IShard> shards, int totalShards) {
+		this.shards = shards;
+		this.totalShards = totalShards;
+	}
+
+	/**
+	 * Gets the shards which are ready.
+	 *
+	 * @return The shards which are ready.
+	 */
+	public List<IShard> getShards() {
+		return shards;
+	}
+
+	/**
+	 * Gets the indexes of the shards which are ready.
+	 *
+	 * @return The indexes of the shards which are ready.
+	 */
+	public int[] getShardIndexes() {
+		return shards.stream().mapToInt(shard -> shard.getInfo()[0]).toArray();
+	}
+
+	/**
+	 * Gets the total number of shards of the bot, including those managed by other processes.
+	 *
+	 * @return The total number of shards of the bot.
+	 */
+	public int getTotalShards() {
+		return totalShards;
+	}
+}
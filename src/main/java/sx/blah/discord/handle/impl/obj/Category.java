@@ -65,7 +65,11 @@ public class Category implements ICategory {
 	}
 
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+
+		if (((Guild) guild).categoryNames != null)
+			((Guild) guild).categoryNames.rename(oldName, name, id);
 	}
 
 	public void setPosition(int position) {
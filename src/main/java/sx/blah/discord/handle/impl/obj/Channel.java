@@ -18,16 +18,20 @@
 package sx.blah.discord.handle.impl.obj;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import org.apache.http.HttpEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.message.BasicNameValuePair;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.client.util.ByteBufferContentProvider;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.client.util.MultiPartContentProvider;
+import org.eclipse.jetty.client.util.PathContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.IDiscordClient;
 import sx.blah.discord.api.IShard;
 import sx.blah.discord.api.internal.DiscordClientImpl;
 import sx.blah.discord.api.internal.DiscordEndpoints;
 import sx.blah.discord.api.internal.DiscordUtils;
+import sx.blah.discord.api.internal.Requests;
 import sx.blah.discord.api.internal.json.objects.*;
 import sx.blah.discord.api.internal.json.requests.*;
 import sx.blah.discord.handle.impl.events.guild.channel.webhook.WebhookCreateEvent;
@@ -37,16 +41,22 @@ import sx.blah.discord.handle.obj.*;
 import sx.blah.discord.util.*;
 import sx.blah.discord.util.cache.Cache;
 import sx.blah.discord.util.cache.LongMap;
+import sx.blah.discord.util.cache.NameIndex;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.Period;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The default implementation of {@link IChannel}.
@@ -113,6 +123,11 @@ public class Channel implements IChannel {
 	 */
 	public final Cache<sx.blah.discord.handle.obj.PermissionOverride> roleOverrides;
 
+	/**
+	 * The computed permissions of users in the channel.
+	 */
+	private final PermissionsCache permissions = new PermissionsCache();
+
 	/**
 	 * The webhooks for the channel.
 	 */
@@ -159,7 +174,21 @@ public class Channel implements IChannel {
 	 * @param name The name of the channel.
 	 */
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+
+		NameIndex names = getNameIndex();
+		if (names != null)
+			names.rename(oldName, name, id);
+	}
+
+	/**
+	 * Gets the name index of the guild the channel is stored in.
+	 *
+	 * @return The name index (or null if there isn't one).
+	 */
+	protected NameIndex getNameIndex() {
+		return guild == null ? null : ((Guild) guild).channelNames;
 	}
 
 	@Override
@@ -322,6 +351,21 @@ public class Channel implements IChannel {
 		return getMessageHistoryTo(getCreationDate());
 	}
 
+	@Override
+	public Stream<IMessage> streamHistory() {
+		return streamHistory(DiscordUtils.getSnowflakeFromTimestamp(Instant.now()), getLongID());
+	}
+
+	@Override
+	public Stream<IMessage> streamHistory(long beginID, long endID) {
+		PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.READ_MESSAGES);
+
+		MessageHistoryIterator iterator = new MessageHistoryIterator(this, beginID, endID);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+				.onClose(iterator::close);
+	}
+
 	@Override
 	public List<IMessage> bulkDelete() {
 		return bulkDelete(getMessageHistoryTo(Instant.now().minus(Period.ofWeeks(2))));
@@ -391,6 +435,34 @@ public class Channel implements IChannel {
 		});
 	}
 
+	/**
+	 * Fetches a message from the cache, or asynchronously from Discord if it is not cached.
+	 *
+	 * <p>No thread is blocked while the message is fetched, and concurrent calls for the same uncached message share a
+	 * single request.
+	 *
+	 * @param messageID The ID of the message.
+	 * @return A future which completes with the message (or null if it does not exist), or exceptionally if it could
+	 * not be fetched.
+	 */
+	public CompletableFuture<IMessage> fetchMessageAsync(long messageID) {
+		IMessage cached = messages.get(messageID);
+		if (cached != null) return CompletableFuture.completedFuture(cached);
+
+		try {
+			PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.READ_MESSAGES, Permissions.READ_MESSAGE_HISTORY);
+		} catch (MissingPermissionsException e) {
+			CompletableFuture<IMessage> future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		return client.REQUESTS.GET.makeRequestAsync(
+				DiscordEndpoints.CHANNELS + this.getStringID() + "/messages/" + Long.toUnsignedString(messageID),
+				MessageObject.class)
+				.thenApply(json -> json == null ? null : DiscordUtils.getMessageFromJSON(this, json));
+	}
+
 	@Override
 	public IGuild getGuild() {
 		return guild;
@@ -456,6 +528,11 @@ public class Channel implements IChannel {
 
 	@Override
 	public IMessage sendMessage(String content, EmbedObject embed, boolean tts) {
+		return Requests.join(sendMessageAsync(content, embed, tts));
+	}
+
+	@Override
+	public CompletableFuture<IMessage> sendMessageAsync(String content, EmbedObject embed, boolean tts) {
 		getShard().checkReady("send message");
 		PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.SEND_MESSAGES);
 
@@ -463,20 +540,20 @@ public class Channel implements IChannel {
 			PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.EMBED_LINKS);
 		}
 
-		MessageObject response = null;
+		String request;
 		try {
-			response = client.REQUESTS.POST.makeRequest(
-					DiscordEndpoints.CHANNELS+id+"/messages",
-					DiscordUtils.MAPPER_NO_NULLS.writeValueAsString(new MessageRequest(content, embed, tts)),
-					MessageObject.class);
+			request = DiscordUtils.MAPPER_NO_NULLS.writeValueAsString(new MessageRequest(content, embed, tts));
 		} catch (JsonProcessingException e) {
-			Discord4J.LOGGER.error(LogMarkers.HANDLE, "Discord4J Internal Exception", e);
+			throw new DiscordException("Unable to serialize request!", e);
 		}
 
-		if (response == null || response.id == null) //Message didn't send
-			throw new DiscordException("Message was unable to be sent (Discord didn't return a response).");
+		return client.REQUESTS.POST.makeRequestAsync(DiscordEndpoints.CHANNELS+id+"/messages", request, MessageObject.class)
+				.thenApply(response -> {
+					if (response == null || response.id == null) //Message didn't send
+						throw new DiscordException("Message was unable to be sent (Discord didn't return a response).");
 
-		return DiscordUtils.getMessageFromJSON(this, response);
+					return DiscordUtils.getMessageFromJSON(this, response);
+				});
 	}
 
 	@Override
@@ -491,7 +568,7 @@ public class Channel implements IChannel {
 
 	@Override
 	public IMessage sendFile(String content, File file) throws FileNotFoundException {
-		return sendFile(content, false, new FileInputStream(file), file.getName(), null);
+		return sendFiles(content, false, (EmbedObject) null, AttachmentPartEntry.from(file));
 	}
 
 	@Override
@@ -501,7 +578,7 @@ public class Channel implements IChannel {
 
 	@Override
 	public IMessage sendFile(EmbedObject embed, File file) throws FileNotFoundException {
-		return sendFile(null, false, new FileInputStream(file), file.getName(), embed);
+		return sendFiles(null, false, embed, AttachmentPartEntry.from(file));
 	}
 
 	@Override
@@ -549,21 +626,30 @@ public class Channel implements IChannel {
 		PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.SEND_MESSAGES, Permissions.ATTACH_FILES);
 
 		try {
-			MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-			if (entries.length == 1) {
-				builder.addBinaryBody("file", entries[0].getFileData(), ContentType.APPLICATION_OCTET_STREAM, entries[0].getFileName());
-			} else {
-				for (int i = 0; i < entries.length; i++) {
-					builder.addBinaryBody("file" + i, entries[i].getFileData(), ContentType.APPLICATION_OCTET_STREAM, entries[i].getFileName());
-				}
+			String payload = DiscordUtils.MAPPER_NO_NULLS.writeValueAsString(new FilePayloadObject(content, tts, embed));
+
+			// Streams can only be read once, so they are read up front to allow the upload to be retried
+			byte[][] streamed = new byte[entries.length][];
+			for (int i = 0; i < entries.length; i++) {
+				if (entries[i].getFile() == null && entries[i].getBuffer() == null)
+					streamed[i] = IOUtils.toByteArray(entries[i].getFileData());
 			}
 
-			builder.addTextBody("payload_json", DiscordUtils.MAPPER_NO_NULLS.writeValueAsString(new FilePayloadObject(content, tts, embed)),
-						ContentType.MULTIPART_FORM_DATA.withCharset("UTF-8"));
+			// Files and buffers are streamed to the connection without being copied into the request first
+			Supplier<MultiPartContentProvider> body = () -> {
+				MultiPartContentProvider multipart = new MultiPartContentProvider();
+				for (int i = 0; i < entries.length; i++) {
+					multipart.addFilePart(entries.length == 1 ? "file" : "file" + i, entries[i].getFileName(),
+							getAttachmentContent(entries[i], streamed[i]), null);
+				}
+				multipart.addFieldPart("payload_json",
+						new StringContentProvider("application/json", payload, StandardCharsets.UTF_8), null);
+				multipart.close();
+				return multipart;
+			};
 
-			HttpEntity fileEntity = builder.build();
-			MessageObject messageObject = DiscordUtils.MAPPER.readValue(client.REQUESTS.POST.makeRequest(DiscordEndpoints.CHANNELS + id + "/messages",
-					fileEntity, new BasicNameValuePair("Content-Type", "multipart/form-data")), MessageObject.class);
+			MessageObject messageObject = Requests.join(client.REQUESTS.POST.makeRequestAsync(
+					DiscordEndpoints.CHANNELS + id + "/messages", body, MessageObject.class));
 
 			return DiscordUtils.getMessageFromJSON(this, messageObject);
 		} catch (IOException e) {
@@ -571,6 +657,20 @@ public class Channel implements IChannel {
 		}
 	}
 
+	private static ContentProvider getAttachmentContent(AttachmentPartEntry entry, byte[] streamed) {
+		String contentType = "application/octet-stream";
+		if (entry.getFile() != null) {
+			try {
+				return new PathContentProvider(contentType, entry.getFile().toPath());
+			} catch (IOException e) {
+				throw new DiscordException("Unable to read attachment file " + entry.getFile(), e);
+			}
+		} else if (entry.getBuffer() != null) {
+			return new ByteBufferContentProvider(contentType, entry.getBuffer().duplicate());
+		}
+		return new BytesContentProvider(contentType, streamed);
+	}
+
 	@Override
 	public IMessage sendFile(MessageBuilder builder, InputStream file, String fileName) {
 		return sendFile(builder.getContent() != null && builder.getContent().isEmpty() ? null : builder.getContent(),
@@ -711,7 +811,29 @@ public class Channel implements IChannel {
 
 	@Override
 	public EnumSet<Permissions> getModifiedPermissions(IUser user) {
-		return PermissionUtils.getModifiedPermissions(user, guild, userOverrides, roleOverrides);
+		return Permissions.getAllowedPermissionsForNumber(getModifiedPermissionsNumber(user));
+	}
+
+	@Override
+	public int getModifiedPermissionsNumber(IUser user) {
+		long userID = user.getLongID();
+		int guildVersion = ((Guild) guild).getPermissionsVersion(); // Read before anything permissions depend on
+		long[] roleIDs = PermissionUtils.getRoleIDs(guild, user);
+		sx.blah.discord.handle.obj.PermissionOverride userOverride = userOverrides.get(userID);
+		if (userOverride != null || userID == guild.getOwnerLongID())
+			return PermissionUtils.getModifiedPermissionsNumber(
+					PermissionUtils.getPermissionsNumber(guild, userID, roleIDs), guild, roleIDs, userOverride, roleOverrides);
+
+		return permissions.get(roleIDs, guildVersion, () -> PermissionUtils.getModifiedPermissionsNumber(
+				PermissionUtils.getPermissionsNumber(guild, userID, roleIDs), guild, roleIDs, null, roleOverrides));
+	}
+
+	/**
+	 * Invalidates the CACHED permissions of every user in the channel. This must be called whenever the channel's
+	 * permission overrides change.
+	 */
+	public void invalidatePermissions() {
+		permissions.invalidate();
 	}
 
 	@Override
@@ -726,6 +848,7 @@ public class Channel implements IChannel {
 		((DiscordClientImpl) client).REQUESTS.DELETE.makeRequest(DiscordEndpoints.CHANNELS+getStringID()+"/permissions/"+user.getStringID());
 
 		userOverrides.remove(user.getLongID());
+		invalidatePermissions();
 	}
 
 	@Override
@@ -735,6 +858,7 @@ public class Channel implements IChannel {
 		((DiscordClientImpl) client).REQUESTS.DELETE.makeRequest(DiscordEndpoints.CHANNELS+getStringID()+"/permissions/"+role.getStringID());
 
 		roleOverrides.remove(role.getLongID());
+		invalidatePermissions();
 	}
 
 	@Override
@@ -779,10 +903,41 @@ public class Channel implements IChannel {
 
 	@Override
 	public List<IUser> getUsersHere() {
-		return guild.getUsers().stream().filter((user) -> {
-			EnumSet<Permissions> permissions = getModifiedPermissions(user);
-			return Permissions.READ_MESSAGES.hasPermission(Permissions.generatePermissionsNumber(permissions), true);
-		}).collect(Collectors.toList());
+		// Members with the same roles and no override of their own always have the same permissions here, so each
+		// distinct combination of roles is only evaluated once. The members are copied first, so the caches read
+		// below are never locked while the member cache is.
+		Map<PermissionsCache.RoleSignature, Boolean> readableByRoles = new HashMap<>();
+		List<IUser> users = new ArrayList<>();
+		for (IUser user : guild.getUsers()) {
+			long userID = user.getLongID();
+			long[] roleIDs = PermissionUtils.getRoleIDs(guild, user);
+			sx.blah.discord.handle.obj.PermissionOverride userOverride = userOverrides.get(userID);
+			boolean readable;
+			if (userOverride != null || userID == guild.getOwnerLongID()) {
+				readable = canRead(userID, roleIDs, userOverride);
+			} else {
+				readable = readableByRoles.computeIfAbsent(new PermissionsCache.RoleSignature(roleIDs),
+						signature -> canRead(userID, roleIDs, null));
+			}
+
+			if (readable)
+				users.add(user);
+		}
+		return users;
+	}
+
+	/**
+	 * Gets whether a member with the given roles can read the channel.
+	 *
+	 * @param userID The unique snowflake ID of the member.
+	 * @param roleIDs The unique snowflake IDs of the member's roles.
+	 * @param userOverride The member's override in the channel (or null if there isn't one).
+	 * @return Whether the member can read the channel.
+	 */
+	private boolean canRead(long userID, long[] roleIDs, sx.blah.discord.handle.obj.PermissionOverride userOverride) {
+		int permissions = PermissionUtils.getModifiedPermissionsNumber(
+				PermissionUtils.getPermissionsNumber(guild, userID, roleIDs), guild, roleIDs, userOverride, roleOverrides);
+		return Permissions.READ_MESSAGES.hasPermission(permissions);
 	}
 
 	@Override
@@ -158,7 +158,11 @@ public class EmojiImpl implements IEmoji {
 	 * @param name The name of the emoji.
 	 */
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+
+		if (((Guild) guild).emojiNames != null)
+			((Guild) guild).emojiNames.rename(oldName, name, id);
 	}
 
 	/**
@@ -18,12 +18,14 @@
 package sx.blah.discord.handle.impl.obj;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.IDiscordClient;
 import sx.blah.discord.api.IShard;
 import sx.blah.discord.api.internal.DiscordClientImpl;
 import sx.blah.discord.api.internal.DiscordEndpoints;
 import sx.blah.discord.api.internal.DiscordUtils;
+import sx.blah.discord.api.internal.Requests;
 import sx.blah.discord.api.internal.json.objects.*;
 import sx.blah.discord.api.internal.json.objects.audit.AuditLogEntryObject;
 import sx.blah.discord.api.internal.json.objects.audit.AuditLogObject;
@@ -39,13 +41,17 @@ import sx.blah.discord.handle.impl.events.guild.channel.webhook.WebhookUpdateEve
 import sx.blah.discord.handle.obj.*;
 import sx.blah.discord.util.*;
 import sx.blah.discord.util.cache.Cache;
+import sx.blah.discord.util.cache.NameIndex;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
 
 /**
@@ -68,6 +74,49 @@ public class Guild implements IGuild {
 	 */
 	public final Cache<IUser> users;
 
+	/**
+	 * The members of each role other than @everyone, keyed by role ID. Member roles must be changed through
+	 * {@link #setMemberRoles(User, long[])} or {@link #retainMemberRoles(LongPredicate)} to keep this up to date.
+	 */
+	public final Cache<RoleMembersHolder> roleMembers;
+
+	/**
+	 * The names of the guild's text channels (or null if name indexes are disabled).
+	 */
+	public final NameIndex channelNames;
+
+	/**
+	 * The names of the guild's voice channels (or null if name indexes are disabled).
+	 */
+	public final NameIndex voiceChannelNames;
+
+	/**
+	 * The names of the guild's categories (or null if name indexes are disabled).
+	 */
+	public final NameIndex categoryNames;
+
+	/**
+	 * The names of the guild's roles (or null if name indexes are disabled).
+	 */
+	public final NameIndex roleNames;
+
+	/**
+	 * The names of the guild's emojis (or null if name indexes are disabled).
+	 */
+	public final NameIndex emojiNames;
+
+	/**
+	 * The nicknames of the guild's members (or null if name indexes are disabled). Member nicknames must be changed
+	 * through {@link #setMemberNick(User, String)} to keep this up to date.
+	 */
+	public final NameIndex nicknames;
+
+	/**
+	 * Whether the guild's indexes ({@link #roleMembers} and the name indexes) are maintained. This is false for copies
+	 * of the guild.
+	 */
+	private volatile boolean indexesMaintained = true;
+
 	/**
 	 * The timestamps of when users joined the guild.
 	 */
@@ -100,6 +149,12 @@ public class Guild implements IGuild {
 	 */
 	protected volatile long ownerID;
 
+	/**
+	 * The version of the guild-wide state permissions are computed from. Incremented whenever a role's permissions
+	 * change, a role is deleted or the owner changes.
+	 */
+	private final AtomicInteger permissionsVersion = new AtomicInteger();
+
 	/**
 	 * The guild's roles.
 	 */
@@ -179,6 +234,14 @@ public class Guild implements IGuild {
 		this.id = id;
 		this.icon = icon;
 		this.joinTimes = joinTimes;
+		this.roleMembers = new Cache<>((DiscordClientImpl) client, RoleMembersHolder.class);
+		boolean nameIndexes = ((DiscordClientImpl) client).areNameIndexesEnabled();
+		this.channelNames = nameIndexes ? new NameIndex() : null;
+		this.voiceChannelNames = nameIndexes ? new NameIndex() : null;
+		this.categoryNames = nameIndexes ? new NameIndex() : null;
+		this.roleNames = nameIndexes ? new NameIndex() : null;
+		this.emojiNames = nameIndexes ? new NameIndex() : null;
+		this.nicknames = nameIndexes ? new NameIndex() : null;
 		this.iconURL = String.format(DiscordEndpoints.ICONS, this.id, this.icon);
 		this.ownerID = ownerID;
 		this.roles = roles;
@@ -190,6 +253,14 @@ public class Guild implements IGuild {
 		this.emojis = new Cache<>((DiscordClientImpl) client, IEmoji.class);
 		this.categories = categories;
 		this.systemChannelId = systemChannelId;
+
+		if (nameIndexes) {
+			channels.indexNames(channelNames, IChannel::getName);
+			voiceChannels.indexNames(voiceChannelNames, IVoiceChannel::getName);
+			categories.indexNames(categoryNames, ICategory::getName);
+			roles.indexNames(roleNames, IRole::getName);
+			emojis.indexNames(emojiNames, IEmoji::getName);
+		}
 	}
 
 	@Override
@@ -208,7 +279,27 @@ public class Guild implements IGuild {
 	 * @param id The owner ID.
 	 */
 	public void setOwnerID(long id) {
-		ownerID = id;
+		if (ownerID != id) {
+			ownerID = id;
+			invalidatePermissions();
+		}
+	}
+
+	/**
+	 * Invalidates the CACHED permissions of every member in every channel of the guild. This must be called whenever
+	 * the guild-wide state permissions are computed from changes.
+	 */
+	public void invalidatePermissions() {
+		permissionsVersion.incrementAndGet();
+	}
+
+	/**
+	 * Gets the version of the guild-wide state permissions are computed from.
+	 *
+	 * @return The version of the guild's permissions.
+	 */
+	public int getPermissionsVersion() {
+		return permissionsVersion.get();
 	}
 
 	@Override
@@ -233,7 +324,7 @@ public class Guild implements IGuild {
 
 	@Override
 	public List<IChannel> getChannels() {
-		LinkedList<IChannel> list = new LinkedList<>(channels.values());
+		List<IChannel> list = new ArrayList<>(channels.values());
 		list.sort((c1, c2) -> {
 			int originalPos1 = ((Channel) c1).position;
 			int originalPos2 = ((Channel) c2).position;
@@ -246,14 +337,36 @@ public class Guild implements IGuild {
 		return list;
 	}
 
+	@Override
+	public List<IChannel> getChannelsForUser(IUser user) {
+		// The member's guild permissions are the same in every channel, only the overrides differ
+		long[] roleIDs = PermissionUtils.getRoleIDs(this, user);
+		int permissions = PermissionUtils.getPermissionsNumber(this, user.getLongID(), roleIDs);
+
+		List<IChannel> readable = new ArrayList<>();
+		for (IChannel channel : getChannels()) {
+			Channel impl = (Channel) channel;
+			int modified = PermissionUtils.getModifiedPermissionsNumber(permissions, this, roleIDs,
+					impl.userOverrides.get(user.getLongID()), impl.roleOverrides);
+			if (Permissions.READ_MESSAGES.hasPermission(modified))
+				readable.add(channel);
+		}
+		return readable;
+	}
+
 	@Override
 	public IChannel getChannelByID(long id) {
 		return channels.get(id);
 	}
 
+	@Override
+	public void forEachChannel(LongObjConsumer<? super IChannel> action) {
+		channels.forEach(action);
+	}
+
 	@Override
 	public List<IUser> getUsers() {
-		return new LinkedList<>(users.values());
+		return new ArrayList<>(users.values());
 	}
 
 	@Override
@@ -261,15 +374,159 @@ public class Guild implements IGuild {
 		return users.get(id);
 	}
 
+	@Override
+	public void forEachUser(LongObjConsumer<? super IUser> action) {
+		users.forEach(action);
+	}
+
+	/**
+	 * Adds a CACHED member to the guild. This also tracks the guild membership of the user in the client's user store.
+	 *
+	 * @param user The member to add.
+	 */
+	public void addMember(IUser user) {
+		users.put(user);
+		((User) user).addGuildMembership(id);
+	}
+
+	/**
+	 * Removes a CACHED member from the guild along with their guild-specific state. The user is removed from the
+	 * client's user store if they are no longer a member of any guild.
+	 *
+	 * @param user The member to remove.
+	 */
+	public void removeMember(IUser user) {
+		users.remove(user);
+		joinTimes.remove(user);
+		synchronized (user) {
+			updateRoleMembers(user, ((User) user).getRoleIDsForGuild(id), RolesHolder.NONE);
+			((User) user).roles.remove(id);
+		}
+		setMemberNick((User) user, null);
+		((User) user).removeGuildMembership(id);
+	}
+
+	/**
+	 * Sets the CACHED roles of a member of the guild and updates the role member index accordingly.
+	 *
+	 * @param user The member.
+	 * @param roleIDs The unique snowflake IDs of the member's roles. This array is not retained.
+	 */
+	public void setMemberRoles(User user, long[] roleIDs) {
+		synchronized (user) {
+			long[] oldRoleIDs = user.getRoleIDsForGuild(id);
+			user.setRoles(id, roleIDs);
+			updateRoleMembers(user, oldRoleIDs, user.getRoleIDsForGuild(id));
+		}
+	}
+
+	/**
+	 * Sets the CACHED nickname of a member of the guild and updates the nickname index accordingly.
+	 *
+	 * @param user The member.
+	 * @param nick The nickname (or null to remove it).
+	 */
+	public void setMemberNick(User user, String nick) {
+		synchronized (user) {
+			String oldNick = user.getNicknameForGuild(this);
+			user.addNick(id, nick);
+			if (nicknames != null && !Objects.equals(oldNick, nick)) {
+				nicknames.remove(oldNick, user.getLongID());
+				nicknames.add(nick, user.getLongID());
+			}
+		}
+	}
+
+	/**
+	 * Removes every CACHED role of every member of the guild which does not match the given filter and updates the
+	 * role member index accordingly.
+	 *
+	 * @param roleFilter The filter roles which should be kept must match.
+	 */
+	public void retainMemberRoles(LongPredicate roleFilter) {
+		users.forEach((userID, user) -> {
+			synchronized (user) {
+				long[] oldRoleIDs = ((User) user).getRoleIDsForGuild(id);
+				((User) user).retainRoles(id, roleFilter);
+				updateRoleMembers(user, oldRoleIDs, ((User) user).getRoleIDsForGuild(id));
+			}
+		});
+		List<Long> staleRoleIDs = new ArrayList<>();
+		roleMembers.forEach((roleID, holder) -> {
+			if (!roleFilter.test(roleID))
+				staleRoleIDs.add(roleID);
+		});
+		for (long roleID : staleRoleIDs) {
+			roleMembers.remove(roleID);
+		}
+	}
+
+	/**
+	 * Updates the role member index for a member whose roles changed.
+	 *
+	 * @param user The member.
+	 * @param oldRoleIDs The sorted IDs of the member's previous roles.
+	 * @param newRoleIDs The sorted IDs of the member's current roles.
+	 */
+	private void updateRoleMembers(IUser user, long[] oldRoleIDs, long[] newRoleIDs) {
+		int i = 0, j = 0;
+		while (i < oldRoleIDs.length || j < newRoleIDs.length) {
+			if (j == newRoleIDs.length || (i < oldRoleIDs.length && oldRoleIDs[i] < newRoleIDs[j])) {
+				RoleMembersHolder holder = roleMembers.get(oldRoleIDs[i++]);
+				if (holder != null)
+					holder.getObject().remove(user);
+			} else if (i == oldRoleIDs.length || newRoleIDs[j] < oldRoleIDs[i]) {
+				long roleID = newRoleIDs[j++];
+				if (roleID == id)
+					continue; // Every member has @everyone, so it isn't indexed
+
+				RoleMembersHolder holder;
+				synchronized (roleMembers) {
+					roleMembers.putIfAbsent(roleID, () -> new RoleMembersHolder(roleID,
+							new Cache<>(((DiscordClientImpl) client).getIndexCacheProvider().provide(IUser.class))));
+					holder = roleMembers.get(roleID);
+				}
+				holder.getObject().put(user);
+			} else {
+				i++;
+				j++;
+			}
+		}
+	}
+
+	/**
+	 * Releases the guild memberships of all CACHED members of the guild from the client's user store. This is used
+	 * when the guild itself is removed from the cache. The guild's own member cache is left untouched so that the
+	 * guild can still be inspected afterwards.
+	 */
+	public void releaseMembers() {
+		// The members are copied first, so the user cache is never written to while the member cache is locked
+		List<IUser> members = new ArrayList<>(users.size());
+		users.forEach((userID, user) -> members.add(user));
+		for (IUser user : members)
+			((User) user).removeGuildMembership(id);
+	}
+
 	@Override
 	public List<IChannel> getChannelsByName(String name) {
+		return getChannelsByName(name, false);
+	}
+
+	@Override
+	public List<IChannel> getChannelsByName(String name, boolean ignoreCase) {
+		if (channelNames != null && indexesMaintained)
+			return channelNames.get(name, ignoreCase, channels::get, IChannel::getName);
+
 		return channels.stream()
-				.filter(channel -> channel.getName().equals(name))
+				.filter(channel -> ignoreCase ? channel.getName().equalsIgnoreCase(name) : channel.getName().equals(name))
 				.collect(Collectors.toList());
 	}
 
 	@Override
 	public List<IVoiceChannel> getVoiceChannelsByName(String name) {
+		if (voiceChannelNames != null && indexesMaintained)
+			return voiceChannelNames.get(name, false, voiceChannels::get, IVoiceChannel::getName);
+
 		return voiceChannels.stream()
 				.filter(channel -> channel.getName().equals(name))
 				.collect(Collectors.toList());
@@ -282,6 +539,16 @@ public class Guild implements IGuild {
 
 	@Override
 	public List<IUser> getUsersByName(String name, boolean includeNicknames) {
+		NameIndex userNames = ((DiscordClientImpl) client).userNames;
+		if (userNames != null && nicknames != null && indexesMaintained) {
+			List<IUser> found = userNames.get(name, false, users::get, IUser::getName);
+			if (includeNicknames) {
+				found.removeIf(user -> user.getNicknameForGuild(this) != null);
+				found.addAll(nicknames.get(name, false, users::get, user -> user.getNicknameForGuild(this)));
+			}
+			return found;
+		}
+
 		return users.stream()
 				.filter(u -> includeNicknames ? u.getDisplayName(this).equals(name) : u.getName().equals(name))
 				.collect(Collectors.toList());
@@ -289,9 +556,16 @@ public class Guild implements IGuild {
 
 	@Override
 	public List<IUser> getUsersByRole(IRole role) {
-		return users.stream()
-				.filter(user -> user.getRolesForGuild(this).contains(role))
-				.collect(Collectors.toList());
+		if (role.getLongID() == id)
+			return getUsers(); // @everyone
+
+		if (!indexesMaintained)
+			return users.stream()
+					.filter(user -> user.hasRole(role))
+					.collect(Collectors.toList());
+
+		RoleMembersHolder holder = roleMembers.get(role.getLongID());
+		return holder == null ? new ArrayList<>() : new ArrayList<>(holder.getObject().values());
 	}
 
 	@Override
@@ -315,7 +589,7 @@ public class Guild implements IGuild {
 
 	@Override
 	public List<IRole> getRoles() {
-		LinkedList<IRole> list = new LinkedList<>(roles.values());
+		List<IRole> list = new ArrayList<>(roles.values());
 		list.sort((r1, r2) -> {
 			int originalPos1 = ((Role) r1).position;
 			int originalPos2 = ((Role) r2).position;
@@ -338,16 +612,29 @@ public class Guild implements IGuild {
 		return roles.get(id);
 	}
 
+	@Override
+	public void forEachRole(LongObjConsumer<? super IRole> action) {
+		roles.forEach(action);
+	}
+
 	@Override
 	public List<IRole> getRolesByName(String name) {
+		return getRolesByName(name, false);
+	}
+
+	@Override
+	public List<IRole> getRolesByName(String name, boolean ignoreCase) {
+		if (roleNames != null && indexesMaintained)
+			return roleNames.get(name, ignoreCase, roles::get, IRole::getName);
+
 		return roles.stream()
-				.filter(role -> role.getName().equals(name))
+				.filter(role -> ignoreCase ? role.getName().equalsIgnoreCase(name) : role.getName().equals(name))
 				.collect(Collectors.toList());
 	}
 
 	@Override
 	public List<IVoiceChannel> getVoiceChannels() {
-		LinkedList<IVoiceChannel> list = new LinkedList<>(voiceChannels.values());
+		List<IVoiceChannel> list = new ArrayList<>(voiceChannels.values());
 		list.sort((c1, c2) -> {
 			int originalPos1 = ((Channel) c1).position;
 			int originalPos2 = ((Channel) c2).position;
@@ -365,6 +652,11 @@ public class Guild implements IGuild {
 		return voiceChannels.get(id);
 	}
 
+	@Override
+	public void forEachVoiceChannel(LongObjConsumer<? super IVoiceChannel> action) {
+		voiceChannels.forEach(action);
+	}
+
 	@Override
 	public IVoiceChannel getAFKChannel() {
 		if (afkChannel == 0)
@@ -466,6 +758,11 @@ public class Guild implements IGuild {
 
 	@Override
 	public void banUser(long userID, String reason, int deleteMessagesForDays) {
+		Requests.join(banUserAsync(userID, reason, deleteMessagesForDays));
+	}
+
+	@Override
+	public CompletableFuture<Void> banUserAsync(long userID, String reason, int deleteMessagesForDays) {
 		IUser user = getUserByID(userID);
 		if (getUserByID(userID) == null) {
 			PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.BAN);
@@ -476,17 +773,26 @@ public class Guild implements IGuild {
 			throw new IllegalArgumentException("Reason length cannot be more than " + Ban.MAX_REASON_LENGTH);
 		}
 		try {
-			((DiscordClientImpl) client).REQUESTS.PUT.makeRequest(DiscordEndpoints.GUILDS + getStringID() + "/bans/" + Long.toUnsignedString(userID) + "?delete-message-days=" + deleteMessagesForDays + (reason == null ? "" : ("&reason=" +
-					URLEncoder.encode(reason, "UTF-8"))));
+			String url = DiscordEndpoints.GUILDS + getStringID() + "/bans/" + Long.toUnsignedString(userID)
+					+ "?delete-message-days=" + deleteMessagesForDays
+					+ (reason == null ? "" : ("&reason=" + URLEncoder.encode(reason, "UTF-8")));
+			return ((DiscordClientImpl) client).REQUESTS.PUT.makeRequestAsync(url).thenApply(response -> null);
 		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
+			throw new DiscordException("Unable to encode the ban reason!", e);
 		}
 	}
 
 	@Override
 	public void pardonUser(long userID) {
+		Requests.join(pardonUserAsync(userID));
+	}
+
+	@Override
+	public CompletableFuture<Void> pardonUserAsync(long userID) {
 		PermissionUtils.requirePermissions(this, client.getOurUser(), Permissions.BAN);
-		((DiscordClientImpl) client).REQUESTS.DELETE.makeRequest(DiscordEndpoints.GUILDS + getStringID() + "/bans/" + Long.toUnsignedString(userID));
+		return ((DiscordClientImpl) client).REQUESTS.DELETE.makeRequestAsync(
+				DiscordEndpoints.GUILDS + getStringID() + "/bans/" + Long.toUnsignedString(userID))
+				.thenApply(response -> null);
 	}
 
 	@Override
@@ -496,14 +802,21 @@ public class Guild implements IGuild {
 
 	@Override
 	public void kickUser(IUser user, String reason) {
+		Requests.join(kickUserAsync(user, reason));
+	}
+
+	@Override
+	public CompletableFuture<Void> kickUserAsync(IUser user, String reason) {
 		PermissionUtils.requireHierarchicalPermissions(this, client.getOurUser(), getRolesForUser(user), Permissions.KICK);
 		if (reason != null && reason.length() > Ban.MAX_REASON_LENGTH) {
 			throw new IllegalArgumentException("Reason length cannot be more than " + Ban.MAX_REASON_LENGTH);
 		}
 		try {
-			((DiscordClientImpl) client).REQUESTS.DELETE.makeRequest(DiscordEndpoints.GUILDS+getStringID()+"/members/"+user.getStringID() + (reason == null ? "" : ("?reason=" + URLEncoder.encode(reason, "UTF-8"))));
+			String url = DiscordEndpoints.GUILDS + getStringID() + "/members/" + user.getStringID()
+					+ (reason == null ? "" : ("?reason=" + URLEncoder.encode(reason, "UTF-8")));
+			return ((DiscordClientImpl) client).REQUESTS.DELETE.makeRequestAsync(url).thenApply(response -> null);
 		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
+			throw new DiscordException("Unable to encode the kick reason!", e);
 		}
 	}
 
@@ -700,9 +1013,8 @@ public class Guild implements IGuild {
 
 	@Override
 	public IChannel getDefaultChannel() {
-		return getChannels().stream()
-				.filter(c -> PermissionUtils.hasPermissions(c, client.getOurUser(), Permissions.READ_MESSAGES))
-				.findFirst().orElse(null);
+		List<IChannel> readable = getChannelsForUser(client.getOurUser());
+		return readable.isEmpty() ? null : readable.get(0);
 	}
 
 	@Override
@@ -819,14 +1131,16 @@ public class Guild implements IGuild {
 
 	@Override
 	public IGuild copy() {
-		return new Guild(shard, name, id, icon, ownerID, afkChannel, afkTimeout, regionID, verification.ordinal(),
+		Guild copy = new Guild(shard, name, id, icon, ownerID, afkChannel, afkTimeout, regionID, verification.ordinal(),
 				systemChannelId, roles.copy(), channels.copy(), voiceChannels.copy(), users.copy(),
 				joinTimes.copy(), categories.copy());
+		copy.indexesMaintained = false;
+		return copy;
 	}
 
 	@Override
 	public List<IEmoji> getEmojis() {
-		return new LinkedList<>(emojis.values());
+		return new ArrayList<>(emojis.values());
 	}
 
 	@Override
@@ -836,6 +1150,11 @@ public class Guild implements IGuild {
 
 	@Override
 	public IEmoji getEmojiByName(String name) {
+		if (emojiNames != null && indexesMaintained) {
+			List<IEmoji> found = emojiNames.get(name, false, emojis::get, IEmoji::getName);
+			return found.isEmpty() ? null : found.get(0);
+		}
+
 		return emojis.stream()
 				.filter(emoji -> emoji.getName().equals(name))
 				.findFirst().orElse(null);
@@ -993,7 +1312,7 @@ public class Guild implements IGuild {
 
 	@Override
 	public List<ICategory> getCategories() {
-		LinkedList<ICategory> list = new LinkedList<>(categories.values());
+		List<ICategory> list = new ArrayList<>(categories.values());
 		list.sort((c1, c2) -> {
 			int originalPos1 = ((Category) c1).position;
 			int originalPos2 = ((Category) c2).position;
@@ -1013,6 +1332,9 @@ public class Guild implements IGuild {
 
 	@Override
 	public List<ICategory> getCategoriesByName(String name) {
+		if (categoryNames != null && indexesMaintained)
+			return categoryNames.get(name, false, categories::get, ICategory::getName);
+
 		return getCategories().stream()
 				.filter(category -> category.getName().equals(name))
 				.collect(Collectors.toList());
@@ -1068,6 +1390,16 @@ public class Guild implements IGuild {
 		return DiscordUtils.equals(this, other);
 	}
 
+	/**
+	 * Associates a role ID to the members which have the role.
+	 */
+	public static class RoleMembersHolder extends IDLinkedObjectWrapper<Cache<IUser>> {
+
+		public RoleMembersHolder(long id, Cache<IUser> obj) {
+			super(id, obj);
+		}
+	}
+
 	/**
 	 * Associates a user ID to their join time.
 	 */
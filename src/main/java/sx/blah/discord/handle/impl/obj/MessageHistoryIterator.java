@@ -0,0 +1,170 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.handle.impl.obj;
+
+import sx.blah.discord.api.internal.DiscordEndpoints;
+import sx.blah.discord.api.internal.DiscordUtils;
+import sx.blah.discord.api.internal.Requests;
+import sx.blah.discord.api.internal.json.objects.MessageObject;
+import sx.blah.discord.handle.obj.IMessage;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lazily iterates over the message history of a channel from newest to oldest.
+ *
+ * <p>Pages of {@link Channel#MESSAGE_CHUNK_COUNT} messages are requested one at a time. Once the caller has iterated
+ * over half of a page, the next one is fetched in the background, so at most two pages are held in memory and a
+ * caller which stops within the first half of a page never causes another page to be fetched.
+ */
+final class MessageHistoryIterator implements Iterator<IMessage>, AutoCloseable {
+
+	/**
+	 * The channel the history is in.
+	 */
+	private final Channel channel;
+
+	/**
+	 * The ID to request the first page before.
+	 */
+	private final long firstBefore;
+
+	/**
+	 * The ID of the oldest message to include.
+	 */
+	private final long endID;
+
+	/**
+	 * The page which is currently being iterated over.
+	 */
+	private MessageObject[] page = new MessageObject[0];
+
+	/**
+	 * The index of the next message in {@link #page}.
+	 */
+	private int index;
+
+	/**
+	 * The next page, or null if it has not been requested yet. The first page is only requested once the caller starts
+	 * iterating.
+	 */
+	private CompletableFuture<MessageObject[]> nextPage;
+
+	/**
+	 * Whether there may be pages after {@link #page}.
+	 */
+	private boolean morePages;
+
+	/**
+	 * The next message to return, or null if it has not been resolved yet.
+	 */
+	private IMessage next;
+
+	/**
+	 * Whether iteration has ended, either because the history is exhausted or the iterator was closed.
+	 */
+	private boolean done;
+
+	/**
+	 * Whether the first page was requested.
+	 */
+	private boolean started;
+
+	/**
+	 * @param channel The channel the history is in.
+	 * @param beginID The ID of the newest message to include.
+	 * @param endID The ID of the oldest message to include.
+	 */
+	MessageHistoryIterator(Channel channel, long beginID, long endID) {
+		this.channel = channel;
+		this.firstBefore = beginID + 1L; // Adds 1L so beginID will be included
+		this.endID = endID;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null) return true;
+		if (done) return false;
+		if (!started) {
+			started = true;
+			nextPage = fetchPage(firstBefore);
+		}
+
+		while (index >= page.length) {
+			prefetch();
+			if (nextPage == null) {
+				done = true;
+				return false;
+			}
+
+			page = Requests.join(nextPage);
+			nextPage = null;
+			index = 0;
+			if (page == null) page = new MessageObject[0];
+			morePages = page.length >= Channel.MESSAGE_CHUNK_COUNT;
+		}
+
+		MessageObject message = page[index++];
+		if (Long.parseUnsignedLong(message.id) < endID) { // We don't need anything else
+			close();
+			return false;
+		}
+
+		if (index >= page.length / 2) // Fetch the next page while the caller works through the rest of this one
+			prefetch();
+
+		next = DiscordUtils.getMessageFromJSON(channel, message);
+		return true;
+	}
+
+	/**
+	 * Requests the page after the current one, unless it was already requested or there is none.
+	 */
+	private void prefetch() {
+		if (nextPage == null && morePages)
+			nextPage = fetchPage(Long.parseUnsignedLong(page[page.length - 1].id));
+	}
+
+	@Override
+	public IMessage next() {
+		if (!hasNext()) throw new NoSuchElementException();
+
+		IMessage message = next;
+		next = null;
+		return message;
+	}
+
+	/**
+	 * Stops iteration. A page which is still being prefetched is discarded once it arrives.
+	 */
+	@Override
+	public void close() {
+		done = true;
+		page = new MessageObject[0];
+		nextPage = null;
+		morePages = false;
+	}
+
+	private CompletableFuture<MessageObject[]> fetchPage(long before) {
+		String query = "?before=" + Long.toUnsignedString(before) + "&limit=" + Channel.MESSAGE_CHUNK_COUNT;
+		return channel.client.REQUESTS.GET.makeRequestAsync(
+				DiscordEndpoints.CHANNELS + channel.getStringID() + "/messages" + query,
+				MessageObject[].class);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sx.blah.discord.handle.impl.obj;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Caches the raw permissions numbers members have in a channel after applying the channel's overrides.
+ *
+ * <p>Members with the same roles and no override of their own always have the same permissions in a channel, so
+ * values are cached per distinct combination of roles rather than per member. This keeps the cache bounded by the
+ * structure of the guild instead of its member count. Members with an override of their own, and the owner of the
+ * guild, are not cached at all.
+ *
+ * <p>Each entry remembers the guild's permissions version (bumped on role, owner and role deletion changes) and the
+ * channel's overrides version it was computed with, and is only used if neither changed since.
+ */
+class PermissionsCache {
+
+	/**
+	 * The maximum number of role combinations which are cached. The cache is cleared once it is exceeded.
+	 */
+	static final int MAX_ENTRIES = 1024;
+
+	/**
+	 * The cached permissions, keyed by the role combination they were computed for.
+	 */
+	private final Map<RoleSignature, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * The version of the channel's overrides. Incremented whenever they change.
+	 */
+	private final AtomicInteger overridesVersion = new AtomicInteger();
+
+	/**
+	 * Gets the raw permissions number of members with the given roles and no override of their own, computing it if
+	 * there is no valid cached value.
+	 *
+	 * @param roleIDs The unique snowflake IDs of the member's roles, in a consistent order.
+	 * @param guildVersion The guild's permissions version, which must be read before the permissions are computed.
+	 * @param permissions Computes the permissions number.
+	 * @return The raw permissions number of the member's permissions.
+	 */
+	int get(long[] roleIDs, int guildVersion, IntSupplier permissions) {
+		// Capture what the result depends on before computing it so a concurrent change can never be cached as valid
+		int overridesVersion = this.overridesVersion.get();
+		RoleSignature signature = new RoleSignature(roleIDs);
+
+		Entry entry = entries.get(signature);
+		if (entry != null && entry.guildVersion == guildVersion && entry.overridesVersion == overridesVersion)
+			return entry.permissions;
+
+		int computed = permissions.getAsInt();
+		if (entries.size() >= MAX_ENTRIES) entries.clear();
+		entries.put(signature, new Entry(guildVersion, overridesVersion, computed));
+		return computed;
+	}
+
+	/**
+	 * Invalidates every cached value. This must be called whenever the channel's overrides change.
+	 */
+	void invalidate() {
+		overridesVersion.incrementAndGet();
+		entries.clear();
+	}
+
+	/**
+	 * Gets the number of cached role combinations.
+	 *
+	 * @return The number of cached values.
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * A combination of role IDs which can be used as a hash key.
+	 */
+	static final class RoleSignature {
+
+		private final long[] roleIDs;
+		private final int hash;
+
+		RoleSignature(long[] roleIDs) {
+			this.roleIDs = roleIDs;
+			this.hash = Arrays.hashCode(roleIDs);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof RoleSignature && Arrays.equals(roleIDs, ((RoleSignature) other).roleIDs);
+		}
+	}
+
+	/**
+	 * A computed permissions number and the versions it was computed with.
+	 */
+	private static final class Entry {
+
+		final int guildVersion;
+		final int overridesVersion;
+		final int permissions;
+
+		Entry(int guildVersion, int overridesVersion, int permissions) {
+			this.guildVersion = guildVersion;
+			this.overridesVersion = overridesVersion;
+			this.permissions = permissions;
+		}
+	}
+}
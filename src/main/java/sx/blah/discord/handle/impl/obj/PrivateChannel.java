@@ -29,6 +29,7 @@ import sx.blah.discord.util.cache.Cache;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The default implementation of {@link IPrivateChannel}.
@@ -48,9 +49,9 @@ public class PrivateChannel extends Channel implements IPrivateChannel {
 	}
 
 	@Override
-	public IMessage sendMessage(String content, EmbedObject embed, boolean tts) {
+	public CompletableFuture<IMessage> sendMessageAsync(String content, EmbedObject embed, boolean tts) {
 		if (recipient.isBot()) throw new DiscordException("Bots may not DM other bots.");
-		return super.sendMessage(content, embed, tts);
+		return super.sendMessageAsync(content, embed, tts);
 	}
 
 	@Override
@@ -67,6 +68,14 @@ public class PrivateChannel extends Channel implements IPrivateChannel {
 		return EnumSet.noneOf(Permissions.class);
 	}
 
+	@Override
+	public int getModifiedPermissionsNumber(IUser user) {
+		if (user != null && (user.equals(recipient) || user.equals(client.getOurUser())))
+			return Permissions.ALL_PERMISSIONS_NUMBER;
+
+		return 0;
+	}
+
 	@Override
 	public void edit(String name, int position, String topic) {
 		throw new UnsupportedOperationException();
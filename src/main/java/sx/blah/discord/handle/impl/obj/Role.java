@@ -52,6 +52,11 @@ public class Role implements IRole {
 	 */
 	protected volatile EnumSet<Permissions> permissions;
 
+	/**
+	 * The raw permissions number of the permissions granted to the role.
+	 */
+	protected volatile int permissionsNumber;
+
 	/**
 	 * The name of the role.
 	 */
@@ -90,6 +95,7 @@ public class Role implements IRole {
 	public Role(int position, int permissions, String name, boolean managed, long id, boolean hoist, int color, boolean mentionable, IGuild guild) {
 		this.position = position;
 		this.permissions = Permissions.getAllowedPermissionsForNumber(permissions);
+		this.permissionsNumber = permissions;
 		this.name = name;
 		this.managed = managed;
 		this.id = id;
@@ -124,7 +130,17 @@ public class Role implements IRole {
 	 * @param permissions The raw permissions number.
 	 */
 	public void setPermissions(int permissions) {
+		if (this.permissionsNumber == permissions)
+			return;
+
 		this.permissions = Permissions.getAllowedPermissionsForNumber(permissions);
+		this.permissionsNumber = permissions;
+		((Guild) guild).invalidatePermissions();
+	}
+
+	@Override
+	public int getPermissionsNumber() {
+		return permissionsNumber;
 	}
 
 	@Override
@@ -138,7 +154,11 @@ public class Role implements IRole {
 	 * @param name The role name.
 	 */
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+
+		if (((Guild) guild).roleNames != null)
+			((Guild) guild).roleNames.rename(oldName, name, id);
 	}
 
 	@Override
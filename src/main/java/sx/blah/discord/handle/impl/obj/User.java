@@ -18,6 +18,7 @@
 package sx.blah.discord.handle.impl.obj;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.IDiscordClient;
 import sx.blah.discord.api.IShard;
@@ -35,8 +36,7 @@ import sx.blah.discord.util.cache.LongMap;
 
 import java.awt.Color;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
+import java.util.function.LongPredicate;
 
 /**
  * The default implementation of {@link IUser}.
@@ -102,6 +102,12 @@ public class User implements IUser {
 	 */
 	public final Cache<IVoiceState> voiceStates;
 
+	/**
+	 * The sorted unique snowflake IDs of the guilds the user is a member of. The array is never mutated once it is
+	 * published.
+	 */
+	private volatile long[] guildIDs = new long[0];
+
 	public User(IShard shard, String name, long id, String discriminator, String avatar, IPresence presence, boolean isBot) {
 		this(shard, shard == null ? null : shard.getClient(), name, id, discriminator, avatar, presence, isBot);
 	}
@@ -115,9 +121,9 @@ public class User implements IUser {
 		setAvatar(avatar);
 		this.presence = presence;
 		this.isBot = isBot;
-		this.roles = new Cache<>((DiscordClientImpl) client, RolesHolder.class);
-		this.nicks = new Cache<>((DiscordClientImpl) client, NickHolder.class);
-		this.voiceStates = new Cache<>((DiscordClientImpl) client, IVoiceState.class);
+		this.roles = Cache.compact((DiscordClientImpl) client, RolesHolder.class);
+		this.nicks = Cache.compact((DiscordClientImpl) client, NickHolder.class);
+		this.voiceStates = Cache.compact((DiscordClientImpl) client, IVoiceState.class);
 	}
 
 	@Override
@@ -136,7 +142,11 @@ public class User implements IUser {
 	 * @param name The name.
 	 */
 	public void setName(String name) {
+		String oldName = this.name;
 		this.name = name;
+
+		if (client != null && ((DiscordClientImpl) client).userNames != null)
+			((DiscordClientImpl) client).userNames.rename(oldName, name, id);
 	}
 
 	@Override
@@ -209,42 +219,83 @@ public class User implements IUser {
 
 	@Override
 	public List<IRole> getRolesForGuild(IGuild guild) {
-		if (roles != null) {
-			RolesHolder retrievedRoles = roles.get(guild.getLongID());
-			if (retrievedRoles != null && retrievedRoles.getObject() != null)
-				return retrievedRoles.getObject().stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedList::new));
+		long[] roleIDs = getRoleIDsForGuild(guild.getLongID());
+		List<IRole> roles = new ArrayList<>(roleIDs.length);
+		for (long roleID : roleIDs) {
+			IRole role = guild.getRoleByID(roleID);
+			if (role != null)
+				roles.add(role);
 		}
-
-		return new LinkedList<>();
+		return roles;
 	}
 
 	@Override
-	public Color getColorForGuild(IGuild guild) {
-		return getRolesForGuild(guild).stream()
-				.filter(r -> r.getColor().getRGB() != 0)
-				.max(Comparator.comparing(IRole::getPosition))
-				.map(IRole::getColor)
-				.orElse(new Color(0, true));
+	public void forEachRoleForGuild(IGuild guild, LongObjConsumer<? super IRole> action) {
+		for (long roleID : getRoleIDsForGuild(guild.getLongID())) {
+			IRole role = guild.getRoleByID(roleID);
+			if (role != null)
+				action.accept(roleID, role);
+		}
 	}
 
-	@Override
-	public EnumSet<Permissions> getPermissionsForGuild(IGuild guild) {
-		if (guild.getOwner().equals(this)) {
-			return EnumSet.allOf(Permissions.class);
-		}
+	/**
+	 * Gets the sorted unique snowflake IDs of the roles the user has in a guild. The returned array is shared and
+	 * <b>must not</b> be modified.
+	 *
+	 * @param guildID The unique snowflake ID of the guild.
+	 * @return The sorted IDs of the user's roles in the guild.
+	 */
+	public long[] getRoleIDsForGuild(long guildID) {
+		RolesHolder holder = roles.get(guildID);
+		return holder == null ? RolesHolder.NONE : holder.getObject();
+	}
 
-		IRole everyone = guild.getEveryoneRole();
-		EnumSet<Permissions> permissions = everyone.getPermissions();
+	/**
+	 * Gets the highest position of the roles the user has in the given guild.
+	 *
+	 * @param guild The guild to get roles for.
+	 * @return The highest position of the user's roles, or 0 if the user has none.
+	 */
+	public int getHighestRolePositionForGuild(IGuild guild) {
+		Role highest = null;
+		for (long roleID : getRoleIDsForGuild(guild.getLongID())) {
+			Role role = (Role) guild.getRoleByID(roleID);
+			if (role != null && (highest == null || isAbove(role, highest)))
+				highest = role;
+		}
+		return highest == null ? 0 : highest.getPosition();
+	}
 
-		for (IRole role : guild.getRolesForUser(this)) {
-			permissions.addAll(role.getPermissions());
+	@Override
+	public Color getColorForGuild(IGuild guild) {
+		Role colored = null;
+		for (long roleID : getRoleIDsForGuild(guild.getLongID())) {
+			Role role = (Role) guild.getRoleByID(roleID);
+			if (role != null && role.getColor().getRGB() != 0 && (colored == null || isAbove(role, colored)))
+				colored = role;
 		}
+		return colored == null ? new Color(0, true) : colored.getColor();
+	}
+
+	/**
+	 * Gets whether a role is above another in the role hierarchy. This is the same order {@link IGuild#getRoles()}
+	 * sorts by, but avoids {@link IRole#getPosition()} which has to sort every role of the guild.
+	 *
+	 * @param role The role which should be higher.
+	 * @param other The role which should be lower.
+	 * @return Whether role is above other.
+	 */
+	private static boolean isAbove(Role role, Role other) {
+		return role.position > other.position || (role.position == other.position && role.id < other.id);
+	}
 
-		if (permissions.contains(Permissions.ADMINISTRATOR)) {
+	@Override
+	public EnumSet<Permissions> getPermissionsForGuild(IGuild guild) {
+		if (guild.getOwnerLongID() == id) {
 			return EnumSet.allOf(Permissions.class);
 		}
 
-		return permissions;
+		return Permissions.getAllowedPermissionsForNumber(PermissionUtils.getPermissionsNumber(guild, this));
 	}
 
 	@Override
@@ -288,21 +339,156 @@ public class User implements IUser {
 	 * Sets the CACHED nickname of the user in a guild.
 	 *
 	 * @param guildID The unique snowflake ID of the guild to cache the nickname for.
-	 * @param nick The nickname.
+	 * @param nick The nickname. If null, the cached nickname is removed.
 	 */
 	public void addNick(long guildID, String nick) {
-		nicks.put(new NickHolder(guildID, nick));
+		if (nick == null) {
+			nicks.remove(guildID);
+		} else {
+			nicks.put(new NickHolder(guildID, nick));
+		}
 	}
 
 	/**
-	 * Adds a CACHEDED role of the user in a guild.
+	 * Adds a CACHED guild membership of the user. When the user becomes a member of their first guild, they are
+	 * registered in the client's user store.
+	 *
+	 * @param guildID The unique snowflake ID of the guild the user is a member of.
+	 */
+	public synchronized void addGuildMembership(long guildID) {
+		long[] current = guildIDs;
+		int index = Arrays.binarySearch(current, guildID);
+		if (index >= 0)
+			return;
+
+		int insertion = -(index + 1);
+		long[] updated = new long[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, insertion);
+		updated[insertion] = guildID;
+		System.arraycopy(current, insertion, updated, insertion + 1, current.length - insertion);
+		guildIDs = updated;
+
+		if (current.length == 0)
+			((DiscordClientImpl) client).userCache.put(this);
+	}
+
+	/**
+	 * Removes a CACHED guild membership of the user. When the user is no longer a member of any guild, they are
+	 * removed from the client's user store and their per-guild state is dropped.
+	 *
+	 * @param guildID The unique snowflake ID of the guild the user is no longer a member of.
+	 */
+	public synchronized void removeGuildMembership(long guildID) {
+		long[] current = guildIDs;
+		int index = Arrays.binarySearch(current, guildID);
+		if (index < 0)
+			return;
+
+		long[] updated = new long[current.length - 1];
+		System.arraycopy(current, 0, updated, 0, index);
+		System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+		guildIDs = updated;
+
+		if (updated.length == 0) {
+			Cache<IUser> userCache = ((DiscordClientImpl) client).userCache;
+			if (userCache.get(id) == this)
+				userCache.remove(id);
+			// Emptied explicitly, as the cache statistics don't track compact caches until they are garbage collected
+			roles.clear();
+			nicks.clear();
+			voiceStates.clear();
+		}
+	}
+
+	/**
+	 * Gets whether the user is a CACHED member of any guild which matches the given filter.
+	 *
+	 * @param guildFilter The filter to test the unique snowflake IDs of the user's guilds with.
+	 * @return Whether the user is a member of any guild which matches the filter.
+	 */
+	public boolean isMemberOfAny(LongPredicate guildFilter) {
+		for (long guildID : guildIDs) {
+			if (guildFilter.test(guildID))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a CACHED role of the user in a guild.
 	 *
 	 * @param guildID The unique snowflake ID of the guild to cache the role for.
 	 * @param role The role.
 	 */
 	public void addRole(long guildID, IRole role) {
-		roles.putIfAbsent(guildID, () -> new RolesHolder(guildID, new CopyOnWriteArraySet<>()));
-		roles.get(guildID).getObject().add(role);
+		if (role != null)
+			addRole(guildID, role.getLongID());
+	}
+
+	/**
+	 * Adds a CACHED role of the user in a guild.
+	 *
+	 * @param guildID The unique snowflake ID of the guild to cache the role for.
+	 * @param roleID The unique snowflake ID of the role.
+	 */
+	public synchronized void addRole(long guildID, long roleID) {
+		long[] current = getRoleIDsForGuild(guildID);
+		int index = Arrays.binarySearch(current, roleID);
+		if (index >= 0)
+			return;
+
+		index = -index - 1;
+		long[] updated = new long[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, index);
+		updated[index] = roleID;
+		System.arraycopy(current, index, updated, index + 1, current.length - index);
+		roles.put(new RolesHolder(guildID, updated));
+	}
+
+	/**
+	 * Sets the CACHED roles of the user in a guild, replacing any roles which were previously cached.
+	 *
+	 * @param guildID The unique snowflake ID of the guild to cache the roles for.
+	 * @param roleIDs The unique snowflake IDs of the roles. This array is not retained.
+	 */
+	public synchronized void setRoles(long guildID, long[] roleIDs) {
+		long[] sorted = roleIDs.clone();
+		Arrays.sort(sorted);
+		int length = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[length - 1])
+				sorted[length++] = sorted[i];
+		}
+		roles.put(new RolesHolder(guildID, length == sorted.length ? sorted : Arrays.copyOf(sorted, length)));
+	}
+
+	/**
+	 * Removes every CACHED role of the user in a guild which does not match the given filter.
+	 *
+	 * @param guildID The unique snowflake ID of the guild to remove roles in.
+	 * @param roleFilter The filter roles which should be kept must match.
+	 */
+	public synchronized void retainRoles(long guildID, LongPredicate roleFilter) {
+		long[] current = getRoleIDsForGuild(guildID);
+		long[] retained = new long[current.length];
+		int length = 0;
+		for (long roleID : current) {
+			if (roleFilter.test(roleID))
+				retained[length++] = roleID;
+		}
+		if (length != current.length)
+			roles.put(new RolesHolder(guildID, Arrays.copyOf(retained, length)));
+	}
+
+	/**
+	 * Gets whether the user has a role in a guild.
+	 *
+	 * @param guildID The unique snowflake ID of the guild.
+	 * @param roleID The unique snowflake ID of the role.
+	 * @return Whether the user has the role.
+	 */
+	public boolean hasRole(long guildID, long roleID) {
+		return Arrays.binarySearch(getRoleIDsForGuild(guildID), roleID) >= 0;
 	}
 
 	@Override
@@ -319,7 +505,7 @@ public class User implements IUser {
 
 	@Override
 	public boolean hasRole(IRole role) {
-		return getRolesForGuild(role.getGuild()).contains(role);
+		return role != null && hasRole(role.getGuild().getLongID(), role.getLongID());
 	}
 
 	@Override
@@ -329,6 +515,7 @@ public class User implements IUser {
 		newUser.setPresence(presence.copy());
 		newUser.nicks.putAll(nicks);
 		newUser.roles.putAll(roles);
+		newUser.guildIDs = guildIDs;
 		return newUser;
 	}
 
@@ -369,12 +556,18 @@ public class User implements IUser {
 }
 
 /**
- * Associates a guild ID to the roles a user has in the guild.
+ * Associates a guild ID to the sorted unique snowflake IDs of the roles a user has in the guild. The array is never
+ * mutated once the holder is created, so holders may be freely shared between copies of a user.
  */
-class RolesHolder extends IDLinkedObjectWrapper<Collection<IRole>> {
+class RolesHolder extends IDLinkedObjectWrapper<long[]> {
+
+	/**
+	 * The role IDs of a user with no cached roles in a guild.
+	 */
+	static final long[] NONE = new long[0];
 
-	RolesHolder(long id, Collection<IRole> roles) {
-		super(id, roles);
+	RolesHolder(long id, long[] roleIDs) {
+		super(id, roleIDs);
 	}
 }
 
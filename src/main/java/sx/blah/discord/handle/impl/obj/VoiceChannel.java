@@ -26,6 +26,7 @@ import sx.blah.discord.util.Image;
 import sx.blah.discord.util.MessageHistory;
 import sx.blah.discord.util.PermissionUtils;
 import sx.blah.discord.util.cache.Cache;
+import sx.blah.discord.util.cache.NameIndex;
 
 import java.io.File;
 import java.io.InputStream;
@@ -56,6 +57,11 @@ public class VoiceChannel extends Channel implements IVoiceChannel {
 		this.bitrate = bitrate;
 	}
 
+	@Override
+	protected NameIndex getNameIndex() {
+		return guild == null ? null : ((Guild) guild).voiceChannelNames;
+	}
+
 	@Override
 	public int getUserLimit() {
 		return userLimit;
@@ -370,7 +376,11 @@ public class VoiceChannel extends Channel implements IVoiceChannel {
 
 	@Override
 	public List<IUser> getConnectedUsers() {
-		return guild.getUsers().stream().filter(u -> this.equals(u.getVoiceStateForGuild(guild).getChannel())).collect(Collectors.toList());
+		// Look the voice states up directly so that no empty voice state is created for every member of the guild
+		return guild.getUsers().stream().filter(u -> {
+			IVoiceState state = ((User) u).voiceStates.get(guild.getLongID());
+			return state != null && this.equals(state.getChannel());
+		}).collect(Collectors.toList());
 	}
 
 	@Override
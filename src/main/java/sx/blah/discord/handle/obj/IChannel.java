@@ -27,6 +27,8 @@ import java.io.InputStream;
 import java.time.Instant;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * A text, voice, or private channel in Discord.
@@ -198,6 +200,35 @@ public interface IChannel extends IDiscordObject<IChannel> {
 	 */
 	MessageHistory getFullMessageHistory();
 
+	/**
+	 * Gets a lazy stream over all of the messages in the channel, from newest to oldest.
+	 *
+	 * <p>In the implementation of Discord4J, messages are fetched from Discord one page at a time as the stream is
+	 * consumed. Once half of a page was processed, the next page is fetched in the background. Only a bounded number of
+	 * messages is held in memory, and a short-circuiting operation like <code>limit</code> or <code>anyMatch</code>
+	 * which completes within the first half of a page causes no further page to be fetched (at most one further page
+	 * otherwise). The stream may be consumed in parallel, in which case messages are read ahead in batches and more
+	 * pages may be fetched.
+	 *
+	 * @return A lazy stream over the messages in the channel.
+	 */
+	default Stream<IMessage> streamHistory() {
+		return getFullMessageHistory().stream();
+	}
+
+	/**
+	 * Gets a lazy stream over the messages in the given range of message IDs, from newest to oldest.
+	 *
+	 * @param beginID The ID of the newest message to include.
+	 * @param endID The ID of the oldest message to include.
+	 * @return A lazy stream over the messages in the given range of message IDs.
+	 *
+	 * @see #streamHistory()
+	 */
+	default Stream<IMessage> streamHistory(long beginID, long endID) {
+		return getMessageHistoryIn(beginID, endID).stream();
+	}
+
 	/**
 	 * Bulk deletes as many messages as possible in the channel.
 	 *
@@ -341,6 +372,20 @@ public interface IChannel extends IDiscordObject<IChannel> {
 	 */
 	IMessage sendMessage(String content, EmbedObject embed, boolean tts);
 
+	/**
+	 * Sends a message in the channel without blocking the calling thread.
+	 *
+	 * @param content The content of the message.
+	 * @param embed The embed in the message.
+	 * @param tts Whether the message should use text-to-speech.
+	 * @return A future which completes with the sent message object.
+	 *
+	 * @see EmbedBuilder
+	 */
+	default CompletableFuture<IMessage> sendMessageAsync(String content, EmbedObject embed, boolean tts) {
+		return CompletableFuture.supplyAsync(() -> sendMessage(content, embed, tts));
+	}
+
 	/**
 	 * Sends a message in the channel.
 	 *
@@ -644,6 +689,18 @@ public interface IChannel extends IDiscordObject<IChannel> {
 	 */
 	EnumSet<Permissions> getModifiedPermissions(IUser user);
 
+	/**
+	 * Gets the raw permissions number of the permissions the given user has in the channel after applying
+	 * permission overrides. Unlike {@link #getModifiedPermissions(IUser)}, the implementation of Discord4J does not
+	 * allocate a new set.
+	 *
+	 * @param user The user to get the permissions for.
+	 * @return The raw permissions number of the user's permissions in the channel.
+	 */
+	default int getModifiedPermissionsNumber(IUser user) {
+		return Permissions.generatePermissionsNumber(getModifiedPermissions(user));
+	}
+
 	/**
 	 * Gets the permissions a role has in the channel, taking into account role overrides.
 	 *
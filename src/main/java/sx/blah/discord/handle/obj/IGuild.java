@@ -17,6 +17,7 @@
 
 package sx.blah.discord.handle.obj;
 
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.handle.audio.IAudioManager;
 import sx.blah.discord.handle.audit.ActionType;
 import sx.blah.discord.handle.audit.AuditLog;
@@ -25,9 +26,15 @@ import sx.blah.discord.util.Image;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * A Discord guild.
+ *
+ * <p>The <code>forEach</code> methods visit the cached objects without copying them, in an undefined order. Their
+ * actions may run while a read lock of the cache is held, so they must not update the cache (for example by calling
+ * a method which sets a CACHED value of an object in it). Doing so from within an action deadlocks.
  */
 public interface IGuild extends IDiscordObject<IGuild> {
 
@@ -66,6 +73,20 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	List<IChannel> getChannels();
 
+	/**
+	 * Gets the guild's text channels the given user has permission to read, sorted by their effective positions. The
+	 * implementation of Discord4J computes the user's guild permissions once and only applies each channel's overrides
+	 * to them, so it is much cheaper than checking every channel individually.
+	 *
+	 * @param user The user to get the readable channels of.
+	 * @return The text channels the user can read.
+	 */
+	default List<IChannel> getChannelsForUser(IUser user) {
+		return getChannels().stream()
+				.filter(channel -> channel.getModifiedPermissions(user).contains(Permissions.READ_MESSAGES))
+				.collect(Collectors.toList());
+	}
+
 	/**
 	 * Gets a text channel by its unique snowflake ID from the guild's text channel cache.
 	 *
@@ -74,6 +95,15 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	IChannel getChannelByID(long id);
 
+	/**
+	 * Performs the given action for each of the guild's text channels, without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachChannel(LongObjConsumer<? super IChannel> action) {
+		getChannels().forEach(channel -> action.accept(channel.getLongID(), channel));
+	}
+
 	/**
 	 * Gets the guild's members.
 	 *
@@ -89,6 +119,15 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	IUser getUserByID(long id);
 
+	/**
+	 * Performs the given action for each of the guild's members, without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachUser(LongObjConsumer<? super IUser> action) {
+		getUsers().forEach(user -> action.accept(user.getLongID(), user));
+	}
+
 	/**
 	 * Gets a list of text channels by their name.
 	 *
@@ -97,6 +136,19 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	List<IChannel> getChannelsByName(String name);
 
+	/**
+	 * Gets a list of text channels by their name.
+	 *
+	 * @param name The name of the desired text channels.
+	 * @param ignoreCase Whether to ignore the case of the name.
+	 * @return A list of text channels with the provided name.
+	 */
+	default List<IChannel> getChannelsByName(String name, boolean ignoreCase) {
+		return getChannels().stream()
+				.filter(channel -> ignoreCase ? channel.getName().equalsIgnoreCase(name) : channel.getName().equals(name))
+				.collect(Collectors.toList());
+	}
+
 	/**
 	 * Gets a list of voice channels by their name.
 	 *
@@ -162,6 +214,15 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	IRole getRoleByID(long id);
 
+	/**
+	 * Performs the given action for each of the guild's roles, without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachRole(LongObjConsumer<? super IRole> action) {
+		getRoles().forEach(role -> action.accept(role.getLongID(), role));
+	}
+
 	/**
 	 * Gets a list of roles by their name.
 	 *
@@ -170,6 +231,19 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	List<IRole> getRolesByName(String name);
 
+	/**
+	 * Gets a list of roles by their name.
+	 *
+	 * @param name The name of the desired roles.
+	 * @param ignoreCase Whether to ignore the case of the name.
+	 * @return A list of roles with the provided name.
+	 */
+	default List<IRole> getRolesByName(String name, boolean ignoreCase) {
+		return getRoles().stream()
+				.filter(role -> ignoreCase ? role.getName().equalsIgnoreCase(name) : role.getName().equals(name))
+				.collect(Collectors.toList());
+	}
+
 	/**
 	 * Gets the guild's voice channels sorted by their effective positions.
 	 *
@@ -185,6 +259,15 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	IVoiceChannel getVoiceChannelByID(long id);
 
+	/**
+	 * Performs the given action for each of the guild's voice channels, without copying them into a new list.
+	 *
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachVoiceChannel(LongObjConsumer<? super IVoiceChannel> action) {
+		getVoiceChannels().forEach(channel -> action.accept(channel.getLongID(), channel));
+	}
+
 	/**
 	 * Gets the voice channel in the guild that the bot is connected to.
 	 *
@@ -292,6 +375,18 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	void banUser(long userID, String reason, int deleteMessagesForDays);
 
+	/**
+	 * Bans a user from the guild without blocking the calling thread.
+	 *
+	 * @param userID The snowflake ID of the user to ban.
+	 * @param reason The reason for banning. This may be at most {@value Ban#MAX_REASON_LENGTH} characters long.
+	 * @param deleteMessagesForDays The number of days to delete messages from this user for.
+	 * @return A future which completes once the user is banned.
+	 */
+	default CompletableFuture<Void> banUserAsync(long userID, String reason, int deleteMessagesForDays) {
+		return CompletableFuture.runAsync(() -> banUser(userID, reason, deleteMessagesForDays));
+	}
+
 	/**
 	 * Unbans a user.
 	 *
@@ -299,6 +394,16 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	void pardonUser(long userID);
 
+	/**
+	 * Unbans a user without blocking the calling thread.
+	 *
+	 * @param userID The snowflake ID of the user to unban.
+	 * @return A future which completes once the user is unbanned.
+	 */
+	default CompletableFuture<Void> pardonUserAsync(long userID) {
+		return CompletableFuture.runAsync(() -> pardonUser(userID));
+	}
+
 	/**
 	 * Kicks a user from the guild.
 	 *
@@ -314,6 +419,17 @@ public interface IGuild extends IDiscordObject<IGuild> {
 	 */
 	void kickUser(IUser user, String reason);
 
+	/**
+	 * Kicks a user from the guild without blocking the calling thread.
+	 *
+	 * @param user The user to kick.
+	 * @param reason The reason for kicking. This may be at most {@value Ban#MAX_REASON_LENGTH} characters long.
+	 * @return A future which completes once the user is kicked.
+	 */
+	default CompletableFuture<Void> kickUserAsync(IUser user, String reason) {
+		return CompletableFuture.runAsync(() -> kickUser(user, reason));
+	}
+
 	/**
 	 * Edits the roles a user has.
 	 *
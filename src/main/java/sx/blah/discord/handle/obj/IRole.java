@@ -39,6 +39,15 @@ public interface IRole extends IDiscordObject<IRole> {
 	 */
 	EnumSet<Permissions> getPermissions();
 
+	/**
+	 * Gets the raw permissions number of the permissions granted to the role.
+	 *
+	 * @return The raw permissions number of the role.
+	 */
+	default int getPermissionsNumber() {
+		return Permissions.generatePermissionsNumber(getPermissions());
+	}
+
 	/**
 	 * Gets the name of the role.
 	 *
@@ -17,6 +17,7 @@
 
 package sx.blah.discord.handle.obj;
 
+import com.koloboke.function.LongObjConsumer;
 import sx.blah.discord.util.cache.LongMap;
 
 import java.awt.Color;
@@ -96,6 +97,18 @@ public interface IUser extends IDiscordObject<IUser> {
 	 */
 	List<IRole> getRolesForGuild(IGuild guild);
 
+	/**
+	 * Performs the given action for each of the roles the user has in the given guild. Unlike
+	 * {@link #getRolesForGuild(IGuild)}, the implementation of Discord4J does not copy them into a new list and visits
+	 * them in ascending order of their unique snowflake IDs.
+	 *
+	 * @param guild The guild to get roles for.
+	 * @param action The action to perform for each unique snowflake ID and object pair.
+	 */
+	default void forEachRoleForGuild(IGuild guild, LongObjConsumer<? super IRole> action) {
+		getRolesForGuild(guild).forEach(role -> action.accept(role.getLongID(), role));
+	}
+
 	/**
 	 * Gets the color the user's name is shown as in the given guild.
 	 *
@@ -33,6 +33,16 @@ public class PermissionOverride implements IIDLinkedObject {
 	 */
 	protected final EnumSet<Permissions> deny;
 
+	/**
+	 * The raw permissions number of the permissions explicitly allowed by the override.
+	 */
+	protected final int allowNumber;
+
+	/**
+	 * The raw permissions number of the permissions explicitly denied by the override.
+	 */
+	protected final int denyNumber;
+
 	/**
 	 * The ID of the user or role the override is for.
 	 */
@@ -41,6 +51,8 @@ public class PermissionOverride implements IIDLinkedObject {
 	public PermissionOverride(EnumSet<Permissions> allow, EnumSet<Permissions> deny, long id) {
 		this.allow = allow;
 		this.deny = deny;
+		this.allowNumber = Permissions.generatePermissionsNumber(allow);
+		this.denyNumber = Permissions.generatePermissionsNumber(deny);
 		this.id = id;
 	}
 
@@ -62,6 +74,24 @@ public class PermissionOverride implements IIDLinkedObject {
 		return deny;
 	}
 
+	/**
+	 * Gets the raw permissions number of the permissions explicitly allowed by the override.
+	 *
+	 * @return The raw permissions number of the explicitly allowed permissions.
+	 */
+	public int allowNumber() {
+		return allowNumber;
+	}
+
+	/**
+	 * Gets the raw permissions number of the permissions explicitly denied by the override.
+	 *
+	 * @return The raw permissions number of the explicitly denied permissions.
+	 */
+	public int denyNumber() {
+		return denyNumber;
+	}
+
 	@Override
 	public boolean equals(Object other) {
 		if (other == null)
@@ -145,6 +145,16 @@ public enum Permissions {
 	 */
 	MANAGE_EMOJIS(30);
 
+	/**
+	 * Every permission, cached to avoid copying {@link #values()} on every conversion.
+	 */
+	private static final Permissions[] VALUES = values();
+
+	/**
+	 * The raw permissions number which contains every permission.
+	 */
+	public static final int ALL_PERMISSIONS_NUMBER = generatePermissionsNumber(VALUES);
+
 	/**
 	 * The bit offset for the permission.
 	 */
@@ -190,7 +200,7 @@ public enum Permissions {
 	public static EnumSet<Permissions> getAllowedPermissionsForNumber(int permissionsNumber) {
 		EnumSet<Permissions> permissionsSet = EnumSet.noneOf(Permissions.class);
 
-		for (Permissions permission : EnumSet.allOf(Permissions.class)) {
+		for (Permissions permission : VALUES) {
 			if (permission.hasPermission(permissionsNumber))
 				permissionsSet.add(permission);
 		}
@@ -207,7 +217,7 @@ public enum Permissions {
 	public static EnumSet<Permissions> getDeniedPermissionsForNumber(int permissionsNumber) {
 		EnumSet<Permissions> permissionsSet = EnumSet.noneOf(Permissions.class);
 
-		for (Permissions permission : EnumSet.allOf(Permissions.class)) {
+		for (Permissions permission : VALUES) {
 			if (permission.hasPermission(permissionsNumber, false))
 				permissionsSet.add(permission);
 		}
@@ -231,4 +241,18 @@ public enum Permissions {
 		}
 		return number;
 	}
+
+	/**
+	 * Gets the raw permissions number for the given permissions.
+	 *
+	 * @param permissions The permissions.
+	 * @return The raw permissions number for the given permissions.
+	 */
+	public static int generatePermissionsNumber(Permissions... permissions) {
+		int number = 0;
+		for (Permissions permission : permissions) {
+			number |= (1 << permission.offset);
+		}
+		return number;
+	}
 }
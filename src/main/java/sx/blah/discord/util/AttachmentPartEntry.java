@@ -21,10 +21,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A pair of a file name and file data used for sending files to Discord.
  *
+ * <p>The data may be a stream, a file or a buffer. Files and buffers are streamed straight to Discord, while streams
+ * are read completely before the upload starts.
+ *
  * @see sx.blah.discord.handle.obj.IChannel#sendFile(File) Channel sendFile methods
  */
 public class AttachmentPartEntry {
@@ -34,24 +38,97 @@ public class AttachmentPartEntry {
 	private final String fileName;
 
 	/**
-	 * The stream of data that can be read and sent to Discord.
+	 * The stream of data that can be read and sent to Discord (or null if the data is a file or buffer).
 	 */
 	private final InputStream fileData;
 
+	/**
+	 * The file the data is read from (or null if the data is a stream or buffer).
+	 */
+	private final File file;
+
+	/**
+	 * The buffer holding the data (or null if the data is a stream or file).
+	 */
+	private final ByteBuffer buffer;
+
 	public AttachmentPartEntry(String fileName, InputStream fileData) {
+		this(fileName, fileData, null, null);
+	}
+
+	public AttachmentPartEntry(String fileName, File file) {
+		this(fileName, null, file, null);
+	}
+
+	/**
+	 * Creates an attachment part entry from the remaining bytes of a buffer. The buffer's position is not modified.
+	 *
+	 * @param fileName The name of the file that will be shown in Discord.
+	 * @param buffer The buffer holding the data.
+	 */
+	public AttachmentPartEntry(String fileName, ByteBuffer buffer) {
+		this(fileName, null, null, buffer);
+	}
+
+	private AttachmentPartEntry(String fileName, InputStream fileData, File file, ByteBuffer buffer) {
 		this.fileName = fileName;
 		this.fileData = fileData;
+		this.file = file;
+		this.buffer = buffer;
 	}
 
 	/**
-	 * Gets the stream of data that can be read and sent to Discord.
+	 * Gets the stream of data that can be read and sent to Discord. For files and buffers, a new stream over their
+	 * data is opened.
 	 *
 	 * @return The stream of data that can be read and sent to Discord.
 	 */
 	public InputStream getFileData() {
+		if (file != null) {
+			try {
+				return new FileInputStream(file);
+			} catch (FileNotFoundException e) {
+				throw new DiscordException("Unable to read attachment file " + file, e);
+			}
+		} else if (buffer != null) {
+			ByteBuffer data = buffer.duplicate();
+			return new InputStream() {
+				@Override
+				public int read() {
+					return data.hasRemaining() ? data.get() & 0xFF : -1;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) {
+					if (len == 0) return 0;
+					if (!data.hasRemaining()) return -1;
+					len = Math.min(len, data.remaining());
+					data.get(b, off, len);
+					return len;
+				}
+			};
+		}
 		return fileData;
 	}
 
+	/**
+	 * Gets the file the data is read from.
+	 *
+	 * @return The file the data is read from, or null if the data is a stream or buffer.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the buffer holding the data.
+	 *
+	 * @return The buffer holding the data, or null if the data is a stream or file.
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
 	/**
 	 * Gets the name of the file that will be shown in Discord.
 	 *
@@ -70,7 +147,9 @@ public class AttachmentPartEntry {
 	 * @throws FileNotFoundException If the file cannot be found.
 	 */
 	public static AttachmentPartEntry from(File file) throws FileNotFoundException {
-		return new AttachmentPartEntry(file.getName(), new FileInputStream(file));
+		if (!file.isFile())
+			throw new FileNotFoundException(file + " (No such file)");
+		return new AttachmentPartEntry(file.getName(), file);
 	}
 
 	/**
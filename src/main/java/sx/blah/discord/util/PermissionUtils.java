@@ -17,6 +17,7 @@
 
 package sx.blah.discord.util;
 
+import sx.blah.discord.handle.impl.obj.User;
 import sx.blah.discord.handle.obj.*;
 import sx.blah.discord.util.cache.Cache;
 
@@ -65,7 +66,7 @@ public class PermissionUtils {
 		if (guild.getOwner().equals(user1)) return true;
 		if (guild.getOwner().equals(user2)) return false;
 
-		return hasHigherRoles(guild.getRolesForUser(user1), guild.getRolesForUser(user2));
+		return getHighestRolePosition(guild, user1) > getHighestRolePosition(guild, user2);
 	}
 
 	/**
@@ -80,7 +81,7 @@ public class PermissionUtils {
 	public static boolean isUserHigher(IGuild guild, IUser user, List<IRole> roles) {
 		if (guild.getOwner().equals(user)) return true;
 
-		return hasHigherRoles(guild.getRolesForUser(user), roles);
+		return getHighestRolePosition(guild, user) > getHighestPosition(roles);
 	}
 
 	/**
@@ -104,9 +105,7 @@ public class PermissionUtils {
 	 * @param required The permissions the user must have.
 	 */
 	public static void requirePermissions(IGuild guild, IUser user, EnumSet<Permissions> required) {
-		EnumSet<Permissions> copy = required.clone();
-		copy.removeAll(user.getPermissionsForGuild(guild));
-		if (!copy.isEmpty()) throw new MissingPermissionsException(copy);
+		requirePermissions(getPermissionsNumber(guild, user), required);
 	}
 
 	/**
@@ -130,7 +129,7 @@ public class PermissionUtils {
 	 * @param required The permissions the user must have.
 	 */
 	public static void requirePermissions(IChannel channel, IUser user, EnumSet<Permissions> required) {
-		requirePermissions(channel.getModifiedPermissions(user), required);
+		requirePermissions(channel.getModifiedPermissionsNumber(user), required);
 	}
 
 	/**
@@ -145,6 +144,17 @@ public class PermissionUtils {
 		if (!copy.isEmpty()) throw new MissingPermissionsException(copy);
 	}
 
+	/**
+	 * Throws a {@link MissingPermissionsException} if the raw permissions number does not contain all of the required permissions.
+	 *
+	 * @param permissionsNumber The raw permissions number to check.
+	 * @param required The permissions the given permissions number must have.
+	 */
+	public static void requirePermissions(int permissionsNumber, EnumSet<Permissions> required) {
+		if (!hasPermissions(permissionsNumber, required))
+			requirePermissions(Permissions.getAllowedPermissionsForNumber(permissionsNumber), required);
+	}
+
 	/**
 	 * Determines if the given user has all of the required permissions.
 	 * This method takes into account if the user is the owner of the guild.
@@ -155,7 +165,7 @@ public class PermissionUtils {
 	 * @return True if the user has all of the required permissions.
 	 */
 	public static boolean hasPermissions(IGuild guild, IUser user, Permissions... required) {
-		return hasPermissions(guild, user, arrayToEnumSet(required));
+		return hasPermissions(getPermissionsNumber(guild, user), required);
 	}
 
 	/**
@@ -168,7 +178,7 @@ public class PermissionUtils {
 	 * @return True if the user has all of the required permissions.
 	 */
 	public static boolean hasPermissions(IGuild guild, IUser user, EnumSet<Permissions> required) {
-		return user.getPermissionsForGuild(guild).containsAll(required);
+		return hasPermissions(getPermissionsNumber(guild, user), required);
 	}
 
 	/**
@@ -181,7 +191,7 @@ public class PermissionUtils {
 	 * @return True if the user has all of the required permissions.
 	 */
 	public static boolean hasPermissions(IChannel channel, IUser user, Permissions... required) {
-		return hasPermissions(channel, user, arrayToEnumSet(required));
+		return hasPermissions(channel.getModifiedPermissionsNumber(user), required);
 	}
 
 	/**
@@ -194,7 +204,7 @@ public class PermissionUtils {
 	 * @return True if the user has all of the required permissions.
 	 */
 	public static boolean hasPermissions(IChannel channel, IUser user, EnumSet<Permissions> required) {
-		return hasPermissions(channel.getModifiedPermissions(user), required);
+		return hasPermissions(channel.getModifiedPermissionsNumber(user), required);
 	}
 
 	/**
@@ -208,6 +218,36 @@ public class PermissionUtils {
 		return permissions.containsAll(required);
 	}
 
+	/**
+	 * Determines if the given raw permissions number has all of the required permissions.
+	 *
+	 * @param permissionsNumber The raw permissions number to check.
+	 * @param required The permissions the given permissions number must have.
+	 * @return True if the given permissions number has all of the required permissions.
+	 */
+	public static boolean hasPermissions(int permissionsNumber, Permissions... required) {
+		for (Permissions permission : required) {
+			if (!permission.hasPermission(permissionsNumber))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if the given raw permissions number has all of the required permissions.
+	 *
+	 * @param permissionsNumber The raw permissions number to check.
+	 * @param required The permissions the given permissions number must have.
+	 * @return True if the given permissions number has all of the required permissions.
+	 */
+	public static boolean hasPermissions(int permissionsNumber, EnumSet<Permissions> required) {
+		for (Permissions permission : required) {
+			if (!permission.hasPermission(permissionsNumber))
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Throws a {@link MissingPermissionsException} if user1 is not higher in the role hierarchy than user2 in the given guild
 	 * or user1 does not have all of the required permissions.
@@ -453,49 +493,119 @@ public class PermissionUtils {
 	}
 
 	/**
-	 * Gets the permissions a user has after applying specific and role overrides.
+	 * Gets the raw permissions number of the permissions a user has in a guild. This follows Discord's algorithm: the
+	 * guild owner and users with {@link Permissions#ADMINISTRATOR} have every permission, everyone else has the union
+	 * of the permissions of the @everyone role and their own roles.
+	 *
+	 * @param guild The guild the user is in.
+	 * @param user The user to get permissions for.
+	 * @return The raw permissions number of the user's permissions.
+	 */
+	public static int getPermissionsNumber(IGuild guild, IUser user) {
+		return getPermissionsNumber(guild, user.getLongID(), getRoleIDs(guild, user));
+	}
+
+	/**
+	 * Gets the raw permissions number of the permissions a member with the given roles has in a guild.
+	 *
+	 * @param guild The guild the member is in.
+	 * @param userID The unique snowflake ID of the member.
+	 * @param roleIDs The unique snowflake IDs of the member's roles.
+	 * @return The raw permissions number of the member's permissions.
+	 * @see #getPermissionsNumber(IGuild, IUser)
+	 */
+	public static int getPermissionsNumber(IGuild guild, long userID, long[] roleIDs) {
+		if (guild.getOwnerLongID() == userID)
+			return Permissions.ALL_PERMISSIONS_NUMBER;
+
+		IRole everyone = guild.getEveryoneRole();
+		int permissions = everyone == null ? 0 : everyone.getPermissionsNumber();
+		for (long roleID : roleIDs) {
+			IRole role = guild.getRoleByID(roleID);
+			if (role != null)
+				permissions |= role.getPermissionsNumber();
+		}
+
+		return Permissions.ADMINISTRATOR.hasPermission(permissions, false) ? Permissions.ALL_PERMISSIONS_NUMBER : permissions;
+	}
+
+	/**
+	 * Gets the raw permissions number of the permissions a user has after applying specific and role overrides. The
+	 * @everyone override is applied first, then the combined overrides of the user's roles and finally the user's own
+	 * override.
 	 *
 	 * @param user The user to get permissions for.
 	 * @param guild The guild the user is in.
 	 * @param userOverrides The internal user overrides cache.
 	 * @param roleOverrides The internal role overrides cache.
-	 * @return The permissions the user has in the permissions object.
+	 * @return The raw permissions number of the permissions the user has.
 	 */
-	public static EnumSet<Permissions> getModifiedPermissions(IUser user, IGuild guild,
-	                                                          Cache<PermissionOverride> userOverrides,
-	                                                          Cache<PermissionOverride> roleOverrides) {
-		EnumSet<Permissions> base = user.getPermissionsForGuild(guild);
-		if (base.contains(Permissions.ADMINISTRATOR)) {
-			return EnumSet.allOf(Permissions.class);
-		}
+	public static int getModifiedPermissionsNumber(IUser user, IGuild guild,
+	                                               Cache<PermissionOverride> userOverrides,
+	                                               Cache<PermissionOverride> roleOverrides) {
+		long[] roleIDs = getRoleIDs(guild, user);
+		return getModifiedPermissionsNumber(getPermissionsNumber(guild, user.getLongID(), roleIDs), guild, roleIDs,
+				userOverrides.get(user.getLongID()), roleOverrides);
+	}
+
+	/**
+	 * Gets the raw permissions number of the permissions a member with the given roles and guild permissions has after
+	 * applying specific and role overrides.
+	 *
+	 * <p>The result only depends on the arguments, so members with the same roles and no override of their own always
+	 * have the same permissions in a channel. This allows permissions to be computed once per role combination.
+	 *
+	 * @param permissions The raw permissions number of the member's permissions in the guild.
+	 * @param guild The guild the member is in.
+	 * @param roleIDs The unique snowflake IDs of the member's roles.
+	 * @param userOverride The member's own override (or null if there isn't one).
+	 * @param roleOverrides The internal role overrides cache.
+	 * @return The raw permissions number of the permissions the member has.
+	 * @see #getPermissionsNumber(IGuild, long, long[])
+	 */
+	public static int getModifiedPermissionsNumber(int permissions, IGuild guild, long[] roleIDs,
+	                                               PermissionOverride userOverride,
+	                                               Cache<PermissionOverride> roleOverrides) {
+		if (Permissions.ADMINISTRATOR.hasPermission(permissions, false))
+			return Permissions.ALL_PERMISSIONS_NUMBER;
 
 		PermissionOverride everyoneOverride = roleOverrides.get(guild.getLongID());
-		if (everyoneOverride != null) {
-			base.retainAll(EnumSet.complementOf(everyoneOverride.deny()));
-			base.addAll(everyoneOverride.allow());
-		}
+		if (everyoneOverride != null)
+			permissions = (permissions & ~everyoneOverride.denyNumber()) | everyoneOverride.allowNumber();
 
-		EnumSet<Permissions> allow = EnumSet.noneOf(Permissions.class);
-		EnumSet<Permissions> deny = EnumSet.noneOf(Permissions.class);
+		int allow = 0;
+		int deny = 0;
+		for (long roleID : roleIDs) {
+			if (roleID == guild.getLongID())
+				continue; //@everyone was already applied
 
-		for (IRole role : guild.getRolesForUser(user)) {
-			PermissionOverride roleOverride = roleOverrides.get(role.getLongID());
+			PermissionOverride roleOverride = roleOverrides.get(roleID);
 			if (roleOverride != null) {
-				allow.addAll(roleOverride.allow());
-				deny.addAll(roleOverride.deny());
+				allow |= roleOverride.allowNumber();
+				deny |= roleOverride.denyNumber();
 			}
 		}
+		permissions = (permissions & ~deny) | allow;
 
-		base.retainAll(EnumSet.complementOf(deny));
-		base.addAll(allow);
+		if (userOverride != null)
+			permissions = (permissions & ~userOverride.denyNumber()) | userOverride.allowNumber();
 
-		PermissionOverride userOverride = userOverrides.get(user.getLongID());
-		if (userOverride != null) {
-			base.retainAll(EnumSet.complementOf(userOverride.deny()));
-			base.addAll(userOverride.allow());
-		}
+		return permissions;
+	}
 
-		return base;
+	/**
+	 * Gets the permissions a user has after applying specific and role overrides.
+	 *
+	 * @param user The user to get permissions for.
+	 * @param guild The guild the user is in.
+	 * @param userOverrides The internal user overrides cache.
+	 * @param roleOverrides The internal role overrides cache.
+	 * @return The permissions the user has in the permissions object.
+	 */
+	public static EnumSet<Permissions> getModifiedPermissions(IUser user, IGuild guild,
+	                                                          Cache<PermissionOverride> userOverrides,
+	                                                          Cache<PermissionOverride> roleOverrides) {
+		return Permissions.getAllowedPermissionsForNumber(getModifiedPermissionsNumber(user, guild, userOverrides, roleOverrides));
 	}
 
 	/**
@@ -521,17 +631,47 @@ public class PermissionUtils {
 	}
 
 	/**
-	 * Determines if the position of roles1's highest role is greater than the position of roles2's highest role.
+	 * Gets the position of the highest role a user has in a guild.
+	 *
+	 * @param guild The guild to get the user's roles in.
+	 * @param user The user to get the highest role position of.
+	 * @return The position of the user's highest role, or 0 if the user has no roles.
+	 */
+	private static int getHighestRolePosition(IGuild guild, IUser user) {
+		if (user instanceof User)
+			return ((User) user).getHighestRolePositionForGuild(guild);
+
+		return getHighestPosition(guild.getRolesForUser(user));
+	}
+
+	/**
+	 * Gets the position of the highest role in a list of roles.
+	 *
+	 * @param roles The roles to get the highest position of.
+	 * @return The position of the highest role, or 0 if the list is empty.
+	 */
+	private static int getHighestPosition(List<IRole> roles) {
+		int highest = 0;
+		for (IRole role : roles) {
+			if (role.getPosition() > highest)
+				highest = role.getPosition();
+		}
+		return highest;
+	}
+
+	/**
+	 * Gets the unique snowflake IDs of the roles a user has in a guild without copying them where possible. The
+	 * returned array <b>must not</b> be modified.
 	 *
-	 * @param roles1 The list of roles whose highest role's position must be greater.
-	 * @param roles2 The list of roles whose highest role's position must be less.
-	 * @return True if the position of role1s's highest role is greater than the position of roles2's highest role.
+	 * @param guild The guild to get the user's roles in.
+	 * @param user The user to get the roles of.
+	 * @return The IDs of the user's roles.
 	 */
-	private static boolean hasHigherRoles(List<IRole> roles1, List<IRole> roles2) {
-		OptionalInt maxPos1 = roles1.stream().mapToInt(IRole::getPosition).max();
-		OptionalInt maxPos2 = roles2.stream().mapToInt(IRole::getPosition).max();
+	public static long[] getRoleIDs(IGuild guild, IUser user) {
+		if (user instanceof User)
+			return ((User) user).getRoleIDsForGuild(guild.getLongID());
 
-		return (maxPos1.isPresent() ? maxPos1.getAsInt() : 0) > (maxPos2.isPresent() ? maxPos2.getAsInt() : 0);
+		return guild.getRolesForUser(user).stream().mapToLong(IRole::getLongID).toArray();
 	}
 
 	/**
@@ -20,8 +20,9 @@ package sx.blah.discord.util;
 /**
  * Thrown when performing an operation with Discord would result in being ratelimited.
  *
- * <p>This should always be preemptively thrown by Discord4J's request system. However, if the user somehow hits an
- * actual HTTP 429 from Discord, it will also be reported through this exception.
+ * <p>Requests normally wait until their rate limit bucket allows them to be sent, so this is only thrown for requests
+ * made by operations run in the {@link RequestBuffer}. For those it is preemptively thrown when the bucket is exhausted,
+ * and when Discord responds with an actual HTTP 429.
  */
 public class RateLimitException extends RuntimeException {
 
@@ -46,9 +47,9 @@ public class RateLimitException extends RuntimeException {
 	}
 
 	/**
-	 * Gets the HTTP method the rate limit was in response to.
+	 * Gets the route (HTTP method and path) of the bucket the rate limit was in response to.
 	 *
-	 * @return The HTTP method the rate limit was in response to.
+	 * @return The route of the bucket the rate limit was in response to.
 	 */
 	public String getMethod() {
 		return method;
@@ -19,71 +19,122 @@ package sx.blah.discord.util;
 
 import sx.blah.discord.Discord4J;
 import sx.blah.discord.api.internal.DiscordUtils;
+import sx.blah.discord.api.internal.Requests;
 
-import java.util.List;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.StampedLock;
 
 /**
  * A utility class intended to deal with {@link RateLimitException}s by queueing rate-limited operations until they can
  * be completed.
+ *
+ * <p>Requests made by an operation run in the buffer do not wait for their rate limit bucket. They fail with a
+ * {@link RateLimitException} instead, and the operation is retried once the bucket resets, so rate-limited operations
+ * never hold on to the threads of the buffer.
+ *
+ * <p>Requests are carried out with a {@link RequestPriority}. Queued requests of a higher priority are attempted
+ * before those of a lower priority, both initially and when retrying a rate-limited bucket.
  */
 public class RequestBuffer {
 
-	private static final ExecutorService initialExecutor = Executors.newFixedThreadPool(2, DiscordUtils.createDaemonThreadFactory("RequestBuffer Initial Executor"));
-	private static final Map<String, ScheduledExecutorService> requestServices = new ConcurrentHashMap<>();
-	private static final Map<String, List<RequestFuture>> requests = new ConcurrentHashMap<>();
+	/**
+	 * Orders requests by priority, and requests of the same priority by their arrival.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final Comparator<RequestFuture> PRIORITY_ORDER = Comparator.comparing((RequestFuture future) -> future.priority)
+			.thenComparingLong(future -> future.sequence);
+	private static final AtomicLong sequence = new AtomicLong();
+	private static final ExecutorService initialExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+			new PriorityBlockingQueue<>(), DiscordUtils.createDaemonThreadFactory("RequestBuffer Initial Executor"));
+	/**
+	 * Makes the first attempt of interactive requests. Requests of a lower priority may hold the threads of
+	 * {@link #initialExecutor} while they wait for a connection, so interactive requests never queue behind them.
+	 */
+	private static final ExecutorService interactiveExecutor = Executors.newFixedThreadPool(2,
+			DiscordUtils.createDaemonThreadFactory("RequestBuffer Interactive Executor"));
+	/**
+	 * Schedules the retries of every bucket. It only hands retries off to {@link #retryExecutor}, so a single thread
+	 * serves all buckets.
+	 */
+	private static final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(DiscordUtils.createDaemonThreadFactory("RequestBuffer Retry Scheduler"));
+	private static final ExecutorService retryExecutor = Executors.newFixedThreadPool(2, DiscordUtils.createDaemonThreadFactory("RequestBuffer Retry Handler"));
+	/**
+	 * The buckets which have rate-limited requests queued. Buckets are removed once their queue is empty.
+	 */
+	private static final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+	/**
+	 * The number of rate-limited requests which have not completed yet.
+	 */
+	private static final AtomicInteger incompleteRequests = new AtomicInteger();
 
 	/**
-	 * Queues a request.
+	 * Queues a request with the priority of the current thread.
 	 *
 	 * @param request The request to be carried out.
 	 * @param <T> The type of the object returned by the request.
 	 * @return The result of the request.
+	 * @see RequestPriority#current()
 	 */
 	public static <T> RequestFuture<T> request(IRequest<T> request) {
-		final RequestFuture<T> future = new RequestFuture<>(request);
-		initialExecutor.execute(() -> {
+		return request(request, RequestPriority.current());
+	}
+
+	/**
+	 * Queues a request.
+	 *
+	 * @param request The request to be carried out.
+	 * @param priority The priority of the request.
+	 * @param <T> The type of the object returned by the request.
+	 * @return The result of the request.
+	 */
+	public static <T> RequestFuture<T> request(IRequest<T> request, RequestPriority priority) {
+		final RequestFuture<T> future = new RequestFuture<>(request, priority, sequence.getAndIncrement());
+		ExecutorService executor = priority == RequestPriority.INTERACTIVE ? interactiveExecutor : initialExecutor;
+		executor.execute(new PrioritizedTask(future, () -> {
 			try {
 				future.run();
-				if (future.callable.rateLimited && future.getDelay(TimeUnit.MILLISECONDS) >= 0) {
+				if (future.callable.rateLimited) { // A retry which is already due is scheduled immediately
 					Discord4J.LOGGER.debug(LogMarkers.UTIL, "Attempted request rate-limited, queueing retry in {}ms",
-							future.getDelay(TimeUnit.MILLISECONDS));
-
-					if (future.getBucket() != null) {
-						synchronized (requests) {
-							if (future.getBucket() != null) {
-								if (!requests.containsKey(future.getBucket())) {
-									requests.put(future.getBucket(), new CopyOnWriteArrayList<>());
-									requestServices.put(future.getBucket(), Executors.newSingleThreadScheduledExecutor(DiscordUtils.createDaemonThreadFactory("RequestBuffer Retry Handler")));
-									requestServices.get(future.getBucket()).schedule(new RequestRunnable(future.getBucket()), future.getDelay(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
-								}
-
-								requests.get(future.getBucket()).add(future);
-							}
-						}
-					}
+							Math.max(0, future.getDelay(TimeUnit.MILLISECONDS)));
+
+					incompleteRequests.incrementAndGet();
+					queue(future.getBucket(), future);
 				}
 			} catch (Exception e) {
 				Discord4J.LOGGER.error(LogMarkers.UTIL, "Exception caught while attempting to execute a request", e);
 			}
-		});
+		}));
 		return future;
 	}
 
 	/**
-	 * Queues a request.
+	 * Queues a request with the priority of the current thread.
 	 *
 	 * @param request The request to be carried out.
 	 * @return The result of the request.
+	 * @see RequestPriority#current()
 	 */
 	public static RequestFuture<Void> request(IVoidRequest request) {
+		return request(request, RequestPriority.current());
+	}
+
+	/**
+	 * Queues a request.
+	 *
+	 * @param request The request to be carried out.
+	 * @param priority The priority of the request.
+	 * @return The result of the request.
+	 */
+	public static RequestFuture<Void> request(IVoidRequest request, RequestPriority priority) {
 		return request(() -> {
 			request.doRequest();
 			return null;
-		});
+		}, priority);
 	}
 
 	/**
@@ -92,11 +143,7 @@ public class RequestBuffer {
 	 * @return The number of incomplete requests.
 	 */
 	public static int getIncompleteRequestCount() {
-		final AtomicInteger count = new AtomicInteger();
-		synchronized (requests) {
-			requests.values().parallelStream().forEach((requestFutures) -> count.addAndGet(requestFutures.size()));
-		}
-		return count.get();
+		return incompleteRequests.get();
 	}
 
 	/**
@@ -105,19 +152,138 @@ public class RequestBuffer {
 	 * @return The number of requests killed.
 	 */
 	public static int killAllRequests() {
-		final int toKill = getIncompleteRequestCount();
 		//We are ignoring the initialExecutor because those requests haven't been ratelimited (yet)
-		synchronized (requestServices) {
-			requestServices.keySet().parallelStream().distinct().forEach(bucket -> {
-				requestServices.get(bucket).shutdownNow();
-				requestServices.remove(bucket);
-			});
+		int killed = 0;
+		for (String name : buckets.keySet()) {
+			Bucket bucket = buckets.remove(name);
+			if (bucket == null) continue;
+
+			RequestFuture future;
+			while ((future = bucket.queue.poll()) != null) {
+				future.cancel(true);
+				incompleteRequests.decrementAndGet();
+				killed++;
+			}
+		}
+		return killed;
+	}
+
+	/**
+	 * Adds a rate-limited request to the queue of its bucket, scheduling a retry of the bucket if none is pending.
+	 */
+	private static <T> void queue(String name, RequestFuture<T> future) {
+		future.backing = new FutureTask<>(future.callable);
+		Bucket[] toSchedule = new Bucket[1];
+		buckets.compute(name, (key, bucket) -> {
+			if (bucket == null) bucket = new Bucket(key);
+			bucket.queue.add(future);
+			if (!bucket.scheduled) {
+				bucket.scheduled = true;
+				toSchedule[0] = bucket;
+			}
+			return bucket;
+		});
+
+		if (toSchedule[0] != null)
+			schedule(toSchedule[0], future.getDelay(TimeUnit.MILLISECONDS));
+	}
+
+	private static void schedule(Bucket bucket, long delay) {
+		retryScheduler.schedule(() -> retryExecutor.execute(() -> retry(bucket)), Math.max(0, delay), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Retries the requests queued in a bucket. Requests which are rate-limited again are queued for the next retry.
+	 */
+	private static void retry(Bucket bucket) {
+		try {
+			int queued = bucket.queue.size();
+			for (int i = 0; i < queued; i++) {
+				RequestFuture future = bucket.queue.poll();
+				if (future == null) break;
+
+				boolean retried = false;
+				try {
+					if (!future.isCancelled()) {
+						run(future, future::run);
+						if (future.callable.rateLimited) {
+							future.backing = new FutureTask<>(future.callable);
+							bucket.queue.add(future);
+							retried = true;
+						}
+					}
+				} catch (Exception e) {
+					Discord4J.LOGGER.error(LogMarkers.UTIL, "Exception caught while attempting to execute a request", e);
+				} finally {
+					if (!retried) incompleteRequests.decrementAndGet();
+				}
+			}
+		} catch (Exception e) {
+			Discord4J.LOGGER.error(LogMarkers.UTIL, "Exception caught while attempting to retry requests", e);
+		}
+
+		boolean[] reschedule = new boolean[1];
+		buckets.computeIfPresent(bucket.name, (key, current) -> {
+			if (current != bucket) return current; // This bucket was killed and replaced
+			if (bucket.queue.isEmpty()) return null; // Clean up idle buckets
+
+			reschedule[0] = true;
+			return bucket;
+		});
+
+		if (reschedule[0]) {
+			RequestFuture next = bucket.queue.peek();
+			schedule(bucket, next == null ? 0 : next.getDelay(TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * Runs a task of a request with the request's priority, failing its rate-limited requests instead of waiting.
+	 */
+	private static void run(RequestFuture<?> future, Runnable task) {
+		future.priority.run(() -> Requests.throwOnRateLimit(task));
+	}
+
+	/**
+	 * A task of the initial executor, which runs tasks in the order of their requests' priority.
+	 */
+	private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+		private final RequestFuture<?> future;
+		private final Runnable task;
+
+		private PrioritizedTask(RequestFuture<?> future, Runnable task) {
+			this.future = future;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			RequestBuffer.run(future, task);
 		}
-		synchronized (requests) {
-			requests.values().forEach(futures -> futures.forEach(future -> future.cancel(true)));
-			requests.clear();
+
+		@Override
+		public int compareTo(PrioritizedTask other) {
+			return PRIORITY_ORDER.compare(future, other.future);
+		}
+	}
+
+	/**
+	 * The rate-limited requests of a single bucket.
+	 */
+	private static class Bucket {
+
+		private final String name;
+		private final Queue<RequestFuture> queue = new PriorityBlockingQueue<>(11, PRIORITY_ORDER);
+		/**
+		 * Whether a retry of this bucket is scheduled. Only accessed while the bucket is being computed in
+		 * {@link #buckets}.
+		 */
+		private boolean scheduled;
+
+		private Bucket(String name) {
+			this.name = name;
 		}
-		return toKill;
 	}
 
 	/**
@@ -164,10 +330,14 @@ public class RequestBuffer {
 		private final IRequest<T> request;
 		private final RequestCallable<T> callable;
 		private volatile FutureTask<T> backing;
+		private final RequestPriority priority;
+		private final long sequence;
 		final StampedLock lock = new StampedLock();
 
-		RequestFuture(IRequest<T> request) {
+		RequestFuture(IRequest<T> request, RequestPriority priority, long sequence) {
 			this.request = request;
+			this.priority = priority;
+			this.sequence = sequence;
 			this.callable = new RequestCallable<>(request, this);
 			backing = new FutureTask<>(callable);
 		}
@@ -186,6 +356,15 @@ public class RequestBuffer {
 			return unit.convert(callable.timeForNextRequest-System.currentTimeMillis(), TimeUnit.MILLISECONDS);
 		}
 
+		/**
+		 * Gets the priority of the request.
+		 *
+		 * @return The priority of the request.
+		 */
+		public RequestPriority getPriority() {
+			return priority;
+		}
+
 		/**
 		 * Gets the bucket the request was ratelimited for.
 		 *
@@ -292,7 +471,7 @@ public class RequestBuffer {
 				} catch (RateLimitException e) {
 					firstAttempt = false;
 					timeForNextRequest = System.currentTimeMillis()+e.getRetryDelay();
-					bucket = e.getMethod();
+					bucket = e.getMethod() == null ? "" : e.getMethod(); // Exceptions thrown by the operation itself may lack a bucket
 					rateLimited = true;
 				} catch (Exception e) {
 					Discord4J.LOGGER.warn(LogMarkers.UTIL, "RequestBuffer handled an uncaught exception!", e);
@@ -305,56 +484,4 @@ public class RequestBuffer {
 			}
 		}
 	}
-
-	/**
-	 * Manages request futures to ensure it executes the request eventually.
-	 */
-	private static class RequestRunnable implements Runnable {
-
-		private final String bucket;
-
-		private RequestRunnable(String bucket) {
-			this.bucket = bucket;
-		}
-
-		@Override
-		public void run() {
-			synchronized (requests) {
-				try {
-					List<RequestFuture> futures = requests.get(bucket);
-
-					if (futures != null) {
-						List<RequestFuture> futuresToRetry = new CopyOnWriteArrayList<>();
-
-						futures.forEach((RequestFuture future) -> {
-							try {
-								if (!future.isCancelled()) {
-									future.run();
-									if (future.callable.rateLimited) {
-										future.backing = new FutureTask<>(future.callable);
-										futuresToRetry.add(future);
-									}
-								}
-							} catch (Exception e) {
-								Discord4J.LOGGER.error(LogMarkers.UTIL, "Exception caught while attempting to execute a request", e);
-							}
-						});
-
-						if (futuresToRetry.size() > 0) {
-							long delay = Math.max(0, futuresToRetry.get(0).getDelay(TimeUnit.MILLISECONDS));
-							requests.replace(bucket, futuresToRetry);
-							synchronized (requestServices) {
-								requestServices.get(bucket).schedule(new RequestRunnable(bucket), delay, TimeUnit.MILLISECONDS);
-							}
-						} else {
-							requests.remove(bucket);
-							requestServices.remove(bucket).shutdownNow();
-						}
-					}
-				} catch (Exception e) {
-					Discord4J.LOGGER.error(LogMarkers.UTIL, "Exception caught while attempting to retry requests", e);
-				}
-			}
-		}
-	}
 }
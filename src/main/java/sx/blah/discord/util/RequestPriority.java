@@ -0,0 +1,86 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.util;
+
+import java.util.function.Supplier;
+
+/**
+ * The priority of HTTP requests to Discord. When requests compete for a rate limit bucket or a connection, those with
+ * a higher priority are sent first.
+ *
+ * <p>Requests take the priority of the thread they are made on, which is {@link #INTERACTIVE} unless changed with
+ * {@link #run(Runnable)} or {@link #get(Supplier)}. Requests made in callbacks of futures run on other threads and
+ * therefore use the default priority.
+ */
+public enum RequestPriority {
+
+	/**
+	 * Requests a user is waiting on, such as replies to commands. Some connections are reserved for this priority.
+	 */
+	INTERACTIVE,
+	/**
+	 * Moderation actions, such as bans and message deletions.
+	 */
+	MODERATION,
+	/**
+	 * Background work, such as bulk role updates.
+	 */
+	BULK;
+
+	/**
+	 * The priority of requests made on each thread.
+	 */
+	private static final ThreadLocal<RequestPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+	/**
+	 * Gets the priority of requests made on the current thread.
+	 *
+	 * @return The priority of requests made on the current thread.
+	 */
+	public static RequestPriority current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Runs an action whose requests are made with this priority.
+	 *
+	 * @param action The action to run.
+	 */
+	public void run(Runnable action) {
+		get(() -> {
+			action.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Runs an action whose requests are made with this priority.
+	 *
+	 * @param action The action to run.
+	 * @param <T> The type of the result of the action.
+	 * @return The result of the action.
+	 */
+	public <T> T get(Supplier<T> action) {
+		RequestPriority previous = CURRENT.get();
+		CURRENT.set(this);
+		try {
+			return action.get();
+		} finally {
+			CURRENT.set(previous);
+		}
+	}
+}
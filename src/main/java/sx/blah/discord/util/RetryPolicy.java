@@ -0,0 +1,118 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Determines how often and after which delays HTTP requests to Discord are retried after a 5xx or Cloudflare error.
+ *
+ * <p>Delays use exponential backoff with full jitter: the delay before a retry is a random time between 0 and
+ * <code>baseDelay * 2^attempt</code>, capped at the maximum delay.
+ */
+public class RetryPolicy {
+
+	/**
+	 * The policy used by default.
+	 */
+	public static final RetryPolicy DEFAULT = new RetryPolicy(5, 250, 10000);
+
+	/**
+	 * A policy which never retries.
+	 */
+	public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+	/**
+	 * The maximum number of retries.
+	 */
+	private final int maxRetries;
+
+	/**
+	 * The upper bound of the delay before the first retry in milliseconds.
+	 */
+	private final long baseDelay;
+
+	/**
+	 * The upper bound of any delay in milliseconds.
+	 */
+	private final long maxDelay;
+
+	/**
+	 * @param maxRetries The maximum number of retries.
+	 * @param baseDelay The upper bound of the delay before the first retry in milliseconds.
+	 * @param maxDelay The upper bound of any delay in milliseconds.
+	 */
+	public RetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+		if (maxRetries < 0 || baseDelay < 0 || maxDelay < baseDelay)
+			throw new IllegalArgumentException("Invalid retry policy!");
+
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Gets the maximum number of retries.
+	 *
+	 * @return The maximum number of retries.
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * Gets the upper bound of the delay before the first retry in milliseconds.
+	 *
+	 * @return The base delay.
+	 */
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+
+	/**
+	 * Gets the upper bound of any delay in milliseconds.
+	 *
+	 * @return The maximum delay.
+	 */
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * Gets whether a request should be retried after the given number of retries.
+	 *
+	 * @param retries The number of retries which were already made.
+	 * @return Whether the request should be retried.
+	 */
+	public boolean shouldRetry(int retries) {
+		return retries < maxRetries;
+	}
+
+	/**
+	 * Gets a random delay before the next retry.
+	 *
+	 * @param retries The number of retries which were already made.
+	 * @return The delay in milliseconds.
+	 */
+	public long getDelay(int retries) {
+		long bound = retries < Long.SIZE - 1 && baseDelay <= maxDelay >> retries ? baseDelay << retries : maxDelay;
+		if (bound == 0) return 0;
+		return bound == Long.MAX_VALUE // bound + 1 would overflow
+				? ThreadLocalRandom.current().nextLong(bound)
+				: ThreadLocalRandom.current().nextLong(bound + 1);
+	}
+}
@@ -24,13 +24,17 @@ import com.koloboke.function.LongObjPredicate;
 import sx.blah.discord.api.internal.DiscordClientImpl;
 import sx.blah.discord.handle.obj.IIDLinkedObject;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -55,6 +59,16 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 	 */
 	private volatile ICacheDelegate<T> delegate;
 
+	/**
+	 * The index of the names of the stored objects (or null if their names aren't indexed).
+	 */
+	private volatile NameIndex names;
+
+	/**
+	 * Gets the name of a stored object for {@link #names}.
+	 */
+	private volatile Function<? super T, String> nameOf;
+
 	public Cache(ICacheDelegate<T> delegate) {
 		this.delegate = delegate;
 	}
@@ -63,6 +77,21 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 		this(client.getCacheProvider().provide(self));
 	}
 
+	/**
+	 * Creates a cache which is owned by a single entity and is only expected to ever hold a handful of objects. For
+	 * example, the per-guild state of a guild member.
+	 *
+	 * @param client The client the cache belongs to.
+	 * @param self The class of the type the cache stores.
+	 * @param <T> The type of object stored by the cache.
+	 * @return The new cache.
+	 *
+	 * @see ICacheDelegateProvider#provideCompact(Class)
+	 */
+	public static <T extends IIDLinkedObject> Cache<T> compact(DiscordClientImpl client, Class<T> self) {
+		return new Cache<>(client.getCacheProvider().provideCompact(self));
+	}
+
 	/**
 	 * Sets the cache's delegate.
 	 *
@@ -74,6 +103,37 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 		this.delegate = delegate;
 	}
 
+	/**
+	 * Indexes the names of the objects in the cache. From then on, objects are added to the index when they are put
+	 * into the cache and removed from it when they are removed from the cache. Renames of the stored objects must be
+	 * reported with {@link NameIndex#rename(String, String, long)}.
+	 *
+	 * @param names The index to keep up to date.
+	 * @param nameOf Gets the name of an object.
+	 */
+	public void indexNames(NameIndex names, Function<? super T, String> nameOf) {
+		this.nameOf = nameOf;
+		this.names = names;
+		delegate.forEach((id, obj) -> names.add(nameOf.apply(obj), id));
+	}
+
+	/**
+	 * Updates the name index after an object was stored or removed.
+	 *
+	 * @param stored The object which was put into the cache (or null).
+	 * @param replaced The object which was replaced or removed (or null).
+	 */
+	private void index(T stored, T replaced) {
+		NameIndex names = this.names;
+		if (names == null)
+			return;
+
+		if (replaced != null)
+			names.remove(nameOf.apply(replaced), replaced.getLongID());
+		if (stored != null && delegate.contains(stored.getLongID())) // Ignoring delegates store nothing
+			names.add(nameOf.apply(stored), stored.getLongID());
+	}
+
 	/**
 	 * Gets the cache's delegate.
 	 *
@@ -194,7 +254,9 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 	 * @return The previous object that had the same ID or null if there was not one.
 	 */
 	public T put(T value) {
-		return delegate.put(value).orElse(null);
+		T replaced = delegate.put(value).orElse(null);
+		index(value, replaced);
+		return replaced;
 	}
 
 	/**
@@ -232,15 +294,18 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 	 * @return The object that was removed.
 	 */
 	public T remove(Object obj) {
+		T removed;
 		if (obj instanceof String) {
-			return delegate.remove((String) obj).orElse(null);
+			removed = delegate.remove((String) obj).orElse(null);
 		} else if (obj instanceof Long) {
-			return delegate.remove((Long) obj).orElse(null);
+			removed = delegate.remove((Long) obj).orElse(null);
 		} else if (obj instanceof IIDLinkedObject) {
-			return delegate.remove((T) obj).orElse(null);
+			removed = delegate.remove((T) obj).orElse(null);
 		} else {
 			return null;
 		}
+		index(null, removed);
+		return removed;
 	}
 
 	/**
@@ -250,7 +315,9 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 	 * @return The object that was removed.
 	 */
 	public T remove(long key) {
-		return delegate.remove(key).orElse(null);
+		T removed = delegate.remove(key).orElse(null);
+		index(null, removed);
+		return removed;
 	}
 
 	/**
@@ -270,7 +337,12 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 	 * @return Any objects that were replaced by the operation.
 	 */
 	public Collection<T> putAll(Collection<T> objs) {
-		return delegate.putAll(objs);
+		Collection<T> replaced = delegate.putAll(objs);
+		if (names != null) {
+			replaced.forEach(obj -> index(null, obj));
+			objs.forEach(obj -> index(obj, null));
+		}
+		return replaced;
 	}
 
 	/**
@@ -278,6 +350,9 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 	 */
 	public void clear() {
 		delegate.clear();
+		NameIndex names = this.names;
+		if (names != null)
+			names.clear();
 	}
 
 	/**
@@ -390,6 +465,10 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 		 * The lock used for read and write operations.
 		 */
 		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		/**
+		 * The statistics lock contention is reported to, or null if statistics are disabled.
+		 */
+		private volatile CacheStats stats;
 
 		public MapCacheDelegate() {
 			this(LongMap.newMap());
@@ -399,9 +478,31 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 			this.backing = backing;
 		}
 
+		@Override
+		public void setStats(CacheStats stats) {
+			this.stats = stats;
+		}
+
+		/**
+		 * Acquires the given lock, recording the time spent waiting for it if it was contended and statistics are
+		 * enabled.
+		 *
+		 * @param toAcquire The lock to acquire.
+		 */
+		private void acquire(Lock toAcquire) {
+			CacheStats stats = this.stats;
+			if (stats == null) {
+				toAcquire.lock();
+			} else if (!toAcquire.tryLock()) {
+				long start = System.nanoTime();
+				toAcquire.lock();
+				stats.recordLockWait(System.nanoTime() - start);
+			}
+		}
+
 		@Override
 		public Optional<T> retrieve(long id) {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return Optional.ofNullable(backing.get(id));
 			} finally {
@@ -411,7 +512,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public Optional<T> put(T obj) {
-			lock.writeLock().lock();
+			acquire(lock.writeLock());
 			try {
 				return Optional.ofNullable(backing.put(obj.getLongID(), obj));
 			} finally {
@@ -421,7 +522,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public Optional<T> remove(long id) {
-			lock.writeLock().lock();
+			acquire(lock.writeLock());
 			try {
 				return Optional.ofNullable(backing.remove(id));
 			} finally {
@@ -431,7 +532,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public Collection<T> clear() {
-			lock.writeLock().lock();
+			acquire(lock.writeLock());
 			try {
 				Collection<T> cleared = values();
 				backing.clear();
@@ -443,7 +544,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public boolean contains(long id) {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return backing.containsKey(id);
 			} finally {
@@ -453,7 +554,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public int size() {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return backing.size();
 			} finally {
@@ -463,7 +564,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public Iterator<T> iterator() {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return backing.values().iterator();
 			} finally {
@@ -473,7 +574,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public LongSet longIDs() {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return backing.keySet();
 			} finally {
@@ -483,7 +584,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public Collection<T> values() {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return backing.values();
 			} finally {
@@ -498,7 +599,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public LongMap<T> mapCopy() {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return LongMap.copyMap(backing);
 			} finally {
@@ -508,7 +609,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public void forEach(LongObjConsumer<? super T> action) {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				backing.forEach(action);
 			} finally {
@@ -518,7 +619,7 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 
 		@Override
 		public boolean forEachWhile(LongObjPredicate<? super T> predicate) {
-			lock.readLock().lock();
+			acquire(lock.readLock());
 			try {
 				return backing.forEachWhile(predicate);
 			} finally {
@@ -541,6 +642,178 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 		}
 	}
 
+	/**
+	 * A cache delegate which is backed by a single copy-on-write array of values sorted by their IDs.
+	 *
+	 * <p>This is intended for caches which only ever hold a handful of objects, such as the per-guild state of a
+	 * guild member. Reads are lock-free binary searches and the delegate itself carries no more than one small array,
+	 * making it far cheaper than a {@link MapCacheDelegate} when there are many such caches.
+	 */
+	public static class ArrayCacheDelegate<T extends IIDLinkedObject> implements ICacheDelegate<T> {
+
+		private static final IIDLinkedObject[] EMPTY = new IIDLinkedObject[0];
+
+		/**
+		 * The stored values, sorted by their IDs. The array is never mutated once it is published.
+		 */
+		private volatile IIDLinkedObject[] values;
+
+		public ArrayCacheDelegate() {
+			this(EMPTY);
+		}
+
+		private ArrayCacheDelegate(IIDLinkedObject[] values) {
+			this.values = values;
+		}
+
+		/**
+		 * Searches the given array for the given ID.
+		 *
+		 * @param array The array to search.
+		 * @param id The ID to search for.
+		 * @return The index of the ID or <code>-(insertion point) - 1</code> if it is not present.
+		 */
+		private static int indexOf(IIDLinkedObject[] array, long id) {
+			int low = 0;
+			int high = array.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				long midID = array[mid].getLongID();
+				if (midID < id) {
+					low = mid + 1;
+				} else if (midID > id) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Optional<T> retrieve(long id) {
+			IIDLinkedObject[] array = values;
+			int index = indexOf(array, id);
+			return index < 0 ? Optional.empty() : Optional.of((T) array[index]);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public synchronized Optional<T> put(T obj) {
+			IIDLinkedObject[] array = values;
+			int index = indexOf(array, obj.getLongID());
+			if (index >= 0) {
+				IIDLinkedObject[] updated = array.clone();
+				updated[index] = obj;
+				values = updated;
+				return Optional.of((T) array[index]);
+			}
+
+			int insertion = -(index + 1);
+			IIDLinkedObject[] updated = new IIDLinkedObject[array.length + 1];
+			System.arraycopy(array, 0, updated, 0, insertion);
+			updated[insertion] = obj;
+			System.arraycopy(array, insertion, updated, insertion + 1, array.length - insertion);
+			values = updated;
+			return Optional.empty();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public synchronized Optional<T> remove(long id) {
+			IIDLinkedObject[] array = values;
+			int index = indexOf(array, id);
+			if (index < 0)
+				return Optional.empty();
+
+			if (array.length == 1) {
+				values = EMPTY;
+			} else {
+				IIDLinkedObject[] updated = new IIDLinkedObject[array.length - 1];
+				System.arraycopy(array, 0, updated, 0, index);
+				System.arraycopy(array, index + 1, updated, index, array.length - index - 1);
+				values = updated;
+			}
+			return Optional.of((T) array[index]);
+		}
+
+		@Override
+		public synchronized Collection<T> clear() {
+			Collection<T> cleared = values();
+			values = EMPTY;
+			return cleared;
+		}
+
+		@Override
+		public boolean contains(long id) {
+			return indexOf(values, id) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return values().iterator();
+		}
+
+		@Override
+		public LongSet longIDs() {
+			return mapCopy().keySet();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Collection<T> values() {
+			return Collections.unmodifiableList(Arrays.asList((T[]) values));
+		}
+
+		@Override
+		public ICacheDelegate<T> copy() {
+			return new ArrayCacheDelegate<>(values);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public LongMap<T> mapCopy() {
+			LongMap<T> map = LongMap.newMap();
+			for (IIDLinkedObject value : values)
+				map.put(value.getLongID(), (T) value);
+			return map;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void forEach(LongObjConsumer<? super T> action) {
+			for (IIDLinkedObject value : values)
+				action.accept(value.getLongID(), (T) value);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean forEachWhile(LongObjPredicate<? super T> predicate) {
+			for (IIDLinkedObject value : values) {
+				if (!predicate.test(value.getLongID(), (T) value))
+					return false;
+			}
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <Z> Z findResult(LongObjFunction<? super T, ? extends Z> function) {
+			for (IIDLinkedObject value : values) {
+				Z result = function.apply(value.getLongID(), (T) value);
+				if (result != null)
+					return result;
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * A cache delegate which stores nothing.
 	 */
@@ -672,10 +945,141 @@ public final class Cache<T extends IIDLinkedObject> implements Iterable<T> {
 			return null;
 		}
 	}
+
+	/**
+	 * A cache delegate which records every lookup, put and remove into a {@link CacheStats} before forwarding it to
+	 * another delegate.
+	 *
+	 * @see CacheStatistics#instrument(ICacheDelegateProvider)
+	 */
+	public static class InstrumentedCacheDelegate<T extends IIDLinkedObject> implements ICacheDelegate<T> {
+
+		/**
+		 * The delegate operations are forwarded to.
+		 */
+		private final ICacheDelegate<T> delegate;
+		/**
+		 * The statistics operations are recorded into.
+		 */
+		private final CacheStats stats;
+		/**
+		 * The number of objects in this cache, as recorded into {@link #stats} (or null if this cache isn't tracked).
+		 */
+		private final AtomicInteger size;
+
+		public InstrumentedCacheDelegate(ICacheDelegate<T> delegate, CacheStats stats) {
+			this(delegate, stats, true);
+		}
+
+		/**
+		 * @param delegate The delegate operations are forwarded to.
+		 * @param stats The statistics operations are recorded into.
+		 * @param tracked Whether the objects this cache still holds are subtracted from the size of the statistics once
+		 * it is garbage collected. Caches which aren't tracked must be emptied by their owner when they are dropped.
+		 */
+		public InstrumentedCacheDelegate(ICacheDelegate<T> delegate, CacheStats stats, boolean tracked) {
+			this.delegate = delegate;
+			this.stats = stats;
+			this.size = tracked ? stats.track(this) : null;
+			delegate.setStats(stats);
+		}
+
+		@Override
+		public Optional<T> retrieve(long id) {
+			Optional<T> result = delegate.retrieve(id);
+			stats.recordGet(result.isPresent());
+			return result;
+		}
+
+		@Override
+		public Optional<T> put(T obj) {
+			Optional<T> previous = delegate.put(obj);
+			stats.recordPut(size, !previous.isPresent());
+			return previous;
+		}
+
+		@Override
+		public Optional<T> remove(long id) {
+			Optional<T> removed = delegate.remove(id);
+			stats.recordRemove(size, removed.isPresent());
+			return removed;
+		}
+
+		@Override
+		public Collection<T> clear() {
+			int count = delegate.size();
+			Collection<T> cleared = delegate.clear();
+			stats.recordClear(size, count);
+			return cleared;
+		}
+
+		@Override
+		public boolean contains(long id) {
+			boolean contains = delegate.contains(id);
+			stats.recordGet(contains);
+			return contains;
+		}
+
+		@Override
+		public int size() {
+			return delegate.size();
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return delegate.iterator();
+		}
+
+		@Override
+		public LongSet longIDs() {
+			return delegate.longIDs();
+		}
+
+		@Override
+		public Collection<T> values() {
+			return delegate.values();
+		}
+
+		/**
+		 * Copies the wrapped delegate. Copies are snapshots which are not recorded into the statistics.
+		 *
+		 * @return A copy of the wrapped delegate.
+		 */
+		@Override
+		public ICacheDelegate<T> copy() {
+			return delegate.copy();
+		}
+
+		@Override
+		public LongMap<T> mapCopy() {
+			return delegate.mapCopy();
+		}
+
+		@Override
+		public void forEach(LongObjConsumer<? super T> action) {
+			delegate.forEach(action);
+		}
+
+		@Override
+		public boolean forEachWhile(LongObjPredicate<? super T> predicate) {
+			return delegate.forEachWhile(predicate);
+		}
+
+		@Override
+		public <Z> Z findResult(LongObjFunction<? super T, ? extends Z> function) {
+			return delegate.findResult(function);
+		}
+
+		@Override
+		public void setStats(CacheStats stats) {
+			delegate.setStats(stats);
+		}
+	}
 }
 
 /**
- * The default cache delegate provider used by Discord4J. Always provides a {@link Cache.MapCacheDelegate}.
+ * The default cache delegate provider used by Discord4J. Provides a {@link Cache.MapCacheDelegate} for regular caches
+ * and a {@link Cache.ArrayCacheDelegate} for compact caches.
  */
 class DefaultCacheDelegateProvider implements ICacheDelegateProvider {
 
@@ -683,6 +1087,11 @@ class DefaultCacheDelegateProvider implements ICacheDelegateProvider {
 	public <T extends IIDLinkedObject> ICacheDelegate<T> provide(Class<T> clazz) {
 		return new Cache.MapCacheDelegate<>();
 	}
+
+	@Override
+	public <T extends IIDLinkedObject> ICacheDelegate<T> provideCompact(Class<T> clazz) {
+		return new Cache.ArrayCacheDelegate<>();
+	}
 }
 
 /**
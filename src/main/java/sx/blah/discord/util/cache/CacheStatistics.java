@@ -0,0 +1,155 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sx.blah.discord.util.cache;
+
+import sx.blah.discord.Discord4J;
+import sx.blah.discord.handle.obj.IIDLinkedObject;
+import sx.blah.discord.util.LogMarkers;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link CacheStats} of a single client, grouped by the class of the objects stored by the caches.
+ *
+ * <p>Every cache of a client which stores the same type of object shares one {@link CacheStats}. For example, the
+ * caches of every guild's channels are all recorded in the statistics for {@link sx.blah.discord.handle.obj.IChannel}.
+ */
+public class CacheStatistics {
+
+	/**
+	 * Used to give every client's MBeans a unique name.
+	 */
+	private static final AtomicInteger CLIENT_COUNTER = new AtomicInteger();
+
+	/**
+	 * The statistics, keyed by the class of the stored objects.
+	 */
+	private final Map<Class<?>, CacheStats> stats = new ConcurrentHashMap<>();
+	/**
+	 * The id used in the MBean names of these statistics, or -1 if they aren't registered with JMX.
+	 */
+	private final int clientId;
+	/**
+	 * Whether the MBeans are currently registered. Guarded by {@link #stats}.
+	 */
+	private boolean registered = true;
+
+	/**
+	 * @param registerMBeans Whether each {@link CacheStats} should be registered with the platform MBean server.
+	 */
+	public CacheStatistics(boolean registerMBeans) {
+		this.clientId = registerMBeans ? CLIENT_COUNTER.getAndIncrement() : -1;
+	}
+
+	/**
+	 * Gets the statistics for caches which store objects of the given class, creating them if they don't exist yet.
+	 *
+	 * @param clazz The class of the stored objects.
+	 * @return The statistics for the class.
+	 */
+	public CacheStats forClass(Class<?> clazz) {
+		return stats.computeIfAbsent(clazz, this::create);
+	}
+
+	/**
+	 * Gets an unmodifiable view of every recorded statistic, keyed by the class of the stored objects.
+	 *
+	 * @return The recorded statistics.
+	 */
+	public Map<Class<?>, CacheStats> getAll() {
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * Wraps a cache delegate provider so every delegate it provides records into these statistics.
+	 *
+	 * @param provider The provider to wrap.
+	 * @return The instrumenting provider.
+	 */
+	public ICacheDelegateProvider instrument(ICacheDelegateProvider provider) {
+		return new ICacheDelegateProvider() {
+			@Override
+			public <T extends IIDLinkedObject> ICacheDelegate<T> provide(Class<T> clazz) {
+				return new Cache.InstrumentedCacheDelegate<>(provider.provide(clazz), forClass(clazz));
+			}
+
+			@Override
+			public <T extends IIDLinkedObject> ICacheDelegate<T> provideCompact(Class<T> clazz) {
+				// There is a compact cache per member, so they are only aggregated into the statistics of their type
+				return new Cache.InstrumentedCacheDelegate<>(provider.provideCompact(clazz), forClass(clazz), false);
+			}
+		};
+	}
+
+	/**
+	 * Registers the MBeans of every statistic with the platform MBean server again after they were unregistered. This
+	 * has no effect if the statistics aren't registered with JMX or are registered already.
+	 */
+	public void registerMBeans() {
+		synchronized (stats) {
+			if (clientId == -1 || registered) return;
+			registered = true;
+			stats.values().forEach(this::register);
+		}
+	}
+
+	/**
+	 * Unregisters the MBeans of every statistic from the platform MBean server. The statistics themselves are still
+	 * recorded.
+	 */
+	public void unregisterMBeans() {
+		synchronized (stats) {
+			if (clientId == -1 || !registered) return;
+			registered = false;
+			for (CacheStats cacheStats : stats.values()) {
+				try {
+					ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(cacheStats));
+				} catch (Exception e) {
+					Discord4J.LOGGER.warn(LogMarkers.UTIL, "Unable to unregister cache statistics MBean for {}", cacheStats.getEntityName(), e);
+				}
+			}
+		}
+	}
+
+	private CacheStats create(Class<?> clazz) {
+		CacheStats created = new CacheStats(clazz);
+		synchronized (stats) {
+			if (clientId != -1 && registered)
+				register(created);
+		}
+		return created;
+	}
+
+	private void register(CacheStats cacheStats) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(cacheStats, getObjectName(cacheStats));
+		} catch (Exception e) {
+			Discord4J.LOGGER.warn(LogMarkers.UTIL, "Unable to register cache statistics MBean for {}", cacheStats.getEntityName(), e);
+		}
+	}
+
+	private ObjectName getObjectName(CacheStats cacheStats) throws MalformedObjectNameException {
+		return new ObjectName("sx.blah.discord:type=CacheStats,client=" + clientId + ",name=" + cacheStats.getEntityName());
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sx.blah.discord.util.cache;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage statistics of every cache which stores objects of a single entity class.
+ *
+ * <p>Statistics are only recorded when they are enabled with
+ * {@link sx.blah.discord.api.ClientBuilder#withCacheStatistics(boolean)}. All counters except the size are cumulative
+ * since the client was built. The size is the number of objects in the caches which are still in use. The objects of a
+ * regular cache which is dropped without being cleared (such as the message cache of a deleted channel) are subtracted
+ * once the cache is garbage collected. Compact caches are far too numerous to be tracked like this, so they are only
+ * aggregated into the counters of their type, and their owners empty them when they are dropped.
+ *
+ * @see CacheStatistics
+ */
+public class CacheStats implements CacheStatsMBean {
+
+	/**
+	 * The class of the objects stored by the caches.
+	 */
+	private final Class<?> entityClass;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder puts = new LongAdder();
+	private final LongAdder removes = new LongAdder();
+	private final LongAdder size = new LongAdder();
+	private final LongAdder lockWaits = new LongAdder();
+	private final LongAdder lockWaitNanos = new LongAdder();
+
+	/**
+	 * The caches which are tracked until they are garbage collected.
+	 */
+	private final Set<TrackedCache> tracked = ConcurrentHashMap.newKeySet();
+	/**
+	 * The tracked caches which were garbage collected and whose objects were not subtracted from the size yet.
+	 */
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+	public CacheStats(Class<?> entityClass) {
+		this.entityClass = entityClass;
+	}
+
+	/**
+	 * Gets the class of the objects stored by the caches the statistics are recorded for.
+	 *
+	 * @return The class of the stored objects.
+	 */
+	public Class<?> getEntityClass() {
+		return entityClass;
+	}
+
+	@Override
+	public String getEntityName() {
+		return entityClass.getSimpleName();
+	}
+
+	@Override
+	public long getGets() {
+		return getHits() + getMisses();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public long getPuts() {
+		return puts.sum();
+	}
+
+	@Override
+	public long getRemoves() {
+		return removes.sum();
+	}
+
+	@Override
+	public long getSize() {
+		subtractCollected();
+		return size.sum();
+	}
+
+	@Override
+	public long getLockWaits() {
+		return lockWaits.sum();
+	}
+
+	@Override
+	public long getLockWaitNanos() {
+		return lockWaitNanos.sum();
+	}
+
+	/**
+	 * Records a lookup.
+	 *
+	 * @param hit Whether the lookup found an object.
+	 */
+	void recordGet(boolean hit) {
+		if (hit) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+	}
+
+	/**
+	 * Starts tracking a cache, so the objects it still holds are subtracted from the size once it is garbage collected.
+	 *
+	 * @param cache The cache to track.
+	 * @return The number of objects in the cache, which must be kept up to date by the cache.
+	 */
+	AtomicInteger track(Object cache) {
+		subtractCollected();
+		TrackedCache trackedCache = new TrackedCache(cache, collected);
+		tracked.add(trackedCache);
+		return trackedCache.size;
+	}
+
+	/**
+	 * Subtracts the objects of the tracked caches which were garbage collected from the size.
+	 */
+	private void subtractCollected() {
+		Reference<?> reference;
+		while ((reference = collected.poll()) != null) {
+			TrackedCache trackedCache = (TrackedCache) reference;
+			tracked.remove(trackedCache);
+			size.add(-trackedCache.size.get());
+		}
+	}
+
+	/**
+	 * Records a put.
+	 *
+	 * @param cacheSize The size of the cache the object was put into (or null if the cache isn't tracked).
+	 * @param added Whether the put added a new object instead of replacing an existing one.
+	 */
+	void recordPut(AtomicInteger cacheSize, boolean added) {
+		puts.increment();
+		if (added) {
+			if (cacheSize != null) cacheSize.incrementAndGet();
+			size.increment();
+		}
+	}
+
+	/**
+	 * Records a remove.
+	 *
+	 * @param cacheSize The size of the cache the object was removed from (or null if the cache isn't tracked).
+	 * @param removed Whether an object was actually removed.
+	 */
+	void recordRemove(AtomicInteger cacheSize, boolean removed) {
+		removes.increment();
+		if (removed) {
+			if (cacheSize != null) cacheSize.decrementAndGet();
+			size.decrement();
+		}
+	}
+
+	/**
+	 * Records a cache being cleared.
+	 *
+	 * @param cacheSize The size of the cache which was cleared (or null if the cache isn't tracked).
+	 * @param cleared The number of objects which were removed.
+	 */
+	void recordClear(AtomicInteger cacheSize, int cleared) {
+		removes.add(cleared);
+		if (cacheSize != null) cacheSize.addAndGet(-cleared);
+		size.add(-cleared);
+	}
+
+	/**
+	 * Records time an operation spent waiting to acquire a lock. Cache delegates which use locks should report
+	 * contended acquisitions through this method.
+	 *
+	 * @param nanos The time spent waiting in nanoseconds.
+	 */
+	public void recordLockWait(long nanos) {
+		lockWaits.increment();
+		lockWaitNanos.add(nanos);
+	}
+
+	/**
+	 * The number of objects in a cache, which is kept after the cache itself was garbage collected.
+	 */
+	private static final class TrackedCache extends PhantomReference<Object> {
+
+		final AtomicInteger size = new AtomicInteger();
+
+		TrackedCache(Object cache, ReferenceQueue<Object> queue) {
+			super(cache, queue);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getEntityName() + "{size=" + getSize() + ", hits=" + getHits() + ", misses=" + getMisses()
+				+ ", puts=" + getPuts() + ", removes=" + getRemoves() + ", lockWaits=" + getLockWaits()
+				+ ", lockWaitNanos=" + getLockWaitNanos() + "}";
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sx.blah.discord.util.cache;
+
+/**
+ * The JMX management interface of {@link CacheStats}.
+ */
+public interface CacheStatsMBean {
+
+	/**
+	 * Gets the simple name of the class of the objects stored by the caches the statistics are recorded for.
+	 *
+	 * @return The name of the stored entity class.
+	 */
+	String getEntityName();
+
+	/**
+	 * Gets the number of lookups performed on the caches.
+	 *
+	 * @return The number of lookups.
+	 */
+	long getGets();
+
+	/**
+	 * Gets the number of lookups which found an object.
+	 *
+	 * @return The number of hits.
+	 */
+	long getHits();
+
+	/**
+	 * Gets the number of lookups which did not find an object.
+	 *
+	 * @return The number of misses.
+	 */
+	long getMisses();
+
+	/**
+	 * Gets the number of objects put into the caches.
+	 *
+	 * @return The number of puts.
+	 */
+	long getPuts();
+
+	/**
+	 * Gets the number of objects removed from the caches.
+	 *
+	 * @return The number of removes.
+	 */
+	long getRemoves();
+
+	/**
+	 * Gets the total number of objects currently stored in the caches.
+	 *
+	 * @return The total number of stored objects.
+	 */
+	long getSize();
+
+	/**
+	 * Gets the number of times an operation on the caches had to wait for a lock.
+	 *
+	 * @return The number of contended lock acquisitions.
+	 */
+	long getLockWaits();
+
+	/**
+	 * Gets the total time operations on the caches spent waiting for locks.
+	 *
+	 * @return The total lock wait time in nanoseconds.
+	 */
+	long getLockWaitNanos();
+}
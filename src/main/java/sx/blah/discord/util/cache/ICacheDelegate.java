@@ -204,6 +204,15 @@ public interface ICacheDelegate<T extends IIDLinkedObject> extends RandomAccess,
 	 */
 	<Z> Z findResult(LongObjFunction<? super T, ? extends Z> function);
 
+	/**
+	 * Sets the statistics the delegate should report its internal measurements to, such as time spent waiting for
+	 * locks. This is called when cache statistics are enabled. Lookups, puts and removes are already recorded by the
+	 * caller, so delegates which have nothing else to report can ignore this.
+	 *
+	 * @param stats The statistics to report to.
+	 */
+	default void setStats(CacheStats stats) {}
+
 	@Override
 	default Spliterator<T> spliterator() {
 		return Spliterators.spliterator(values(), 0);
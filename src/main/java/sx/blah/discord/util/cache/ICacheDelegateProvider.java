@@ -32,4 +32,18 @@ public interface ICacheDelegateProvider {
 	 * @return The created cache delegate.
 	 */
 	<T extends IIDLinkedObject> ICacheDelegate<T> provide(Class<T> clazz);
+
+	/**
+	 * Creates a cache delegate for a cache which is owned by a single entity and is only expected to ever hold a
+	 * handful of objects. There is one such cache per guild member, so implementations should keep their footprint
+	 * as small as possible.
+	 *
+	 * <p>By default, this is the same as {@link #provide(Class)}.
+	 *
+	 * @param clazz The class of the type the delegate stores.
+	 * @return The created cache delegate.
+	 */
+	default <T extends IIDLinkedObject> ICacheDelegate<T> provideCompact(Class<T> clazz) {
+		return provide(clazz);
+	}
 }
@@ -0,0 +1,153 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sx.blah.discord.util.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * An index of the unique snowflake IDs of objects by their names, both exactly and case-folded.
+ *
+ * <p>The index only stores IDs. Lookups resolve them against the cache which actually stores the objects and check
+ * that the resolved object still has the requested name, so IDs left behind by a missed rename are dropped as soon as
+ * they are looked up. Objects are added and removed along with the cache which stores them (see
+ * {@link Cache#indexNames(NameIndex, java.util.function.Function)}).
+ *
+ * <p>Name indexes are only maintained when they are enabled with
+ * {@link sx.blah.discord.api.ClientBuilder#withNameIndexes()}.
+ */
+public class NameIndex {
+
+	/**
+	 * The IDs of the indexed objects, keyed by their exact names.
+	 */
+	private final Map<String, Set<Long>> exact = new ConcurrentHashMap<>();
+	/**
+	 * The IDs of the indexed objects, keyed by their case-folded names.
+	 */
+	private final Map<String, Set<Long>> folded = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds an object to the index.
+	 *
+	 * @param name The name of the object. Null names are not indexed.
+	 * @param id The unique snowflake ID of the object.
+	 */
+	public void add(String name, long id) {
+		if (name == null)
+			return;
+
+		add(exact, name, id);
+		add(folded, fold(name), id);
+	}
+
+	/**
+	 * Removes an object from the index.
+	 *
+	 * @param name The name the object was indexed by.
+	 * @param id The unique snowflake ID of the object.
+	 */
+	public void remove(String name, long id) {
+		if (name == null)
+			return;
+
+		remove(exact, name, id);
+		remove(folded, fold(name), id);
+	}
+
+	/**
+	 * Moves an object from its old name to its new name. Objects which are not indexed by their old name, such as
+	 * objects which are not stored in the indexed cache, are not added.
+	 *
+	 * @param oldName The name the object was indexed by.
+	 * @param newName The new name of the object.
+	 * @param id The unique snowflake ID of the object.
+	 */
+	public void rename(String oldName, String newName, long id) {
+		if (oldName == null || Objects.equals(oldName, newName))
+			return;
+
+		if (remove(exact, oldName, id)) {
+			remove(folded, fold(oldName), id);
+			add(newName, id);
+		}
+	}
+
+	/**
+	 * Gets the objects with the given name.
+	 *
+	 * @param name The name of the desired objects.
+	 * @param ignoreCase Whether to ignore the case of the name.
+	 * @param resolver Resolves an indexed ID to its object, or null if it is no longer stored.
+	 * @param nameOf Gets the current name of an object.
+	 * @return The objects with the given name.
+	 */
+	public <T> List<T> get(String name, boolean ignoreCase, LongFunction<T> resolver, Function<? super T, String> nameOf) {
+		String key = ignoreCase ? fold(name) : name;
+		Set<Long> ids = (ignoreCase ? folded : exact).get(key);
+		if (ids == null)
+			return new ArrayList<>();
+
+		List<T> found = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			T obj = resolver.apply(id);
+			if (obj == null)
+				continue;
+
+			String current = nameOf.apply(obj);
+			if (current != null && (ignoreCase ? fold(current) : current).equals(key)) {
+				found.add(obj);
+			} else {
+				ids.remove(id); // Missed rename
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Removes every object from the index.
+	 */
+	public void clear() {
+		exact.clear();
+		folded.clear();
+	}
+
+	private static void add(Map<String, Set<Long>> index, String key, long id) {
+		index.compute(key, (k, ids) -> {
+			if (ids == null)
+				ids = ConcurrentHashMap.newKeySet();
+			ids.add(id);
+			return ids;
+		});
+	}
+
+	private static boolean remove(Map<String, Set<Long>> index, String key, long id) {
+		boolean[] removed = new boolean[1];
+		index.computeIfPresent(key, (k, ids) -> {
+			removed[0] = ids.remove(id);
+			return ids.isEmpty() ? null : ids;
+		});
+		return removed[0];
+	}
+
+	private static String fold(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+}
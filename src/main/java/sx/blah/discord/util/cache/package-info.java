@@ -32,6 +32,16 @@
  * <p>{@link sx.blah.discord.util.cache.Cache#DEFAULT_PROVIDER} is the default provider used by Discord4J and
  * {@link sx.blah.discord.util.cache.Cache#IGNORING_PROVIDER} is a NO-OP provider which stores nothing.
  *
+ * <p>Caches which are owned by a single entity and only hold a handful of objects (such as the per-guild roles,
+ * nicknames and voice states of a user) are created through
+ * {@link sx.blah.discord.util.cache.Cache#compact(sx.blah.discord.api.internal.DiscordClientImpl, Class)}. By default,
+ * these are backed by a {@link sx.blah.discord.util.cache.Cache.ArrayCacheDelegate} which has a far smaller footprint
+ * than a hash map.
+ *
+ * <p>Usage statistics of every cache can be recorded by enabling
+ * {@link sx.blah.discord.api.ClientBuilder#withCacheStatistics(boolean)}. The statistics of every cache which stores
+ * the same type of object are combined into a single {@link sx.blah.discord.util.cache.CacheStats}.
+ *
  * <p><b>Implementation Notes</b>
  * <bl>
  *     <li>Caches may only store {@link sx.blah.discord.handle.obj.IIDLinkedObject IIDLinkedObjects}.</li>
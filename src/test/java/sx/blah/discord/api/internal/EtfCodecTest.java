@@ -0,0 +1,143 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class EtfCodecTest {
+
+	private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+	@Test
+	public void testRoundTripSnowflakes() throws Exception {
+		assertEquals(NODES.numberNode(140184233216065536L), roundTrip(NODES.numberNode(140184233216065536L)));
+		assertEquals(NODES.numberNode(Long.MAX_VALUE), roundTrip(NODES.numberNode(Long.MAX_VALUE)));
+		assertEquals(NODES.numberNode(-140184233216065536L), roundTrip(NODES.numberNode(-140184233216065536L)));
+	}
+
+	@Test
+	public void testRoundTripBigIntegers() throws Exception {
+		BigInteger aboveLong = BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE);
+		assertEquals(aboveLong, roundTrip(NODES.numberNode(aboveLong)).bigIntegerValue());
+
+		BigInteger maxUnsigned = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+		assertEquals(maxUnsigned, roundTrip(NODES.numberNode(maxUnsigned)).bigIntegerValue());
+
+		BigInteger wide = BigInteger.ONE.shiftLeft(100).add(BigInteger.TEN);
+		assertEquals(wide, roundTrip(NODES.numberNode(wide)).bigIntegerValue());
+		assertEquals(wide.negate(), roundTrip(NODES.numberNode(wide.negate())).bigIntegerValue());
+	}
+
+	@Test
+	public void testRoundTripSmallIntegers() throws Exception {
+		assertEquals(NODES.numberNode(0), roundTrip(NODES.numberNode(0)));
+		assertEquals(NODES.numberNode(255), roundTrip(NODES.numberNode(255)));
+		assertEquals(NODES.numberNode(-1), roundTrip(NODES.numberNode(-1)));
+		assertEquals(NODES.numberNode(Integer.MAX_VALUE), roundTrip(NODES.numberNode(Integer.MAX_VALUE)));
+	}
+
+	@Test
+	public void testRoundTripAtoms() throws Exception {
+		assertTrue(roundTrip(NODES.nullNode()).isNull());
+		assertEquals(NODES.booleanNode(true), roundTrip(NODES.booleanNode(true)));
+		assertEquals(NODES.booleanNode(false), roundTrip(NODES.booleanNode(false)));
+	}
+
+	@Test
+	public void testRoundTripNestedMaps() throws Exception {
+		ObjectNode payload = NODES.objectNode();
+		payload.put("op", 0);
+		payload.put("t", "MESSAGE_CREATE");
+		payload.putNull("s");
+		ObjectNode data = payload.putObject("d");
+		data.put("id", 140184233216065536L);
+		data.put("content", "héllo 👋");
+		data.put("tts", false);
+		data.put("score", 1.5D);
+		data.putArray("mentions").add(NODES.objectNode().put("id", 81384788765712384L).put("bot", true));
+		data.putArray("embeds");
+
+		assertEquals(payload, roundTrip(payload));
+	}
+
+	@Test
+	public void testDecodeCompressedTerm() throws Exception {
+		ObjectNode payload = NODES.objectNode().put("op", 11).put("t", "HEARTBEAT_ACK");
+		byte[] encoded = EtfCodec.encode(payload);
+		byte[] term = deflate(encoded, 1, encoded.length - 1); // Everything after the version byte
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(131); // Version
+		out.write(80); // Compressed term
+		int size = encoded.length - 1;
+		out.write(size >>> 24);
+		out.write(size >>> 16);
+		out.write(size >>> 8);
+		out.write(size);
+		out.write(term, 0, term.length);
+		byte[] data = out.toByteArray();
+
+		assertEquals(payload, EtfCodec.decode(data, 0, data.length));
+	}
+
+	@Test
+	public void testDecodeCompressedPayload() throws Exception {
+		ObjectNode payload = NODES.objectNode().put("op", 10);
+		payload.putObject("d").put("heartbeat_interval", 41250);
+		byte[] encoded = EtfCodec.encode(payload);
+		byte[] compressed = deflate(encoded, 0, encoded.length);
+
+		byte[] data = new byte[compressed.length + 4]; // Decoding must respect the offset and length
+		System.arraycopy(compressed, 0, data, 2, compressed.length);
+		assertEquals(payload, EtfCodec.decode(data, 2, compressed.length));
+	}
+
+	@Test(expected = IOException.class)
+	public void testDecodeTruncated() throws Exception {
+		byte[] encoded = EtfCodec.encode(NODES.objectNode().put("t", "READY"));
+		EtfCodec.decode(encoded, 0, encoded.length - 1);
+	}
+
+	private static JsonNode roundTrip(JsonNode node) throws IOException {
+		byte[] encoded = EtfCodec.encode(node);
+		return EtfCodec.decode(encoded, 0, encoded.length);
+	}
+
+	private static byte[] deflate(byte[] data, int offset, int length) {
+		Deflater deflater = new Deflater();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		while (!deflater.finished()) {
+			int written = deflater.deflate(buffer);
+			out.write(buffer, 0, written);
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+}
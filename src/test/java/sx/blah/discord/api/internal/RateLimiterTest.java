@@ -0,0 +1,71 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.api.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testMajorParameterIsKept() {
+		assertEquals("GET /channels/81384788765712384/messages",
+				RateLimiter.getRoute("GET", "/channels/81384788765712384/messages"));
+		assertEquals("PATCH /guilds/81384788765712384/members/{id}",
+				RateLimiter.getRoute("PATCH", "/guilds/81384788765712384/members/140184233216065536"));
+		assertEquals("POST /webhooks/81384788765712384/token",
+				RateLimiter.getRoute("POST", "/webhooks/81384788765712384/token"));
+	}
+
+	@Test
+	public void testMinorParametersAreReplaced() {
+		assertEquals("DELETE /channels/81384788765712384/messages/{id}",
+				RateLimiter.getRoute("DELETE", "/channels/81384788765712384/messages/140184233216065536"));
+		assertEquals(RateLimiter.getRoute("GET", "/channels/1/messages/2"),
+				RateLimiter.getRoute("GET", "/channels/1/messages/3"));
+		assertEquals("GET /users/{id}", RateLimiter.getRoute("GET", "/users/140184233216065536"));
+	}
+
+	@Test
+	public void testOnlyFirstMajorParameterIsKept() {
+		assertEquals("PUT /channels/1/permissions/{id}", RateLimiter.getRoute("PUT", "/channels/1/permissions/2"));
+	}
+
+	@Test
+	public void testDifferentMajorParametersDiffer() {
+		assertNotEquals(RateLimiter.getRoute("POST", "/channels/1/messages"),
+				RateLimiter.getRoute("POST", "/channels/2/messages"));
+		assertNotEquals(RateLimiter.getRoute("GET", "/channels/1/messages"),
+				RateLimiter.getRoute("POST", "/channels/1/messages"));
+	}
+
+	@Test
+	public void testReactionEmojiIsReplaced() {
+		assertEquals("PUT /channels/1/messages/{id}/reactions/{emoji}/@me",
+				RateLimiter.getRoute("PUT", "/channels/1/messages/2/reactions/%F0%9F%91%8B/@me"));
+		assertEquals("PUT /channels/1/messages/{id}/reactions/{emoji}/@me",
+				RateLimiter.getRoute("PUT", "/channels/1/messages/2/reactions/name:3/@me"));
+	}
+
+	@Test
+	public void testNonNumericSegmentsAreKept() {
+		assertEquals("GET /gateway/bot", RateLimiter.getRoute("GET", "/gateway/bot"));
+		assertEquals("GET /users/@me/guilds", RateLimiter.getRoute("GET", "/users/@me/guilds"));
+		assertEquals("GET /guilds/1/members/12ab", RateLimiter.getRoute("GET", "/guilds/1/members/12ab"));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.handle.impl.obj;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PermissionsCacheTest {
+
+	@Test
+	public void testSameRolesAreComputedOnce() {
+		PermissionsCache cache = new PermissionsCache();
+		AtomicInteger computations = new AtomicInteger();
+		assertEquals(8, cache.get(new long[] {1, 2}, 0, () -> computations.incrementAndGet() * 8));
+		assertEquals(8, cache.get(new long[] {1, 2}, 0, () -> computations.incrementAndGet() * 8));
+		assertEquals(1, computations.get());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testRoleChangeIsRecomputed() {
+		PermissionsCache cache = new PermissionsCache();
+		assertEquals(8, cache.get(new long[] {1}, 0, () -> 8));
+		assertEquals(16, cache.get(new long[] {1, 2}, 0, () -> 16));
+		assertEquals(8, cache.get(new long[] {1}, 0, () -> 32)); // Members which kept the old roles are unaffected
+	}
+
+	@Test
+	public void testOverrideChangeIsRecomputed() {
+		PermissionsCache cache = new PermissionsCache();
+		assertEquals(8, cache.get(new long[] {1}, 0, () -> 8));
+		cache.invalidate();
+		assertEquals(0, cache.size());
+		assertEquals(16, cache.get(new long[] {1}, 0, () -> 16));
+	}
+
+	@Test
+	public void testRolePermissionChangeIsRecomputed() {
+		PermissionsCache cache = new PermissionsCache();
+		assertEquals(8, cache.get(new long[] {1}, 0, () -> 8));
+		assertEquals(16, cache.get(new long[] {1}, 1, () -> 16)); // The guild's permissions version was bumped
+		assertEquals(16, cache.get(new long[] {1}, 1, () -> 32));
+	}
+
+	@Test
+	public void testOverrideChangeDuringComputationIsNotCached() {
+		PermissionsCache cache = new PermissionsCache();
+		assertEquals(8, cache.get(new long[] {1}, 0, () -> {
+			cache.invalidate(); // The overrides changed while the stale value was being computed
+			return 8;
+		}));
+		assertEquals(16, cache.get(new long[] {1}, 0, () -> 16));
+	}
+
+	@Test
+	public void testSizeIsBounded() {
+		PermissionsCache cache = new PermissionsCache();
+		for (long roleID = 0; roleID < PermissionsCache.MAX_ENTRIES * 3; roleID++)
+			cache.get(new long[] {roleID}, 0, () -> 8);
+		assertTrue(cache.size() <= PermissionsCache.MAX_ENTRIES);
+	}
+}
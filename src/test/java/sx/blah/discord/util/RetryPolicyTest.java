@@ -0,0 +1,75 @@
+/*
+ *     This file is part of Discord4J.
+ *
+ *     Discord4J is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Discord4J is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with Discord4J.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sx.blah.discord.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+	@Test
+	public void testDelayIsBoundedByBackoff() {
+		RetryPolicy policy = new RetryPolicy(5, 250, 10000);
+		for (int retries = 0; retries < 5; retries++) {
+			long bound = 250L << retries;
+			for (int i = 0; i < 1000; i++) {
+				long delay = policy.getDelay(retries);
+				assertTrue(delay >= 0 && delay <= bound);
+			}
+		}
+	}
+
+	@Test
+	public void testDelayIsCappedAtMaxDelay() {
+		RetryPolicy policy = new RetryPolicy(100, 250, 10000);
+		for (int retries : new int[] {6, 10, 40, 62, 63, 64, 100, Integer.MAX_VALUE}) {
+			for (int i = 0; i < 1000; i++) {
+				long delay = policy.getDelay(retries);
+				assertTrue(delay >= 0 && delay <= 10000);
+			}
+		}
+	}
+
+	@Test
+	public void testHugeDelaysDoNotOverflow() {
+		RetryPolicy policy = new RetryPolicy(100, Long.MAX_VALUE / 2, Long.MAX_VALUE);
+		for (int retries = 0; retries < 100; retries++)
+			assertTrue(policy.getDelay(retries) >= 0);
+	}
+
+	@Test
+	public void testZeroDelay() {
+		assertEquals(0, new RetryPolicy(3, 0, 0).getDelay(0));
+		assertEquals(0, new RetryPolicy(3, 0, 1000).getDelay(5));
+		assertEquals(0, RetryPolicy.NONE.getDelay(0));
+	}
+
+	@Test
+	public void testShouldRetry() {
+		RetryPolicy policy = new RetryPolicy(2, 250, 10000);
+		assertTrue(policy.shouldRetry(0));
+		assertTrue(policy.shouldRetry(1));
+		assertFalse(policy.shouldRetry(2));
+		assertFalse(RetryPolicy.NONE.shouldRetry(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPolicy() {
+		new RetryPolicy(1, 1000, 500);
+	}
+}